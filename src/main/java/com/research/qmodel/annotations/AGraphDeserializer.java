@@ -3,7 +3,6 @@ package com.research.qmodel.annotations;
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.databind.*;
 import com.fasterxml.jackson.databind.module.SimpleModule;
-import com.research.qmodel.graph.Graph;
 import com.research.qmodel.model.AGraph;
 import com.research.qmodel.model.Commit;
 import com.research.qmodel.model.FileChange;
@@ -30,18 +29,23 @@ import java.util.Optional;
 public class AGraphDeserializer extends JsonDeserializer<AGraph> {
     private final BasicQueryService basicQueryService;
     private final ObjectMapper objectMapper;
+    /** Reads a commit's files; a copy configured once, the shared mapper is never changed while in use. */
+    private final ObjectMapper fileChangesMapper;
     private final Logger LOGGER = LoggerFactory.getLogger(AGraphDeserializer.class);
     private final AGraphRepository aGraphRepository;
-    private final Graph graph;
 
     public AGraphDeserializer(
             BasicQueryService basicQueryService,
             ObjectMapper objectMapper,
-            AGraphRepository aGraphRepository, CommitRepository commitRepository, Graph graph) {
+            AGraphRepository aGraphRepository, CommitRepository commitRepository) {
         this.basicQueryService = basicQueryService;
         this.objectMapper = objectMapper;
+        SimpleModule module = new SimpleModule();
+        module.addDeserializer(List.class, new FileChangesDeserializer(basicQueryService));
+        this.fileChangesMapper = objectMapper.copy()
+                .enable(DeserializationFeature.USE_JAVA_ARRAY_FOR_JSON_ARRAY)
+                .registerModule(module);
         this.aGraphRepository = aGraphRepository;
-        this.graph = graph;
     }
 
     @SneakyThrows
@@ -73,7 +77,6 @@ public class AGraphDeserializer extends JsonDeserializer<AGraph> {
                     && rawCommit.get("commit").get("author").get("date") != null
                     && rawCommit.get("url") != null) {
                 Commit commit = objectMapper.convertValue(rawCommit.get("commit"), Commit.class);
-                objectMapper.enable(DeserializationFeature.USE_JAVA_ARRAY_FOR_JSON_ARRAY);
                 JsonNode sha = rawCommit.get("sha");
                 if (sha != null) {
                     commit.setSha(sha.asText());
@@ -83,15 +86,12 @@ public class AGraphDeserializer extends JsonDeserializer<AGraph> {
                 if (commit.getFileChanges() != null && !commit.getFileChanges().isEmpty()) {
                     continue;
                 }
-                SimpleModule module = new SimpleModule();
-                module.addDeserializer(List.class, new FileChangesDeserializer(basicQueryService));
-                objectMapper.registerModule(module);
                 List<FileChange> fileChanges =
-                        objectMapper.convertValue(rawCommit, new TypeReference<>() {
+                        fileChangesMapper.convertValue(rawCommit, new TypeReference<>() {
                         });
                 if (fileChanges == null) {
                     LOGGER.error("Failed to pull out files for commit {}, retrying", rawCommit);
-                    fileChanges = objectMapper.convertValue(rawCommit, new TypeReference<>() {
+                    fileChanges = fileChangesMapper.convertValue(rawCommit, new TypeReference<>() {
                     });
                     if (fileChanges == null) {
                         LOGGER.error("Failed to pull out files for commit {}", rawCommit);
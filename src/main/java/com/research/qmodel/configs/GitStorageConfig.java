@@ -0,0 +1,76 @@
+package com.research.qmodel.configs;
+
+import com.research.qmodel.graph.RepositoryPool;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.eclipse.jgit.storage.file.WindowCacheConfig;
+import org.eclipse.jgit.storage.file.WindowCacheStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+
+/**
+ * Sizes JGit's process-wide pack cache and the {@link RepositoryPool}, and publishes both as
+ * gauges: {@code qmodel.git.pool.*} for repository handles and {@code qmodel.git.window-cache.*}
+ * for pack data, see {@code /actuator/metrics}.
+ */
+@Configuration
+public class GitStorageConfig implements DisposableBean {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitStorageConfig.class);
+
+    public GitStorageConfig(
+            @Value("${qmodel.git.packed-git-limit:268435456}") long packedGitLimit,
+            @Value("${qmodel.git.packed-git-window-size:65536}") int packedGitWindowSize,
+            @Value("${qmodel.git.packed-git-open-files:256}") int packedGitOpenFiles,
+            @Value("${qmodel.git.packed-git-mmap:false}") boolean packedGitMmap,
+            @Value("${qmodel.git.delta-base-cache-limit:67108864}") int deltaBaseCacheLimit,
+            @Value("${qmodel.git.stream-file-threshold:52428800}") int streamFileThreshold,
+            @Value("${qmodel.git.pool.idle-timeout:300}") long idleTimeoutSeconds,
+            @Value("${qmodel.git.pool.max-idle:32}") int maxIdle,
+            ObjectProvider<MeterRegistry> meterRegistry) {
+        WindowCacheConfig config = new WindowCacheConfig();
+        config.setPackedGitLimit(packedGitLimit);
+        config.setPackedGitWindowSize(packedGitWindowSize);
+        config.setPackedGitOpenFiles(packedGitOpenFiles);
+        config.setPackedGitMMAP(packedGitMmap);
+        config.setDeltaBaseCacheLimit(deltaBaseCacheLimit);
+        config.setStreamFileThreshold(streamFileThreshold);
+        config.install();
+        LOGGER.info("JGit window cache: limit={} bytes, window={} bytes, open files={}, mmap={}, delta base cache={} bytes",
+                packedGitLimit, packedGitWindowSize, packedGitOpenFiles, packedGitMmap, deltaBaseCacheLimit);
+
+        RepositoryPool.shared().configure(idleTimeoutSeconds * 1000, maxIdle);
+        meterRegistry.ifAvailable(GitStorageConfig::registerGauges);
+    }
+
+    private static void registerGauges(MeterRegistry registry) {
+        RepositoryPool pool = RepositoryPool.shared();
+        Gauge.builder("qmodel.git.pool.hit-rate", pool, p -> p.stats().hitRate())
+                .description("Share of repository acquires served by an open handle")
+                .register(registry);
+        FunctionCounter.builder("qmodel.git.pool.opens", pool, p -> p.stats().opens()).register(registry);
+        Gauge.builder("qmodel.git.pool.open", pool, p -> p.stats().open()).register(registry);
+        Gauge.builder("qmodel.git.pool.leased", pool, p -> p.stats().leased()).register(registry);
+
+        Gauge.builder("qmodel.git.window-cache.hit-rate", () -> WindowCacheStats.getStats().getHitRatio())
+                .description("Share of pack window reads served from JGit's window cache")
+                .register(registry);
+        Gauge.builder("qmodel.git.window-cache.evictions", () -> WindowCacheStats.getStats().getEvictionCount())
+                .register(registry);
+        Gauge.builder("qmodel.git.window-cache.open-bytes", () -> WindowCacheStats.getStats().getOpenByteCount())
+                .baseUnit("bytes")
+                .register(registry);
+        Gauge.builder("qmodel.git.window-cache.open-files", () -> WindowCacheStats.getStats().getOpenFileCount())
+                .register(registry);
+    }
+
+    @Override
+    public void destroy() {
+        RepositoryPool.shared().clear();
+    }
+}
@@ -10,7 +10,9 @@ import com.research.qmodel.repos.CommitRepository;
 import com.research.qmodel.repos.ProjectIssueRepository;
 import com.research.qmodel.service.BasicQueryService;
 import com.research.qmodel.service.DataPersistance;
+import com.research.qmodel.service.GitHubTokenPool;
 import com.research.qmodel.service.findbugs.BasicBugFinder;
+import com.research.qmodel.service.findbugs.SzzJobTracker;
 import io.swagger.v3.oas.annotations.Parameter;
 import io.swagger.v3.oas.annotations.enums.ParameterIn;
 
@@ -55,6 +57,12 @@ public class BaseGitQueryController extends GitMaintainable implements FileJsonR
         return new ResponseEntity<>(dataPersistance.retrieveProjects(), HttpStatus.OK);
     }
 
+    @GetMapping(value = "/github/tokens")
+    @ResponseStatus(HttpStatus.OK)
+    public ResponseEntity<List<GitHubTokenPool.Usage>> getTokenUsage() {
+        return new ResponseEntity<>(basicQueryService.tokenUsage(), HttpStatus.OK);
+    }
+
     @GetMapping(value = "/repos/{owner}/{repo}/actions")
     @ResponseStatus(HttpStatus.OK)
     public Object getActions(
@@ -110,6 +118,24 @@ public class BaseGitQueryController extends GitMaintainable implements FileJsonR
                 basicBugFinder.findBugIntroducingCommits(owner, repo, id, 2), HttpStatus.OK);
     }
 
+    @GetMapping(value = "/repos/{owner}/{repo}/{id}/compareBugIntroducingCommits")
+    @ResponseStatus(HttpStatus.OK)
+    public ResponseEntity<BasicBugFinder.TracerComparison> compareDefectsCommits(
+            @PathVariable(value = "owner")
+            @Parameter(name = "owner", in = ParameterIn.PATH, description = "Owner of the project")
+            String owner,
+            @PathVariable(value = "repo")
+            @Parameter(name = "repo", in = ParameterIn.PATH, description = "Repo name")
+            String repo,
+            @PathVariable(value = "id")
+            @Parameter(name = "id", in = ParameterIn.PATH, description = "Issue id")
+            Long id,
+            @RequestParam(required = false, defaultValue = "2") int depth)
+            throws IOException {
+        return new ResponseEntity<>(
+                basicBugFinder.compareTracers(owner, repo, id, depth), HttpStatus.OK);
+    }
+
     @GetMapping(value = "/repos/{owner}/{repo}/retrieveBugIntroducingCommits")
     @ResponseStatus(HttpStatus.OK)
     public void searchAllDefectsCommits(
@@ -123,6 +149,21 @@ public class BaseGitQueryController extends GitMaintainable implements FileJsonR
         basicBugFinder.traceCommitsToOrigin(owner, repo, depth);
     }
 
+    @GetMapping(value = "/repos/{owner}/{repo}/szzJob")
+    @ResponseStatus(HttpStatus.OK)
+    public ResponseEntity<SzzJobTracker.Report> getSzzJob(
+            @PathVariable(value = "owner")
+            @Parameter(name = "owner", in = ParameterIn.PATH, description = "Owner of the project")
+            String owner,
+            @PathVariable(value = "repo")
+            @Parameter(name = "repo", in = ParameterIn.PATH, description = "Repo name")
+            String repo) {
+        SzzJobTracker.Report report = basicBugFinder.szzJobReport(owner, repo);
+        return report == null
+                ? new ResponseEntity<>(HttpStatus.NOT_FOUND)
+                : new ResponseEntity<>(report, HttpStatus.OK);
+    }
+
     private Set<String> getForks(String owner, String repo) {
 
         List<Map<String, JsonNode>> retrievemetrics =
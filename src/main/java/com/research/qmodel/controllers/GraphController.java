@@ -0,0 +1,139 @@
+package com.research.qmodel.controllers;
+
+import com.research.qmodel.errors.GraphNotLoadedException;
+import com.research.qmodel.graph.Graph;
+import com.research.qmodel.graph.GraphColumn;
+import com.research.qmodel.graph.GraphExporter;
+import com.research.qmodel.graph.GraphPage;
+import com.research.qmodel.graph.GraphQuery;
+import com.research.qmodel.graph.GraphRegistry;
+import com.research.qmodel.graph.Vertex;
+import com.research.qmodel.service.GraphQueryService;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+@RestController
+@RequestMapping(value = {"api/v1/metrics"})
+public class GraphController {
+    private final GraphRegistry graphRegistry;
+    private final GraphQueryService graphQueryService;
+
+    public GraphController(GraphRegistry graphRegistry, GraphQueryService graphQueryService) {
+        this.graphRegistry = graphRegistry;
+        this.graphQueryService = graphQueryService;
+    }
+
+    @GetMapping(value = "/repos/{owner}/{repo}/graph")
+    @ResponseStatus(HttpStatus.OK)
+    public GraphPage getGraphPage(
+            @PathVariable(value = "owner")
+            @Parameter(name = "owner", in = ParameterIn.PATH, description = "Owner of the project")
+            String owner,
+            @PathVariable(value = "repo")
+            @Parameter(name = "repo", in = ParameterIn.PATH, description = "Repo name")
+            String repo,
+            @RequestParam(value = "cursor", required = false)
+            @Parameter(name = "cursor", in = ParameterIn.QUERY, description = "nextCursor of the previous page")
+            String cursor,
+            @RequestParam(value = "limit", defaultValue = "" + GraphQuery.DEFAULT_LIMIT)
+            @Parameter(name = "limit", in = ParameterIn.QUERY, description = "Page size, at most " + GraphQuery.MAX_LIMIT)
+            int limit,
+            @RequestParam(value = "from", required = false)
+            @Parameter(name = "from", in = ParameterIn.QUERY, description = "Oldest commit time, epoch millis")
+            Long from,
+            @RequestParam(value = "to", required = false)
+            @Parameter(name = "to", in = ParameterIn.QUERY, description = "Newest commit time, epoch millis")
+            Long to,
+            @RequestParam(value = "branch", required = false)
+            @Parameter(name = "branch", in = ParameterIn.QUERY, description = "Only commits reachable from this branch")
+            String branch,
+            @RequestParam(value = "mergesOnly", defaultValue = "false")
+            boolean mergesOnly,
+            @RequestParam(value = "columns", required = false)
+            @Parameter(name = "columns", in = ParameterIn.QUERY, description = "Metric columns to return, all by default")
+            List<String> columns) {
+        try {
+            GraphQuery query = GraphQuery.after(cursor)
+                    .limit(limit)
+                    .from(from)
+                    .to(to)
+                    .branch(branch)
+                    .mergesOnly(mergesOnly)
+                    .columns(GraphColumn.parse(columns))
+                    .build();
+            return graphQueryService.page(owner, repo, query);
+        } catch (IllegalArgumentException e) {
+            throw new ResponseStatusException(HttpStatus.BAD_REQUEST, e.getMessage(), e);
+        } catch (GraphNotLoadedException e) {
+            throw new ResponseStatusException(HttpStatus.CONFLICT, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Fetches the repo and brings its graph and the stored commit metrics up to date, walking
+     * only the commits added since the last build.
+     */
+    @PostMapping(value = "/repos/{owner}/{repo}/graph/refresh")
+    @ResponseStatus(HttpStatus.OK)
+    public Map<String, Object> refreshGraph(
+            @PathVariable(value = "owner")
+            @Parameter(name = "owner", in = ParameterIn.PATH, description = "Owner of the project")
+            String owner,
+            @PathVariable(value = "repo")
+            @Parameter(name = "repo", in = ParameterIn.PATH, description = "Repo name")
+            String repo) {
+        long t0 = System.currentTimeMillis();
+        Graph graph = graphRegistry.refresh(owner, repo);
+        return Map.of(
+                "commits", graph.getVertices().size(),
+                "estimatedBytes", graph.estimatedBytes(),
+                "elapsedMillis", System.currentTimeMillis() - t0);
+    }
+
+    @GetMapping(value = "/repos/{owner}/{repo}/graph/export")
+    @ResponseStatus(HttpStatus.OK)
+    public ResponseEntity<StreamingResponseBody> exportGraph(
+            @PathVariable(value = "owner")
+            @Parameter(name = "owner", in = ParameterIn.PATH, description = "Owner of the project")
+            String owner,
+            @PathVariable(value = "repo")
+            @Parameter(name = "repo", in = ParameterIn.PATH, description = "Repo name")
+            String repo,
+            @RequestParam(value = "from", required = false)
+            @Parameter(name = "from", in = ParameterIn.QUERY, description = "Oldest commit time, epoch millis")
+            Long from,
+            @RequestParam(value = "to", required = false)
+            @Parameter(name = "to", in = ParameterIn.QUERY, description = "Newest commit time, epoch millis")
+            Long to,
+            @RequestParam(value = "shas", required = false)
+            @Parameter(name = "shas", in = ParameterIn.QUERY, description = "Restrict the export to these commits")
+            List<String> shas,
+            @RequestParam(value = "gzip", defaultValue = "false")
+            boolean gzip) {
+        Graph graph = graphRegistry.get(owner, repo);
+        Predicate<Vertex> filter = GraphExporter.ALL;
+        if (from != null || to != null) {
+            filter = GraphExporter.timeWindow(from == null ? null : new Date(from), to == null ? null : new Date(to));
+        }
+        if (shas != null && !shas.isEmpty()) {
+            filter = filter == GraphExporter.ALL ? GraphExporter.subgraph(shas) : filter.and(GraphExporter.subgraph(shas));
+        }
+        Predicate<Vertex> selected = filter;
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON);
+        if (gzip) response.header(HttpHeaders.CONTENT_ENCODING, "gzip");
+        return response.body(out -> graph.export(out, selected, gzip));
+    }
+}
@@ -0,0 +1,40 @@
+package com.research.qmodel.controllers;
+
+import com.research.qmodel.dto.Project;
+import com.research.qmodel.graph.RepoCloneManager;
+import com.research.qmodel.graph.SimpleProgressMonitor;
+import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.enums.ParameterIn;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+@RestController
+@RequestMapping(value = {"api/v1/metrics"})
+public class RepoSyncController {
+    private final RepoCloneManager repoCloneManager;
+
+    public RepoSyncController(RepoCloneManager repoCloneManager) {
+        this.repoCloneManager = repoCloneManager;
+    }
+
+    /** Starts cloning or fetching the repos in the background; poll {@code GET repos/sync} for progress. */
+    @PostMapping(value = "/repos/sync")
+    @ResponseStatus(HttpStatus.ACCEPTED)
+    public Set<String> syncRepos(
+            @RequestBody List<Project> repos,
+            @RequestParam(value = "mode", defaultValue = "FULL")
+            @Parameter(name = "mode", in = ParameterIn.QUERY, description = "FULL, SHALLOW or BLOBLESS clone for repos not on disk yet")
+            RepoCloneManager.Mode mode) {
+        return repoCloneManager.syncAll(repos, mode).keySet();
+    }
+
+    @GetMapping(value = "/repos/sync")
+    @ResponseStatus(HttpStatus.OK)
+    public Map<String, SimpleProgressMonitor.Progress> syncProgress() {
+        return repoCloneManager.progress();
+    }
+}
@@ -0,0 +1,9 @@
+package com.research.qmodel.errors;
+
+public class GraphBuildException extends RuntimeException{
+  private static final long serialVersionUID = 1L;
+
+  public GraphBuildException(String message, Throwable cause) {
+    super(message, cause);
+  }
+}
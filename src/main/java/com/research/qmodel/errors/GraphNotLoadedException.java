@@ -0,0 +1,9 @@
+package com.research.qmodel.errors;
+
+public class GraphNotLoadedException extends RuntimeException{
+  private static final long serialVersionUID = 1L;
+
+  public GraphNotLoadedException(String message) {
+    super(message);
+  }
+}
@@ -0,0 +1,93 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+/**
+ * On-demand blob download for blob-less ({@code --filter=blob:none}) clones made by
+ * {@link RepoCloneManager}. The git CLI fetches a partial clone's missing blobs by itself, JGit
+ * does not, so code that reads file contents through JGit (e.g. blame) asks for the blobs of a
+ * file's history first. Their ids are listed from the trees, which a blob-less clone has, and the
+ * missing ones are fetched from the promisor remote in one request.
+ */
+public final class BlobFetcher {
+
+    private static final Logger LOG = LoggerFactory.getLogger(BlobFetcher.class);
+
+    private BlobFetcher() {
+    }
+
+    public static boolean isPartialClone(Repository repo) {
+        return repo.getConfig().getBoolean(ConfigConstants.CONFIG_REMOTE_SECTION, "origin", "promisor", false)
+                || repo.getConfig().getString(ConfigConstants.CONFIG_EXTENSIONS_SECTION, null, "partialclone") != null;
+    }
+
+    /**
+     * Makes every version of {@code path} reachable from {@code start}, following renames, present
+     * locally. Does nothing on a complete clone.
+     *
+     * @return number of blobs that had to be fetched
+     */
+    public static int fetchFileHistory(Repository repo, ObjectId start, String path) throws IOException {
+        if (!isPartialClone(repo)) return 0;
+        File gitDir = repo.getDirectory();
+        Set<ObjectId> missing = new LinkedHashSet<>();
+        for (String line : run(gitDir, null, "log", "--follow", "--format=", "--raw", "--no-abbrev",
+                start.name(), "--", path)) {
+            if (!line.startsWith(":")) continue;
+            String[] f = line.split("\\s+");
+            for (int i = 2; i <= 3 && i < f.length; i++) {
+                if (!ObjectId.isId(f[i])) continue;
+                ObjectId id = ObjectId.fromString(f[i]);
+                if (!id.equals(ObjectId.zeroId()) && !repo.getObjectDatabase().has(id)) missing.add(id);
+            }
+        }
+        if (missing.isEmpty()) return 0;
+
+        StringBuilder wants = new StringBuilder();
+        for (ObjectId id : missing) wants.append(id.name()).append('\n');
+        run(gitDir, wants.toString(), "-c", "fetch.negotiationAlgorithm=noop", "fetch", "--no-tags",
+                "--no-write-fetch-head", "--recurse-submodules=no", "--filter=blob:none", "--stdin", "origin");
+        LOG.info("Fetched {} blobs of {} from origin", missing.size(), path);
+        return missing.size();
+    }
+
+    private static List<String> run(File gitDir, String stdin, String... args) throws IOException {
+        List<String> cmd = new ArrayList<>(List.of("git", "--git-dir", gitDir.getAbsolutePath()));
+        cmd.addAll(List.of(args));
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        try (OutputStream in = p.getOutputStream()) {
+            if (stdin != null) in.write(stdin.getBytes(StandardCharsets.UTF_8));
+        }
+        List<String> output = new ArrayList<>();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+            String line;
+            while ((line = out.readLine()) != null) output.add(line);
+        }
+        try {
+            int exit = p.waitFor();
+            if (exit != 0) {
+                throw new IOException("git " + String.join(" ", args) + " exited with " + exit + ": "
+                        + (output.isEmpty() ? "" : output.get(output.size() - 1)));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted running git " + args[0], e);
+        }
+        return output;
+    }
+}
@@ -0,0 +1,124 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.ListBranchCommand;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * Branch each commit was born in: of the branches whose first-parent chain contains the commit,
+ * the one where it lies deepest below the tip, the same answer
+ * {@link GitMaintainable#findBranchCommitWasBornIn} gave by walking every branch. Built with one
+ * children-first pass over the DAG, after which every lookup is an array read.
+ * <p>
+ * The first-parent chains form a forest, so the commit's depth below a tip is the tip's
+ * first-parent height minus its own: the deepest branch is the one with the highest tip among
+ * those in the commit's first-parent subtree. Ties go to the branch listed first.
+ */
+final class BranchOriginIndex {
+
+    private final CommitDag dag;
+    private final String[] names;
+    private final int[] branchOf;
+
+    private BranchOriginIndex(CommitDag dag, String[] names, int[] branchOf) {
+        this.dag = dag;
+        this.names = names;
+        this.branchOf = branchOf;
+    }
+
+    /**
+     * Branches considered for attribution, in {@code git branch -a} order. {@code HEAD} refs and the
+     * local master are skipped, a commit is never said to be born there.
+     */
+    static List<Ref> candidateBranches(Repository repo) throws GitAPIException {
+        List<Ref> branches = new ArrayList<>();
+        try (Git git = new Git(repo)) {
+            for (Ref branch : git.branchList().setListMode(ListBranchCommand.ListMode.ALL).call()) {
+                if (branch.getName().contains("HEAD") || branch.getName().contains("refs/heads/master")) {
+                    continue;
+                }
+                if (branch.getObjectId() != null) branches.add(branch);
+            }
+        }
+        return branches;
+    }
+
+    /** Walks the candidate branches of {@code repo} and indexes them, for callers without a {@link Graph}. */
+    static BranchOriginIndex build(Repository repo) throws IOException, GitAPIException {
+        List<Ref> branches = candidateBranches(repo);
+        List<ObjectId> tips = new ArrayList<>();
+        for (Ref branch : branches) tips.add(branch.getObjectId());
+        try (RevWalk walk = new RevWalk(repo)) {
+            return build(Graph.readDag(walk, tips, List.of(), CommitDag.builder(1024)), branches);
+        }
+    }
+
+    static BranchOriginIndex build(CommitDag dag, List<Ref> branches) {
+        int n = dag.size();
+        int[] topo = dag.topo();
+
+        // first-parent height, parents before children
+        int[] height = new int[n];
+        for (int id : topo) {
+            int p = dag.parentCount(id) > 0 ? dag.parent(id, 0) : CommitDag.NONE;
+            height[id] = p == CommitDag.NONE ? 0 : height[p] + 1;
+        }
+
+        String[] names = new String[branches.size()];
+        int[] tipHeight = new int[branches.size()];
+        int[] best = new int[n];
+        Arrays.fill(best, -1);
+        for (int b = 0; b < branches.size(); b++) {
+            names[b] = shortName(branches.get(b).getName());
+            int tip = dag.id(branches.get(b).getObjectId());
+            if (tip == CommitDag.NONE || !dag.isWalked(tip)) continue;
+            tipHeight[b] = height[tip];
+            best[tip] = better(best[tip], b, tipHeight);
+        }
+
+        // children first: every commit passes its best branch down to its first parent
+        for (int k = topo.length - 1; k >= 0; k--) {
+            int id = topo[k];
+            if (best[id] < 0 || dag.parentCount(id) == 0) continue;
+            int p = dag.parent(id, 0);
+            best[p] = better(best[p], best[id], tipHeight);
+        }
+        return new BranchOriginIndex(dag, names, best);
+    }
+
+    private static int better(int current, int candidate, int[] tipHeight) {
+        if (current < 0) return candidate;
+        if (tipHeight[candidate] != tipHeight[current]) {
+            return tipHeight[candidate] > tipHeight[current] ? candidate : current;
+        }
+        return Math.min(current, candidate);
+    }
+
+    private static String shortName(String ref) {
+        return ref.replace("refs/heads/", "").replace("refs/remotes/", "");
+    }
+
+    /** Branch the commit was born in, or {@code null} when it is on no candidate branch's first-parent chain. */
+    String branchOf(String sha) {
+        int id = dag.id(sha);
+        if (id == CommitDag.NONE || branchOf[id] < 0) return null;
+        return names[branchOf[id]];
+    }
+
+    /** Branches of the given commits; commits without one are left out. */
+    Map<String, String> branchesOf(Collection<String> shas) {
+        Map<String, String> result = new LinkedHashMap<>();
+        for (String sha : shas) {
+            String branch = branchOf(sha);
+            if (branch != null) result.put(sha, branch);
+        }
+        return result;
+    }
+}
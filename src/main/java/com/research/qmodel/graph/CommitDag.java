@@ -0,0 +1,289 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.ObjectIdOwnerMap;
+
+import java.util.Arrays;
+
+/**
+ * Compact, immutable commit DAG.
+ * <p>
+ * Every commit is interned once to a dense int id (in first-seen order), parent and child
+ * adjacency is kept in CSR form ({@code offsets}/{@code edges} int arrays) and commit times in a
+ * parallel int array. Parent order is preserved as recorded by git, duplicates are dropped.
+ * Commits that were referenced as parents but never walked (e.g. a shallow boundary) get an id
+ * but are not part of {@link #topo()} and have no commit time.
+ */
+final class CommitDag {
+
+    static final int NONE = -1;
+
+    private final Node[] nodes;
+    private final int[] commitTime;
+    private final boolean[] walked;
+    private final boolean[] merge;
+    private final int[] parentOffsets;
+    private final int[] parentEdges;
+    private final int[] childOffsets;
+    private final int[] childEdges;
+    private final int[] topo;
+    private final ObjectIdOwnerMap<Node> index;
+
+    private CommitDag(Builder b) {
+        int n = b.size;
+        this.nodes = Arrays.copyOf(b.nodes, n);
+        this.commitTime = Arrays.copyOf(b.commitTime, n);
+        this.walked = Arrays.copyOf(b.walked, n);
+        this.merge = Arrays.copyOf(b.merge, n);
+        this.index = b.index;
+
+        int e = b.edgeCount;
+        this.parentOffsets = new int[n + 1];
+        this.parentEdges = new int[e];
+        this.childOffsets = new int[n + 1];
+        this.childEdges = new int[e];
+
+        for (int i = 0; i < e; i++) {
+            parentOffsets[b.edgeChild[i] + 1]++;
+            childOffsets[b.edgeParent[i] + 1]++;
+        }
+        for (int i = 0; i < n; i++) {
+            parentOffsets[i + 1] += parentOffsets[i];
+            childOffsets[i + 1] += childOffsets[i];
+        }
+        int[] pFill = Arrays.copyOf(parentOffsets, n);
+        int[] cFill = Arrays.copyOf(childOffsets, n);
+        for (int i = 0; i < e; i++) {
+            int c = b.edgeChild[i];
+            int p = b.edgeParent[i];
+            parentEdges[pFill[c]++] = p;
+            childEdges[cFill[p]++] = c;
+        }
+        this.topo = repairTopo(Arrays.copyOf(b.topo, b.topoSize));
+    }
+
+    /**
+     * RevWalk's TOPO|REVERSE order is not strictly topological when commit times are skewed.
+     * Keeps the walk order but holds a commit back until all of its walked parents were emitted.
+     */
+    private int[] repairTopo(int[] walkOrder) {
+        int n = nodes.length;
+        int[] pending = new int[n];
+        for (int id : walkOrder) {
+            for (int i = 0; i < parentCount(id); i++) {
+                if (walked[parent(id, i)]) pending[id]++;
+            }
+        }
+        boolean[] passed = new boolean[n];
+        int[] out = new int[walkOrder.length];
+        int size = 0;
+        int[] stack = new int[walkOrder.length];
+        for (int id : walkOrder) {
+            passed[id] = true;
+            if (pending[id] != 0) continue;
+            int sp = 0;
+            stack[sp++] = id;
+            while (sp > 0) {
+                int cur = stack[--sp];
+                out[size++] = cur;
+                for (int i = childCount(cur) - 1; i >= 0; i--) {
+                    int c = child(cur, i);
+                    if (--pending[c] == 0 && passed[c]) stack[sp++] = c;
+                }
+            }
+        }
+        return out;
+    }
+
+    static Builder builder(int expectedCommits) {
+        return new Builder(expectedCommits);
+    }
+
+    /**
+     * Builder pre-filled with {@code base}: ids and topo order of the base commits are kept,
+     * commits added afterwards are appended.
+     */
+    static Builder builder(CommitDag base) {
+        Builder b = new Builder(base.size() + 1024);
+        for (int id = 0; id < base.size(); id++) {
+            b.intern(base.nodes[id]);
+        }
+        for (int id : base.topo) {
+            ObjectId[] parents = new ObjectId[base.parentCount(id)];
+            for (int i = 0; i < parents.length; i++) {
+                parents[i] = base.nodes[base.parent(id, i)];
+            }
+            b.addCommit(base.nodes[id], base.commitTime[id], base.merge[id], parents);
+        }
+        return b;
+    }
+
+    int size() {
+        return nodes.length;
+    }
+
+    int edgeCount() {
+        return parentEdges.length;
+    }
+
+    /** Dense id of the commit, or {@link #NONE} when it is not part of the DAG. */
+    int id(AnyObjectId objectId) {
+        Node n = index.get(objectId);
+        return n == null ? NONE : n.id;
+    }
+
+    int id(String sha) {
+        if (!ObjectId.isId(sha)) return NONE;
+        return id(ObjectId.fromString(sha));
+    }
+
+    String sha(int id) {
+        return nodes[id].name();
+    }
+
+    ObjectId objectId(int id) {
+        return nodes[id].copy();
+    }
+
+    boolean isWalked(int id) {
+        return walked[id];
+    }
+
+    /** Whether git recorded more than one parent for the commit. */
+    boolean isMerge(int id) {
+        return merge[id];
+    }
+
+    /** Orders two commits by object id, the same order as comparing their hex names. */
+    int compareIds(int a, int b) {
+        return nodes[a].compareTo(nodes[b]);
+    }
+
+    int commitTime(int id) {
+        return commitTime[id];
+    }
+
+    /** Commit time of a walked commit, {@code fallback} for commits that were never walked. */
+    int commitTimeOr(int id, int fallback) {
+        return walked[id] ? commitTime[id] : fallback;
+    }
+
+    int parentCount(int id) {
+        return parentOffsets[id + 1] - parentOffsets[id];
+    }
+
+    int parent(int id, int i) {
+        return parentEdges[parentOffsets[id] + i];
+    }
+
+    int childCount(int id) {
+        return childOffsets[id + 1] - childOffsets[id];
+    }
+
+    int child(int id, int i) {
+        return childEdges[childOffsets[id] + i];
+    }
+
+    /** Walked commits in reverse topological order: every parent precedes its children. */
+    int[] topo() {
+        return topo;
+    }
+
+    static final class Node extends ObjectIdOwnerMap.Entry {
+        private static final long serialVersionUID = 1L;
+
+        final int id;
+
+        Node(AnyObjectId objectId, int id) {
+            super(objectId);
+            this.id = id;
+        }
+    }
+
+    static final class Builder {
+        private final ObjectIdOwnerMap<Node> index = new ObjectIdOwnerMap<>();
+        private Node[] nodes;
+        private int[] commitTime;
+        private boolean[] walked;
+        private boolean[] merge;
+        private int size;
+
+        private int[] topo;
+        private int topoSize;
+
+        private int[] edgeChild;
+        private int[] edgeParent;
+        private int edgeCount;
+
+        private Builder(int expected) {
+            int cap = Math.max(16, expected);
+            nodes = new Node[cap];
+            commitTime = new int[cap];
+            walked = new boolean[cap];
+            merge = new boolean[cap];
+            topo = new int[cap];
+            edgeChild = new int[cap];
+            edgeParent = new int[cap];
+        }
+
+        int intern(AnyObjectId objectId) {
+            Node n = index.get(objectId);
+            if (n != null) return n.id;
+            if (size == nodes.length) {
+                int cap = size * 2;
+                nodes = Arrays.copyOf(nodes, cap);
+                commitTime = Arrays.copyOf(commitTime, cap);
+                walked = Arrays.copyOf(walked, cap);
+                merge = Arrays.copyOf(merge, cap);
+            }
+            n = new Node(objectId, size);
+            index.add(n);
+            nodes[size] = n;
+            return size++;
+        }
+
+        /**
+         * Records a walked commit together with its parents. Commits must be added in reverse
+         * topological order, i.e. parents first.
+         */
+        int addCommit(AnyObjectId commit, int time, AnyObjectId... parents) {
+            return addCommit(commit, time, parents.length > 1, parents);
+        }
+
+        /** Same as {@link #addCommit(AnyObjectId, int, AnyObjectId...)} with an explicit merge flag. */
+        int addCommit(AnyObjectId commit, int time, boolean isMerge, AnyObjectId... parents) {
+            int id = intern(commit);
+            commitTime[id] = time;
+            walked[id] = true;
+            merge[id] = isMerge;
+            if (topoSize == topo.length) topo = Arrays.copyOf(topo, topoSize * 2);
+            topo[topoSize++] = id;
+
+            int first = edgeCount;
+            for (AnyObjectId p : parents) {
+                int pid = intern(p);
+                boolean dup = false;
+                for (int i = first; i < edgeCount; i++) {
+                    if (edgeParent[i] == pid) {
+                        dup = true;
+                        break;
+                    }
+                }
+                if (dup) continue;
+                if (edgeCount == edgeChild.length) {
+                    edgeChild = Arrays.copyOf(edgeChild, edgeCount * 2);
+                    edgeParent = Arrays.copyOf(edgeParent, edgeCount * 2);
+                }
+                edgeChild[edgeCount] = id;
+                edgeParent[edgeCount] = pid;
+                edgeCount++;
+            }
+            return id;
+        }
+
+        CommitDag build() {
+            return new CommitDag(this);
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
+import org.eclipse.jgit.revwalk.RevObject;
+import org.eclipse.jgit.revwalk.RevSort;
+import org.eclipse.jgit.revwalk.RevWalk;
+
+import java.io.IOException;
+
+/**
+ * Splits the history of a clone that has fork remotes fetched into it by where each commit is
+ * reachable from. Local branches, tags and the upstream remote's branches count as upstream;
+ * branches of every other remote count as forks.
+ * <p>
+ * One {@link RevWalk} is started from all tips with an {@code upstream} or {@code fork}
+ * {@link RevFlag} on each, both flags carried to parents. The walk is topologically sorted, which
+ * drains and carries through the whole history before the first commit is produced, so the flags
+ * a commit is emitted with are final and it can be handed to the sink straight away.
+ */
+public final class ForkDivergence {
+
+    public enum Side {UPSTREAM_ONLY, FORK_ONLY, BOTH}
+
+    public interface Sink {
+        void accept(RevCommit commit, Side side) throws IOException;
+    }
+
+    public record Summary(long upstreamOnly, long forkOnly, long both) {
+    }
+
+    private ForkDivergence() {
+    }
+
+    /**
+     * Walks the repository once and passes every commit reachable from any branch or tag to
+     * {@code sink} with its side. {@code upstreamRemote} is the remote name of the upstream
+     * project, normally {@code origin}.
+     */
+    public static Summary analyze(Repository repo, String upstreamRemote, Sink sink) throws IOException {
+        String upstreamPrefix = Constants.R_REMOTES + upstreamRemote + "/";
+        long upstreamOnly = 0;
+        long forkOnly = 0;
+        long both = 0;
+        try (RevWalk walk = new RevWalk(repo)) {
+            RevFlag upstream = walk.newFlag("upstream");
+            RevFlag fork = walk.newFlag("fork");
+            walk.carry(upstream);
+            walk.carry(fork);
+
+            for (Ref ref : repo.getRefDatabase().getRefs()) {
+                if (ref.isSymbolic() || ref.getObjectId() == null) continue;
+                String name = ref.getName();
+                RevFlag side;
+                if (name.startsWith(Constants.R_HEADS) || name.startsWith(Constants.R_TAGS)
+                        || name.startsWith(upstreamPrefix)) {
+                    side = upstream;
+                } else if (name.startsWith(Constants.R_REMOTES)) {
+                    side = fork;
+                } else {
+                    continue;
+                }
+                RevObject tip = walk.peel(walk.parseAny(ref.getObjectId()));
+                if (!(tip instanceof RevCommit commit)) continue;
+                commit.add(side);
+                walk.markStart(commit);
+            }
+            walk.sort(RevSort.TOPO);
+
+            for (RevCommit c : walk) {
+                boolean up = c.has(upstream);
+                boolean fk = c.has(fork);
+                Side side = up && fk ? Side.BOTH : fk ? Side.FORK_ONLY : Side.UPSTREAM_ONLY;
+                switch (side) {
+                    case BOTH -> both++;
+                    case FORK_ONLY -> forkOnly++;
+                    case UPSTREAM_ONLY -> upstreamOnly++;
+                }
+                sink.accept(c, side);
+            }
+        }
+        return new Summary(upstreamOnly, forkOnly, both);
+    }
+}
@@ -1,7 +1,5 @@
 package com.research.qmodel.graph;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.Set;
@@ -25,10 +23,10 @@ import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Value;
 
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
-import java.util.ArrayList;
-import java.util.HashMap;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
 import java.util.Map;
 
@@ -38,6 +36,7 @@ public abstract class GitMaintainable {
   @Value("${github.clone.timeout:3000}")
   private int REQUEST_TIMEOUT;
 
+  /** Blocking full clone; see {@link RepoCloneManager} to clone or fetch many repos at once. */
   public void cloneRepo(String owner, String projectName, String cloneDirectoryPath) {
     try {
       String cloneUrl = "https://github.com/" + owner + "/" + projectName;
@@ -51,7 +50,8 @@ public abstract class GitMaintainable {
           .setURI(cloneUrl)
           .setDirectory(cloneDirectory)
           .setTimeout(REQUEST_TIMEOUT)
-          /*.setProgressMonitor(new SimpleProgressMonitor())*/
+          .setProgressMonitor(
+              new SimpleProgressMonitor(owner + "/" + projectName, new File(cloneDirectory, ".git")))
           .call();
       LOGGER.info("Repository " + owner + "/" + projectName + " cloned successfully.");
     } catch (GitAPIException e) {
@@ -60,55 +60,10 @@ public abstract class GitMaintainable {
   }
 
 
+  /** Writes the vertices as Grafana node-graph JSON; a {@code .gz} file name gets gzip output. */
   public void exportGraph(String filePath, Map<String, Vertex> vertices) {
-    List<Map<String, Object>> nodes = new ArrayList<>();
-    List<Map<String, Object>> edges = new ArrayList<>();
-
-    int edgeId = 1;
-    for (Map.Entry<String, Vertex> entry : vertices.entrySet()) {
-      Vertex vertex = entry.getValue();
-
-      Map<String, Object> node = new HashMap<>();
-      node.put("id", vertex.sha);
-      node.put("title", "Commit " + vertex.sha);
-      if (vertex != null && vertex.getBranches() != null) {
-        node.put("subTitle", "Branches: " + String.join(", ", vertex.branches));
-      }
-      node.put("arc__failed", vertex.getArcFailed());
-      node.put("arc__passed", vertex.getArcPassed());
-      node.put("detail__zone", "Zone " + vertex.sha);
-      if (vertex.getTimestamp() != null) {
-        node.put("timestamp", vertex.getTimestamp().toString());
-      }
-      node.put("numberOfVertices", vertex.getNumberOfVertices());
-      node.put("numberOfBranches", vertex.getNumberOfBranches());
-      node.put("numberOfEdges", vertex.getNumberOfEdges());
-      node.put("inDegree", vertex.getInDegree());
-      node.put("outDegree", vertex.getOutDegree());
-      node.put("averageDegree", vertex.getAverageDegree());
-      node.put("maxDepthOfCommitHistory", vertex.getMaxDepthOfCommitHistory());
-      node.put("minDepthOfCommitHistory", vertex.getMinDepthOfCommitHistory());
-      node.put("isMerge", vertex.isMerge());
-
-      nodes.add(node);
-
-      for (String neighbor : vertex.neighbors) {
-        Map<String, Object> edge = new HashMap<>();
-        edge.put("id", String.valueOf(edgeId++));
-        edge.put("source", vertex.sha);
-        edge.put("target", neighbor);
-        edge.put("mainStat", "53/s");
-        edges.add(edge);
-      }
-    }
-
-    Map<String, Object> graph = new HashMap<>();
-    graph.put("nodes", nodes);
-    graph.put("edges", edges);
-
-    Gson gson = new GsonBuilder().setPrettyPrinting().create();
-    try (FileWriter writer = new FileWriter(filePath)) {
-      gson.toJson(graph, writer);
+    try (OutputStream out = Files.newOutputStream(Path.of(filePath))) {
+      GraphExporter.export(vertices, GraphExporter.ALL, out, filePath.endsWith(".gz"), true);
     } catch (IOException e) {
       LOGGER.error(e.getMessage());
     }
@@ -117,10 +72,10 @@ public abstract class GitMaintainable {
   public Set<String> getAllCommits(String repoPath) throws Exception {
     Set<String> commitHashes = new HashSet<>();
 
-    try (Git git = Git.open(new File(repoPath))) {
-      Repository repository = git.getRepository();
+    try (RepositoryPool.Lease lease = RepositoryPool.shared().acquire(repoPath)) {
+      Repository repository = lease.repository();
 
-      List<Ref> allRefs = git.getRepository().getRefDatabase().getRefs();
+      List<Ref> allRefs = repository.getRefDatabase().getRefs();
 
       try (RevWalk revWalk = new RevWalk(repository)) {
         for (Ref ref : allRefs) {
@@ -142,9 +97,9 @@ public abstract class GitMaintainable {
   public Set<String> getReferencedCommits(String repoPath) throws Exception {
     Set<String> referencedHashes = new HashSet<>();
 
-    try (Git git = Git.open(new File(repoPath))) {
-      Collection<Ref> refs = git.getRepository().getRefDatabase().getRefs();
-      try (RevWalk revWalk = new RevWalk(git.getRepository())) {
+    try (RepositoryPool.Lease lease = RepositoryPool.shared().acquire(repoPath)) {
+      Collection<Ref> refs = lease.repository().getRefDatabase().getRefs();
+      try (RevWalk revWalk = new RevWalk(lease.repository())) {
         for (Ref ref : refs) {
           ObjectId refObjectId = ref.getObjectId();
           if (refObjectId != null) {
@@ -161,13 +116,26 @@ public abstract class GitMaintainable {
     return referencedHashes;
   }
 
+  /**
+   * Commits reachable only from fork remotes, i.e. not from local branches, tags or
+   * {@code origin}. See {@link ForkDivergence}.
+   */
   public Set<String> getForkedCommits(String repoPath) throws Exception {
-    Set<String> allCommits = getAllCommits(repoPath);
-    Set<String> referencedCommits = getReferencedCommits(repoPath);
-    allCommits.removeAll(referencedCommits);
-    return allCommits;
+    Set<String> forked = new HashSet<>();
+    try (RepositoryPool.Lease lease = RepositoryPool.shared().acquire(repoPath)) {
+      ForkDivergence.Summary summary = ForkDivergence.analyze(lease.repository(), "origin",
+          (commit, side) -> {
+            if (side == ForkDivergence.Side.FORK_ONLY) forked.add(commit.getName());
+          });
+      LOGGER.info("Fork divergence of {}: {}", repoPath, summary);
+    }
+    return forked;
   }
 
+  /**
+   * Walks the first parents of every branch for a single commit; use
+   * {@link #findBranchesCommitsWereBornIn} for many commits, it indexes the whole DAG once.
+   */
   // TODO find unique branch
   public String findBranchCommitWasBornIn(String sha, Repository repository)
       throws IOException, GitAPIException {
@@ -176,12 +144,8 @@ public abstract class GitMaintainable {
       throw new IllegalArgumentException("Commit not found: " + sha);
     }
 
-    RevCommit targetCommit;
-    try (RevWalk revWalk = new RevWalk(repository)) {
-      targetCommit = revWalk.parseCommit(commitId);
-    }
-
-    try (Git git = new Git(repository)) {
+    try (Git git = new Git(repository); RevWalk walk = new RevWalk(repository)) {
+      RevCommit targetCommit = walk.parseCommit(commitId);
       List<Ref> branches = git.branchList().setListMode(ListBranchCommand.ListMode.ALL).call();
 
       String bestBranch = null;
@@ -191,26 +155,21 @@ public abstract class GitMaintainable {
         if (branch.getName().contains("HEAD") || branch.getName().contains("refs/heads/master")) {
           continue;
         }
-        RevCommit branchTip;
-        try (RevWalk walk = new RevWalk(repository)) {
-          branchTip = walk.parseCommit(branch.getObjectId());
-
-          RevCommit current = branchTip;
-          int depth = 0;
-          while (current != null) {
-            if (current.equals(targetCommit)) {
-              if (depth > maxDepth) {
-                maxDepth = depth;
-                bestBranch = branch.getName();
-              }
-              break;
-            }
-            if (current.getParentCount() > 0) {
-              current = walk.parseCommit(current.getParent(0));
-              depth++;
-            } else {
-              break;
+        RevCommit current = walk.parseCommit(branch.getObjectId());
+        int depth = 0;
+        while (current != null) {
+          if (current.equals(targetCommit)) {
+            if (depth > maxDepth) {
+              maxDepth = depth;
+              bestBranch = branch.getName();
             }
+            break;
+          }
+          if (current.getParentCount() > 0) {
+            current = walk.parseCommit(current.getParent(0));
+            depth++;
+          } else {
+            break;
           }
         }
       }
@@ -220,4 +179,13 @@ public abstract class GitMaintainable {
           : null;
     }
   }
+
+  /**
+   * Branch each commit was born in, resolved with one {@link BranchOriginIndex} over the
+   * repository's branches. Commits on no branch's first-parent chain are left out.
+   */
+  public Map<String, String> findBranchesCommitsWereBornIn(Collection<String> shas, Repository repository)
+      throws IOException, GitAPIException {
+    return BranchOriginIndex.build(repository).branchesOf(shas);
+  }
 }
@@ -3,100 +3,89 @@ package com.research.qmodel.graph;
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import com.fasterxml.jackson.annotation.JsonInclude;
 import com.fasterxml.jackson.annotation.JsonProperty;
-import com.research.qmodel.repos.CommitRepository;
+import com.research.qmodel.service.GraphMetricsWriter;
 import lombok.Getter;
-import org.eclipse.jgit.api.Git;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Ref;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevFlag;
 import org.eclipse.jgit.revwalk.RevSort;
 import org.eclipse.jgit.revwalk.RevWalk;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
-import org.springframework.context.annotation.Scope;
-import org.springframework.stereotype.Component;
-import org.springframework.transaction.annotation.Transactional;
 
 import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
 import java.util.*;
+import java.util.function.Predicate;
 
-import static org.springframework.context.annotation.ScopedProxyMode.TARGET_CLASS;
-import static org.springframework.web.context.WebApplicationContext.SCOPE_REQUEST;
-
-@Component
-@Scope(value = SCOPE_REQUEST, proxyMode = TARGET_CLASS)
+/**
+ * Commit DAG of one clone plus the per-commit graph metrics derived from it. Instances are
+ * built, refreshed and shared through {@link GraphRegistry}; a built instance is not modified
+ * again, a refresh produces a new one.
+ */
 public class Graph extends GitMaintainable {
 
-    private final Map<String, List<String>> fpPath = new HashMap<>();
-
-    private final Map<String, String> fpSegmentStartOf = new HashMap<>();
-
     private static final Logger LOG = LoggerFactory.getLogger(Graph.class);
 
     private static final int SECS_PER_DAY = 24 * 60 * 60;
 
-    @JsonProperty("vertices")
-    private final Map<String, Vertex> vertices = new LinkedHashMap<>();
+    private VertexStore vertices = VertexStore.EMPTY;
 
-    private final Map<String, Set<String>> parents = new HashMap<>();
+    private CommitDag dag = CommitDag.builder(0).build();
 
-    private final Map<String, Set<String>> children = new HashMap<>();
+    private int[] firstParent = new int[0];
 
-    private final Map<String, String> firstParent = new HashMap<>();
+    private int[] fpSegmentStartOf = new int[0];
 
-    private final Map<String, Integer> commitTimeSec = new HashMap<>();
+    private int[] fpDist = new int[0];
 
-    private final Map<String, String> fpSegStartMemo = new HashMap<>();
+    private int[] minDepth = new int[0];
 
+    private int[] maxDepth = new int[0];
 
-    private long edgeCount = 0L;
+    private int[] upstreamUnique = new int[0];
 
-    @Autowired
+    private int[] daysSinceLast = new int[0];
 
-    private CommitRepository commitRepository;
+    private int[] branchCounts = new int[0];
 
-    private void addVertex(String sha) {
-        vertices.putIfAbsent(sha, new Vertex(sha));
-    }
+    private HeadReachability reachability;
 
-    private void addEdge(RevCommit parent, RevCommit child) {
-        String p = parent.getId().getName();
-        String c = child.getId().getName();
+    private Map<String, Integer> headIndexByRef = Map.of();
 
-        addVertex(p);
-        addVertex(c);
-        Vertex vp = vertices.get(p);
-        Vertex vc = vertices.get(c);
+    private int[] pageOrder = new int[0];
 
-        if (vp.getNeighbors().add(c)) {
-            vp.incrementOutDegree();
-            vc.incrementInDegree();
-            parents.computeIfAbsent(c, k -> new HashSet<>()).add(p);
-            children.computeIfAbsent(p, k -> new HashSet<>()).add(c);
-            edgeCount++;
-        }
+    private BranchOriginIndex branchOrigin;
+
+    private final GraphMetricsWriter metricsWriter;
+
+    public Graph(GraphMetricsWriter metricsWriter) {
+        this.metricsWriter = metricsWriter;
     }
 
-    private String chooseFirstParentByContinuity(String sha, Map<String, Integer> distSoFar) {
-        Set<String> ps = parents.getOrDefault(sha, Collections.emptySet());
-        if (ps.isEmpty()) return null;
-        if (ps.size() == 1) return ps.iterator().next();
+    private int chooseFirstParentByContinuity(int id, int[] distSoFar) {
+        int pc = dag.parentCount(id);
+        if (pc == 0) return CommitDag.NONE;
+        if (pc == 1) return dag.parent(id, 0);
 
-        String best = null;
+        int best = CommitDag.NONE;
         int bestCand = Integer.MIN_VALUE;
 
-        for (String p : ps) {
-            int parentOut = children.getOrDefault(p, Collections.emptySet()).size();
-            int cand = (parentOut > 1) ? 0 : (distSoFar.getOrDefault(p, 0) + 1);
+        for (int i = 0; i < pc; i++) {
+            int p = dag.parent(id, i);
+            int parentOut = dag.childCount(p);
+            int cand = (parentOut > 1) ? 0 : (distSoFar[p] + 1);
             if (cand > bestCand) {
                 bestCand = cand;
                 best = p;
-            } else if (cand == bestCand && best != null) {
-                int tp = commitTimeSec.getOrDefault(p, Integer.MAX_VALUE);
-                int tb = commitTimeSec.getOrDefault(best, Integer.MAX_VALUE);
-                if (tp < tb || (tp == tb && p.compareTo(best) < 0)) {
+            } else if (cand == bestCand && best != CommitDag.NONE) {
+                int tp = dag.commitTimeOr(p, Integer.MAX_VALUE);
+                int tb = dag.commitTimeOr(best, Integer.MAX_VALUE);
+                if (tp < tb || (tp == tb && dag.compareIds(p, best) < 0)) {
                     best = p;
                 }
             }
@@ -104,351 +93,764 @@ public class Graph extends GitMaintainable {
         return best;
     }
 
-    private Map<String, Integer> computeFpContinuityAndPaths(List<String> topo) {
-        Map<String, Integer> dist = new HashMap<>(vertices.size() * 2);
-
-        firstParent.clear();
-        fpPath.clear();
-        fpSegmentStartOf.clear();
-        fpSegStartMemo.clear();
-
-        for (String sha : topo) {
-            Set<String> ps = parents.getOrDefault(sha, Collections.emptySet());
-            if (ps.isEmpty()) {
-                firstParent.put(sha, null);
-                dist.put(sha, 0);
-                fpPath.put(sha, new ArrayList<>(List.of(sha)));
-                fpSegmentStartOf.put(sha, sha);
+    /**
+     * Chooses a first parent per commit and records, for each commit, its distance to and the
+     * start of its first-parent segment. Paths are not stored: the first-parent pointers already
+     * form a tree, so {@link #firstParentPath(String)} rebuilds a path on demand.
+     * Commits before {@code topo[from]} keep the values already in the arrays.
+     */
+    private void computeFpContinuityAndPaths(int[] topo, int from) {
+        for (int k = from; k < topo.length; k++) {
+            int id = topo[k];
+            if (dag.parentCount(id) == 0) {
+                fpDist[id] = 0;
+                firstParent[id] = CommitDag.NONE;
+                fpSegmentStartOf[id] = id;
                 continue;
             }
-            String fp = chooseFirstParentByContinuity(sha, dist);
-            firstParent.put(sha, fp);
+            int fp = chooseFirstParentByContinuity(id, fpDist);
+            firstParent[id] = fp;
 
-            if (fp == null) {
-                dist.put(sha, 0);
-                fpPath.put(sha, new ArrayList<>(List.of(sha)));
-                fpSegmentStartOf.put(sha, sha);
-                continue;
-            }
-            int parentOut = children.getOrDefault(fp, Collections.emptySet()).size();
+            int parentOut = dag.childCount(fp);
             if (parentOut > 1) {
-                dist.put(sha, 0);
-                fpPath.put(sha, new ArrayList<>(List.of(sha)));
-                fpSegmentStartOf.put(sha, sha);
+                fpDist[id] = 0;
+                fpSegmentStartOf[id] = id;
             } else {
-                int dParent = dist.getOrDefault(fp, 0);
-                dist.put(sha, dParent + 1);
-
-                List<String> parentPath = fpPath.get(fp);
-                if (parentPath == null) parentPath = new ArrayList<>(List.of(fp));
-                List<String> path = new ArrayList<>(parentPath.size() + 1);
-                path.addAll(parentPath);
-                path.add(sha);
-                fpPath.put(sha, path);
-
-                fpSegmentStartOf.put(sha, fpSegmentStartOf.getOrDefault(fp, fp));
+                fpDist[id] = fpDist[fp] + 1;
+                int parentStart = fpSegmentStartOf[fp];
+                fpSegmentStartOf[id] = parentStart == CommitDag.NONE ? fp : parentStart;
             }
         }
-        return dist;
     }
 
-
-    private double averageDegree() {
-        int v = vertices.size();
-        return v == 0 ? 0.0 : (double) edgeCount / (double) v;
+    /**
+     * First-parent path from the start of the commit's segment down to the commit itself, or an
+     * empty list for an unknown commit.
+     */
+    public List<String> firstParentPath(String sha) {
+        int id = dag.id(sha);
+        if (id == CommitDag.NONE || !dag.isWalked(id)) return List.of();
+        String[] path = new String[fpDist[id] + 1];
+        int cur = id;
+        for (int i = path.length - 1; i >= 0; i--) {
+            path[i] = dag.sha(cur);
+            cur = firstParent[cur];
+        }
+        return Arrays.asList(path);
     }
 
-    private String fpSegmentStart(String sha) {
-        String cached = fpSegStartMemo.get(sha);
-        if (cached != null) return cached;
 
-        String cur = sha;
-        while (true) {
-            String p = firstParent.get(cur);
-            if (p == null) break;
-            int parentOut = children.getOrDefault(p, Collections.emptySet()).size();
-            if (parentOut > 1) break;
-            cur = p;
-        }
-        fpSegStartMemo.put(sha, cur);
-        return cur;
+    private double averageDegree() {
+        int v = dag.size();
+        return v == 0 ? 0.0 : (double) dag.edgeCount() / (double) v;
     }
 
-    private void computeDepthsDP(List<String> topo) {
-        Map<String, Integer> minDepth = new HashMap<>(vertices.size() * 2);
-        Map<String, Integer> maxDepth = new HashMap<>(vertices.size() * 2);
+    private int fpSegmentStart(int id) {
+        int start = fpSegmentStartOf[id];
+        return start == CommitDag.NONE ? id : start;
+    }
 
-        for (String sha : topo) {
-            Set<String> ps = parents.getOrDefault(sha, Collections.emptySet());
+    private void computeDepthsDP(int[] topo, int from) {
+        for (int k = from; k < topo.length; k++) {
+            int id = topo[k];
+            int pc = dag.parentCount(id);
             int mn, mx;
-            if (ps.isEmpty()) {
+            if (pc == 0) {
                 mn = 0;
                 mx = 0;
             } else {
                 mn = Integer.MAX_VALUE;
                 mx = Integer.MIN_VALUE;
-                for (String p : ps) {
-                    int pmn = minDepth.getOrDefault(p, 0) + 1;
-                    int pmx = maxDepth.getOrDefault(p, 0) + 1;
+                for (int i = 0; i < pc; i++) {
+                    int p = dag.parent(id, i);
+                    int pmn = minDepth[p] + 1;
+                    int pmx = maxDepth[p] + 1;
                     if (pmn < mn) mn = pmn;
                     if (pmx > mx) mx = pmx;
                 }
             }
-            minDepth.put(sha, mn);
-            maxDepth.put(sha, mx);
-            Vertex v = vertices.get(sha);
-            v.setMinDepthOfCommitHistory(mn);
-            v.setMaxDepthOfCommitHistory(mx);
+            minDepth[id] = mn;
+            maxDepth[id] = mx;
         }
     }
 
-    private Map<String, Integer> computeDistToBranchStart(List<String> topo) {
-        Map<String, Integer> dist = new HashMap<>(vertices.size() * 2);
-        for (String sha : topo) {
-            String p = firstParent.get(sha);
-            if (p == null) {
-                dist.put(sha, 0);
-            } else {
-                int parentOut = children.getOrDefault(p, Collections.emptySet()).size();
-                if (parentOut > 1) {
-                    dist.put(sha, 0);
-                } else {
-                    dist.put(sha, dist.getOrDefault(p, 0) + 1);
-                }
+    /**
+     * Days since the previous merge on the commit's first-parent segment. Commits before
+     * {@code topo[from]} keep their values, they are only scanned for the merges they contribute.
+     */
+    private void computeDaysSinceLastMerge(int[] topo, int from) {
+        int n = dag.size();
+        int[] lastMergeTimeBySeg = new int[n];
+        boolean[] segHasMerge = new boolean[n];
+
+        for (int k = 0; k < topo.length; k++) {
+            int id = topo[k];
+            boolean merge = dag.parentCount(id) > 1;
+            if (k < from && !merge) continue;
+            int seg = fpSegmentStart(id);
+            int t = dag.commitTime(id);
+
+            if (k >= from) {
+                int deltaSec = segHasMerge[seg] ? Math.max(0, t - lastMergeTimeBySeg[seg]) : 0;
+                daysSinceLast[id] = deltaSec / SECS_PER_DAY;
             }
-        }
-        return dist;
-    }
-
-    private Map<String, Integer> computeDaysSinceLastMerge(List<String> topo) {
-        Map<String, Integer> outDays = new HashMap<>(vertices.size() * 2);
-        Map<String, Integer> lastMergeTimeBySeg = new HashMap<>();
 
-        for (String sha : topo) {
-            String seg = fpSegmentStart(sha);
-            Integer last = lastMergeTimeBySeg.get(seg);
-            int t = commitTimeSec.getOrDefault(sha, 0);
-
-            if (last == null) outDays.put(sha, 0);
-            else {
-                int deltaSec = Math.max(0, t - last);
-                outDays.put(sha, deltaSec / SECS_PER_DAY);
-            }
-
-            if (parents.getOrDefault(sha, Collections.emptySet()).size() > 1) {
-                lastMergeTimeBySeg.put(seg, t);
+            if (merge) {
+                lastMergeTimeBySeg[seg] = t;
+                segHasMerge[seg] = true;
             }
         }
-        return outDays;
     }
 
     private static final class HeadInfo {
         final RevCommit tip;
-        final String tipSha;
-        final String segStartSha;
+        final int tipId;
+        final int segStart;
         final int segStartTime;
 
-        HeadInfo(RevCommit tip, String tipSha, String segStartSha, int segStartTime) {
+        HeadInfo(RevCommit tip, int tipId, int segStart, int segStartTime) {
             this.tip = tip;
-            this.tipSha = tipSha;
-            this.segStartSha = segStartSha;
+            this.tipId = tipId;
+            this.segStart = segStart;
             this.segStartTime = segStartTime;
         }
     }
 
-    private List<HeadInfo> collectHeadsInfo(Repository repo) throws Exception {
+    private HeadInfo headInfo(RevCommit tip) {
+        int tipId = dag.id(tip);
+        if (tipId == CommitDag.NONE) {
+            return new HeadInfo(tip, tipId, CommitDag.NONE, Integer.MIN_VALUE);
+        }
+        int base = fpSegmentStart(tipId);
+        return new HeadInfo(tip, tipId, base, dag.commitTimeOr(base, Integer.MIN_VALUE));
+    }
+
+    /** Heads with distinct tips; {@code tipByRef} receives the tip of every ref that was looked at. */
+    private List<HeadInfo> collectHeadsInfo(Repository repo, Map<String, String> tipByRef) throws Exception {
         Map<String, HeadInfo> byTip = new LinkedHashMap<>();
         try (RevWalk w = new RevWalk(repo)) {
             for (Ref r : repo.getRefDatabase().getRefsByPrefix("refs/heads/")) {
                 ObjectId id = r.getObjectId();
                 if (id == null) continue;
                 RevCommit tip = w.parseCommit(id);
-                String tipSha = tip.getId().getName();
-                String base = fpSegmentStart(tipSha);
-                int baseTime = commitTimeSec.getOrDefault(base, Integer.MIN_VALUE);
-                byTip.putIfAbsent(tipSha, new HeadInfo(tip, tipSha, base, baseTime));
+                byTip.putIfAbsent(tip.getId().getName(), headInfo(tip));
+                tipByRef.put(r.getName(), tip.getId().getName());
             }
             for (Ref r : repo.getRefDatabase().getRefsByPrefix("refs/remotes/")) {
                 if ("refs/remotes/origin/HEAD".equals(r.getName())) continue;
                 ObjectId id = r.getObjectId();
                 if (id == null) continue;
                 RevCommit tip = w.parseCommit(id);
-                String tipSha = tip.getId().getName();
-                String base = fpSegmentStart(tipSha);
-                int baseTime = commitTimeSec.getOrDefault(base, Integer.MIN_VALUE);
-                byTip.putIfAbsent(tipSha, new HeadInfo(tip, tipSha, base, baseTime));
+                byTip.putIfAbsent(tip.getId().getName(), headInfo(tip));
+                tipByRef.put(r.getName(), tip.getId().getName());
             }
             ObjectId headId = repo.resolve("HEAD");
             if (headId != null) {
                 RevCommit tip = w.parseCommit(headId);
-                String tipSha = tip.getId().getName();
-                String base = fpSegmentStart(tipSha);
-                int baseTime = commitTimeSec.getOrDefault(base, Integer.MIN_VALUE);
-                byTip.putIfAbsent(tipSha, new HeadInfo(tip, tipSha, base, baseTime));
+                byTip.putIfAbsent(tip.getId().getName(), headInfo(tip));
+                tipByRef.put("HEAD", tip.getId().getName());
             }
         }
         return new ArrayList<>(byTip.values());
     }
 
-    private List<Set<String>> computeReachableSetsPerHead(Repository repo, List<HeadInfo> heads) throws Exception {
-        List<Set<String>> reachSets = new ArrayList<>(heads.size());
-        for (HeadInfo hi : heads) {
-            Set<String> seen = new HashSet<>();
-            try (RevWalk w = new RevWalk(repo)) {
-                w.markStart(hi.tip);
-                for (RevCommit c : w) {
-                    seen.add(c.getId().getName());
+    /**
+     * DAG ids a head reaches directly: its tip, or for a tip outside the DAG (e.g. a detached
+     * HEAD) the first DAG commits on each path below it.
+     */
+    private int[] seedsOf(Repository repo, HeadInfo head) throws Exception {
+        if (head.tipId != CommitDag.NONE) return new int[]{head.tipId};
+
+        List<Integer> seeds = new ArrayList<>();
+        try (RevWalk w = new RevWalk(repo)) {
+            RevFlag queued = w.newFlag("queued");
+            Deque<RevCommit> pending = new ArrayDeque<>();
+            RevCommit tip = w.parseCommit(head.tip);
+            tip.add(queued);
+            pending.add(tip);
+            while (!pending.isEmpty()) {
+                RevCommit c = pending.poll();
+                int id = dag.id(c);
+                if (id != CommitDag.NONE) {
+                    seeds.add(id);
+                    continue;
+                }
+                w.parseHeaders(c);
+                for (RevCommit p : c.getParents()) {
+                    if (p.has(queued)) continue;
+                    p.add(queued);
+                    pending.add(p);
                 }
             }
-            reachSets.add(seen);
         }
-        return reachSets;
+        return seeds.stream().mapToInt(Integer::intValue).toArray();
     }
 
-    private Map<String, Integer> computeBranchCountsTA(Repository repo, List<String> topo) throws Exception {
-        List<HeadInfo> heads = collectHeadsInfo(repo);
-        List<Set<String>> reach = computeReachableSetsPerHead(repo, heads);
+    private void computeBranchCountsTA(Repository repo, int[] topo) throws Exception {
+        Map<String, String> tipByRef = new LinkedHashMap<>();
+        List<HeadInfo> heads = new ArrayList<>(collectHeadsInfo(repo, tipByRef));
+        heads.sort(Comparator.comparingInt(h -> h.segStartTime));
+
+        int[][] seeds = new int[heads.size()][];
+        int[] headStartTimes = new int[heads.size()];
+        Map<String, Integer> indexByTip = new HashMap<>();
+        for (int i = 0; i < heads.size(); i++) {
+            seeds[i] = seedsOf(repo, heads.get(i));
+            headStartTimes[i] = heads.get(i).segStartTime;
+            indexByTip.put(heads.get(i).tip.getId().getName(), i);
+        }
+        reachability = HeadReachability.compute(dag, seeds);
+        Map<String, Integer> byRef = new HashMap<>();
+        tipByRef.forEach((ref, tip) -> byRef.put(ref, indexByTip.get(tip)));
+        headIndexByRef = byRef;
+
+        MetricPasses.forEach(topo, 0, topo.length, id -> {
+            int eligible = countAtMost(headStartTimes, dag.commitTime(id));
+            branchCounts[id] = reachability.countReaching(id, eligible);
+        });
+    }
 
-        Map<String, Integer> out = new HashMap<>(topo.size() * 2);
-        for (String sha : topo) {
-            int t = commitTimeSec.getOrDefault(sha, Integer.MIN_VALUE);
-            int cnt = 0;
-            for (int i = 0; i < heads.size(); i++) {
-                HeadInfo h = heads.get(i);
-                if (h.segStartTime <= t && reach.get(i).contains(sha)) cnt++;
-            }
-            out.put(sha, cnt);
+    /** Number of leading entries of the ascending {@code sorted} array that are {@code <= t}. */
+    private static int countAtMost(int[] sorted, int t) {
+        int lo = 0;
+        int hi = sorted.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (sorted[mid] <= t) lo = mid + 1;
+            else hi = mid;
         }
-        return out;
+        return lo;
     }
 
 
-    private final Map<String, Set<String>> distinctSourcesBeforeSet = new HashMap<>();
+    /**
+     * For each commit, the number of distinct segments merged into its first-parent history
+     * before it. The sets only grow along first-parent edges, so they are evaluated with one
+     * depth-first walk over the first-parent tree that adds a merge's sources on the way down
+     * and removes them on the way back up, instead of copying a set per commit.
+     * <p>
+     * Only commits from {@code topo[from]} on are evaluated; a walk that starts below an earlier
+     * commit is first seeded with the sources on that commit's first-parent chain.
+     */
+    private void computeDistinctMergesBefore(int[] topo, int from) {
+        int n = dag.size();
+        boolean[] inRange = new boolean[n];
+        for (int k = from; k < topo.length; k++) inRange[topo[k]] = true;
+
+        int[] fpChildOffsets = new int[n + 1];
+        for (int k = from; k < topo.length; k++) {
+            int fp = firstParent[topo[k]];
+            if (fp != CommitDag.NONE && inRange[fp]) fpChildOffsets[fp + 1]++;
+        }
+        for (int i = 0; i < n; i++) fpChildOffsets[i + 1] += fpChildOffsets[i];
+        int[] fpChildren = new int[fpChildOffsets[n]];
+        int[] fill = Arrays.copyOf(fpChildOffsets, n);
+        for (int k = from; k < topo.length; k++) {
+            int id = topo[k];
+            int fp = firstParent[id];
+            if (fp != CommitDag.NONE && inRange[fp]) fpChildren[fill[fp]++] = id;
+        }
 
-    private Map<String, Integer> computeDistinctMergesBefore(List<String> topo) {
-        Map<String, Set<String>> inclAt = new HashMap<>(vertices.size() * 2);
-        Map<String, Integer> before = new HashMap<>(vertices.size() * 2);
+        int[] refCount = new int[n];
+        int distinct = 0;
+        // entries >= 0 enter a commit, ~id leaves it
+        int[] stack = new int[2 * (topo.length - from)];
+        for (int k = from; k < topo.length; k++) {
+            int root = topo[k];
+            int fp = firstParent[root];
+            if (fp != CommitDag.NONE && inRange[fp]) continue;
+            boolean seeded = fp != CommitDag.NONE && dag.isWalked(fp);
+            if (seeded) distinct += applyChainSources(fp, refCount, 1);
+            int sp = 0;
+            stack[sp++] = root;
+            while (sp > 0) {
+                int e = stack[--sp];
+                boolean enter = e >= 0;
+                int id = enter ? e : ~e;
+                if (enter) upstreamUnique[id] = distinct;
+                distinct += applySources(id, refCount, enter ? 1 : -1);
+                if (enter) {
+                    stack[sp++] = ~id;
+                    for (int i = fpChildOffsets[id]; i < fpChildOffsets[id + 1]; i++) {
+                        stack[sp++] = fpChildren[i];
+                    }
+                }
+            }
+            if (seeded) distinct += applyChainSources(fp, refCount, -1);
+        }
+    }
 
-        for (String sha : topo) {
-            String fp = firstParent.get(sha);
-            Set<String> base = (fp == null) ? Collections.emptySet()
-                    : inclAt.getOrDefault(fp, Collections.emptySet());
+    /** Adds ({@code delta = 1}) or removes a merge's sources, returns the change in distinct sources. */
+    private int applySources(int id, int[] refCount, int delta) {
+        int pc = dag.parentCount(id);
+        if (pc < 2) return 0;
+        int change = 0;
+        for (int i = 0; i < pc; i++) {
+            int p = dag.parent(id, i);
+            if (p == firstParent[id]) continue;
+            int src = fpSegmentStart(p);
+            if (delta > 0) {
+                if (refCount[src]++ == 0) change++;
+            } else if (--refCount[src] == 0) {
+                change--;
+            }
+        }
+        return change;
+    }
 
-            before.put(sha, base.size());
-            distinctSourcesBeforeSet.put(sha, new HashSet<>(base));
+    private int applyChainSources(int from, int[] refCount, int delta) {
+        int change = 0;
+        for (int cur = from; cur != CommitDag.NONE && dag.isWalked(cur); cur = firstParent[cur]) {
+            change += applySources(cur, refCount, delta);
+        }
+        return change;
+    }
 
-            Set<String> here = new HashSet<>(base);
-            Set<String> ps = parents.getOrDefault(sha, Collections.emptySet());
-            if (ps.size() > 1) {
-                for (String p : ps) {
-                    if (fp != null && fp.equals(p)) continue;
-                    here.add(fpSegmentStart(p));
-                }
+    /**
+     * Segment starts merged into the commit's first-parent history before it, materialized on
+     * demand by walking the first-parent chain.
+     */
+    public Set<String> distinctMergeSourcesBefore(String sha) {
+        int id = dag.id(sha);
+        if (id == CommitDag.NONE || !dag.isWalked(id)) return Set.of();
+        Set<String> sources = new HashSet<>();
+        for (int cur = firstParent[id]; cur != CommitDag.NONE && dag.isWalked(cur); cur = firstParent[cur]) {
+            int pc = dag.parentCount(cur);
+            if (pc < 2) continue;
+            for (int i = 0; i < pc; i++) {
+                int p = dag.parent(cur, i);
+                if (p != firstParent[cur]) sources.add(dag.sha(fpSegmentStart(p)));
             }
-            inclAt.put(sha, here);
         }
-        return before;
+        return sources;
     }
 
-    @Transactional
-    public Graph buildGraph(String repoPath) {
-        vertices.clear();
-        parents.clear();
-        children.clear();
-        firstParent.clear();
-        commitTimeSec.clear();
-        fpSegStartMemo.clear();
-        edgeCount = 0L;
-
-        try (Git git = Git.open(new File(repoPath));
-             Repository repo = git.getRepository();
-             RevWalk walk = new RevWalk(repo)) {
-            for (Ref r : repo.getRefDatabase().getRefsByPrefix("refs/heads/")) {
+    /** Tips of the refs the DAG is built from, by ref name. */
+    private static Map<String, ObjectId> walkedRefs(Repository repo) throws Exception {
+        Map<String, ObjectId> refs = new LinkedHashMap<>();
+        for (String prefix : new String[]{"refs/heads/", "refs/remotes/"}) {
+            for (Ref r : repo.getRefDatabase().getRefsByPrefix(prefix)) {
                 ObjectId id = r.getObjectId();
-                if (id != null) walk.markStart(walk.parseCommit(id));
+                if (id != null) refs.put(r.getName(), id);
             }
-            for (Ref r : repo.getRefDatabase().getRefsByPrefix("refs/remotes/")) {
-                ObjectId id = r.getObjectId();
-                if (id != null) walk.markStart(walk.parseCommit(id));
+        }
+        return refs;
+    }
+
+    /**
+     * Adds every commit reachable from {@code starts} but not from {@code known} to the builder,
+     * parents first.
+     */
+    static CommitDag readDag(RevWalk walk, Collection<ObjectId> starts, Collection<ObjectId> known,
+                             CommitDag.Builder builder) throws IOException {
+        for (ObjectId id : starts) {
+            walk.markStart(walk.parseCommit(id));
+        }
+        for (ObjectId id : known) {
+            walk.markUninteresting(walk.parseCommit(id));
+        }
+        walk.sort(RevSort.TOPO);
+        walk.sort(RevSort.REVERSE);
+
+        for (RevCommit c : walk) {
+            builder.addCommit(c, c.getCommitTime(), c.getParents());
+        }
+        return builder.build();
+    }
+
+    /**
+     * Walked commits sorted by {@code (maxDepth, sha)}, the paging order of {@link #page(GraphQuery)}.
+     * Counting sort on the depth, then each depth sorted by id.
+     */
+    private void computePageOrder(int[] topo) {
+        int maxD = 0;
+        for (int id : topo) maxD = Math.max(maxD, maxDepth[id]);
+        int[] start = new int[maxD + 2];
+        for (int id : topo) start[maxDepth[id] + 1]++;
+        for (int d = 0; d <= maxD; d++) start[d + 1] += start[d];
+
+        int[] order = new int[topo.length];
+        int[] next = Arrays.copyOf(start, maxD + 1);
+        for (int id : topo) order[next[maxDepth[id]]++] = id;
+
+        for (int d = 0; d <= maxD; d++) {
+            sortByIds(order, start[d], start[d + 1]);
+        }
+        pageOrder = order;
+    }
+
+    private void sortByIds(int[] a, int from, int to) {
+        if (to - from > 32) {
+            Integer[] boxed = new Integer[to - from];
+            for (int i = from; i < to; i++) boxed[i - from] = a[i];
+            Arrays.sort(boxed, dag::compareIds);
+            for (int i = from; i < to; i++) a[i] = boxed[i - from];
+            return;
+        }
+        for (int i = from + 1; i < to; i++) {
+            int id = a[i];
+            int j = i - 1;
+            while (j >= from && dag.compareIds(a[j], id) > 0) {
+                a[j + 1] = a[j];
+                j--;
             }
-            walk.sort(RevSort.TOPO);
-            walk.sort(RevSort.REVERSE);
+            a[j + 1] = id;
+        }
+    }
 
-            List<String> topo = new ArrayList<>(128_000);
+    /**
+     * One page of walked commits in {@code (maxDepth, sha)} order, read straight from the metric
+     * arrays. Only the rows of the page are materialized.
+     *
+     * @throws IllegalArgumentException for a branch that is not one of the graph's heads
+     */
+    public GraphPage page(GraphQuery query) {
+        int head = -1;
+        if (query.getBranch() != null) {
+            head = headIndex(query.getBranch());
+            if (head < 0) throw new IllegalArgumentException("Unknown branch: " + query.getBranch());
+        }
+        Set<GraphColumn> columns = query.getColumns() == null
+                ? EnumSet.allOf(GraphColumn.class) : query.getColumns();
+        int limit = query.pageSize();
+        double avgDeg = averageDegree();
+
+        List<Map<String, Object>> rows = new ArrayList<>();
+        String nextCursor = null;
+        int last = -1;
+        for (int k = firstAfter(query); k < pageOrder.length; k++) {
+            int id = pageOrder[k];
+            if (!matches(query, head, id)) continue;
+            if (rows.size() == limit) {
+                nextCursor = GraphQuery.cursor(maxDepth[last], dag.sha(last));
+                break;
+            }
+            rows.add(row(id, columns, avgDeg));
+            last = id;
+        }
+        return new GraphPage(GraphPage.Source.MEMORY, rows, nextCursor);
+    }
 
-            for (RevCommit c : walk) {
-                String sha = c.getId().getName();
-                topo.add(sha);
-                addVertex(sha);
-                commitTimeSec.put(sha, c.getCommitTime());
+    private int headIndex(String branch) {
+        for (String ref : new String[]{branch, "refs/heads/" + branch, "refs/remotes/" + branch,
+                "refs/remotes/origin/" + branch}) {
+            Integer index = headIndexByRef.get(ref);
+            if (index != null) return index;
+        }
+        return -1;
+    }
 
-                int pc = c.getParentCount();
-                for (int i = 0; i < pc; i++) {
-                    addEdge(c.getParent(i), c);
+    /** First position of {@link #pageOrder} after the query's cursor. */
+    private int firstAfter(GraphQuery query) {
+        int lo = 0;
+        int hi = pageOrder.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int id = pageOrder[mid];
+            if (query.isAfter(maxDepth[id], dag.sha(id))) hi = mid;
+            else lo = mid + 1;
+        }
+        return lo;
+    }
+
+    private boolean matches(GraphQuery query, int head, int id) {
+        if (query.isMergesOnly() && !dag.isMerge(id)) return false;
+        long time = 1000L * dag.commitTime(id);
+        if (query.getFrom() != null && time < query.getFrom()) return false;
+        if (query.getTo() != null && time > query.getTo()) return false;
+        return head < 0 || reachability.reaches(head, id);
+    }
+
+    private Map<String, Object> row(int id, Set<GraphColumn> columns, double avgDeg) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("sha", dag.sha(id));
+        for (GraphColumn c : columns) {
+            row.put(c.getKey(), switch (c) {
+                case COMMIT_DATE -> new Date(1000L * dag.commitTime(id));
+                case IN_DEGREE -> dag.parentCount(id);
+                case OUT_DEGREE -> dag.childCount(id);
+                case MERGE_COUNT -> dag.isMerge(id) ? 1 : 0;
+                case MIN_DEPTH -> minDepth[id];
+                case MAX_DEPTH -> maxDepth[id];
+                case NUMBER_OF_BRANCHES -> branchCounts[id];
+                case AVERAGE_DEGREE -> avgDeg;
+                case DISTANCE_TO_BRANCH_START -> fpDist[id];
+                case UPSTREAM_HEADS_UNIQUE -> upstreamUnique[id];
+                case DAYS_SINCE_LAST_MERGE -> daysSinceLast[id];
+            });
+        }
+        return row;
+    }
+
+    /**
+     * Branch the commit was born in, see {@link BranchOriginIndex}; answers from the index built
+     * with the graph instead of walking every branch like {@link #findBranchCommitWasBornIn}.
+     */
+    public String branchCommitWasBornIn(String sha) {
+        return branchOrigin == null ? null : branchOrigin.branchOf(sha);
+    }
+
+    /** {@link #branchCommitWasBornIn(String)} for many commits; commits without a branch are left out. */
+    public Map<String, String> branchesCommitsWereBornIn(Collection<String> shas) {
+        return branchOrigin == null ? Map.of() : branchOrigin.branchesOf(shas);
+    }
+
+    void build(String repoPath) throws Exception {
+        vertices = VertexStore.EMPTY;
+
+        try (RepositoryPool.Lease lease = RepositoryPool.shared().acquire(repoPath)) {
+            Repository repo = lease.repository();
+            Map<String, ObjectId> refs = walkedRefs(repo);
+            GraphState prev = usableSnapshot(repo, refs);
+            dag = loadDag(repo, refs, prev);
+            int[] topo = dag.topo();
+            LOG.info("DAG built: nodes={}, edges={}, from snapshot={}",
+                    dag.size(), dag.edgeCount(), prev == null ? 0 : prev.dag.topo().length);
+
+            resetMetrics(null);
+            runPasses(repo, topo, 0, 0);
+            persistMetrics(null);
+            saveState(repo, refs);
+        }
+    }
+
+    /**
+     * Brings the graph up to date with the clone using the state saved by the previous build:
+     * only commits added since then are walked, passes are re-run from the first commit whose
+     * inputs changed and only {@code commit} rows whose metrics changed are written. Falls back
+     * to {@link #build(String)} when there is no usable state, e.g. after a force push.
+     */
+    void refresh(String repoPath) throws Exception {
+        vertices = VertexStore.EMPTY;
+
+        try (RepositoryPool.Lease lease = RepositoryPool.shared().acquire(repoPath)) {
+            Repository repo = lease.repository();
+            if (refresh(repo)) return;
+        } catch (Exception e) {
+            LOG.warn("Incremental graph refresh failed, rebuilding: {}", e.getMessage(), e);
+        }
+        build(repoPath);
+    }
+
+    /**
+     * The snapshot saved by the previous build, or {@code null} when there is none or it cannot
+     * be extended to the current refs: a ref was deleted or rewritten or the shallow boundary moved.
+     */
+    private GraphState usableSnapshot(Repository repo, Map<String, ObjectId> refs) throws Exception {
+        File file = GraphState.location(repo.getDirectory());
+        GraphState prev;
+        try {
+            prev = GraphState.read(file);
+        } catch (IOException | RuntimeException e) {
+            LOG.warn("Ignoring unreadable graph snapshot {}: {}", file, e.getMessage());
+            return null;
+        }
+        if (prev == null) {
+            LOG.info("No saved graph state in {}", repo.getDirectory());
+            return null;
+        }
+        if (!prev.shallow.equals(readShallow(repo))) {
+            LOG.info("Shallow boundary changed, ignoring graph snapshot");
+            return null;
+        }
+        try (RevWalk check = new RevWalk(repo)) {
+            for (Map.Entry<String, ObjectId> e : prev.refs.entrySet()) {
+                ObjectId now = refs.get(e.getKey());
+                if (e.getValue().equals(now)) continue;
+                if (now == null || !check.isMergedInto(check.parseCommit(e.getValue()), check.parseCommit(now))) {
+                    LOG.info("Ref {} was deleted or rewritten, ignoring graph snapshot", e.getKey());
+                    return null;
                 }
-                Vertex v = vertices.get(sha);
-                v.setMerge(pc > 1);
-                v.setTimestamp(new Date(1000L * (long) c.getCommitTime()));
+                check.reset();
             }
-            LOG.info("DAG built: nodes={}, edges={}", vertices.size(), edgeCount);
-
-            computeDepthsDP(topo);
-            Map<String, Integer> distToStart = computeFpContinuityAndPaths(topo);
-            Map<String, Integer> upstreamUnique = computeDistinctMergesBefore(topo);
-            Map<String, Integer> daysSinceLast = computeDaysSinceLastMerge(topo);
-            Map<String, Integer> branchCountTA = computeBranchCountsTA(repo, topo);
-            final double avgDeg = averageDegree();
-            int updated = 0;
-            for (String sha : topo) {
-                Vertex v = vertices.get(sha);
-                int inDeg = v.getInDegree();
-                int outDeg = v.getOutDegree();
-                int mergeCnt = v.isMerge() ? 1 : 0;
-                int minDepth = v.getMinDepthOfCommitHistory();
-                int maxDepth = v.getMaxDepthOfCommitHistory();
-                int branches = branchCountTA.getOrDefault(sha, 0);
-                int dist = distToStart.getOrDefault(sha, 0);
-                int upstream = upstreamUnique.getOrDefault(sha, 0);
-                int days = daysSinceLast.getOrDefault(sha, 0);
-
-                if ((updated % 2000) == 0) {
-                    LOG.info("sha={} branchesTA={} dist={} upstream={} daysSinceLast={}",
-                            sha, branches, dist, upstream, days);
-                }
+        }
+        return prev;
+    }
 
-                try {
-                    int rows = commitRepository.updateGraphMetrics(
-                            sha,
-                            inDeg,
-                            outDeg,
-                            mergeCnt,
-                            minDepth,
-                            maxDepth,
-                            branches,
-                            avgDeg,
-                            dist,
-                            upstream,
-                            days
-                    );
-                    if (rows == 0) {
-                        LOG.warn("NO ROW UPDATED for sha={}", sha);
-                    } else {
-                        LOG.info("updated {} rows for sha={}", rows, sha);
-                    }
-                } catch (Exception ex) {
-                    LOG.debug("updateGraphMetrics failed for {}: {}", sha, ex.getMessage());
+    /** Reads the DAG with a full walk, or extends the snapshot with the commits it is missing. */
+    private static CommitDag loadDag(Repository repo, Map<String, ObjectId> refs, GraphState prev) throws Exception {
+        try (RevWalk walk = new RevWalk(repo)) {
+            if (prev == null) {
+                return readDag(walk, refs.values(), List.of(), CommitDag.builder(128_000));
+            }
+            List<ObjectId> starts = new ArrayList<>();
+            for (Map.Entry<String, ObjectId> e : refs.entrySet()) {
+                if (!e.getValue().equals(prev.refs.get(e.getKey()))) starts.add(e.getValue());
+            }
+            return readDag(walk, starts, prev.refs.values(), CommitDag.builder(prev.dag));
+        }
+    }
+
+    private boolean refresh(Repository repo) throws Exception {
+        Map<String, ObjectId> refs = walkedRefs(repo);
+        GraphState prev = usableSnapshot(repo, refs);
+        if (prev == null) return false;
+
+        dag = loadDag(repo, refs, prev);
+        int[] topo = dag.topo();
+        int known = prev.dag.topo().length;
+        int fpFrom = firstAffected(prev, topo, known);
+        LOG.info("DAG refreshed: nodes={}, edges={}, new commits={}, recomputing from {}",
+                dag.size(), dag.edgeCount(), topo.length - known, fpFrom);
+
+        resetMetrics(prev);
+        runPasses(repo, topo, known, fpFrom);
+        persistMetrics(prev);
+        saveState(repo, refs);
+        return true;
+    }
+
+    /**
+     * Runs the metric passes from the given topo positions on. Depth and first-parent continuity
+     * are independent; merges-before, days-since-merge and branch counts all read the
+     * first-parent segments and run together once those are known.
+     */
+    private void runPasses(Repository repo, int[] topo, int depthFrom, int fpFrom) throws Exception {
+        new MetricPasses()
+                .add("depth", () -> computeDepthsDP(topo, depthFrom))
+                .add("firstParent", () -> computeFpContinuityAndPaths(topo, fpFrom))
+                .add("mergesBefore", () -> computeDistinctMergesBefore(topo, fpFrom), "firstParent")
+                .add("daysSinceMerge", () -> computeDaysSinceLastMerge(topo, fpFrom), "firstParent")
+                .add("branches", () -> computeBranchCountsTA(repo, topo), "firstParent")
+                .add("pageOrder", () -> computePageOrder(topo), "depth")
+                .add("branchOrigin", () -> branchOrigin =
+                        BranchOriginIndex.build(dag, BranchOriginIndex.candidateBranches(repo)))
+                .await();
+        vertices = new VertexStore(dag, minDepth, maxDepth);
+    }
+
+    /**
+     * Topo position of the first commit whose first-parent inputs changed: new commits, and
+     * earlier commits whose parent gained a second child and so starts a new segment.
+     */
+    private int firstAffected(GraphState prev, int[] topo, int known) {
+        int[] pos = new int[prev.dag.size()];
+        for (int k = 0; k < known; k++) pos[topo[k]] = k;
+
+        int from = known;
+        for (int k = known; k < topo.length; k++) {
+            int id = topo[k];
+            for (int i = 0; i < dag.parentCount(id); i++) {
+                int p = dag.parent(id, i);
+                if (p >= prev.dag.size() || prev.dag.childCount(p) != 1) continue;
+                int oldChild = prev.dag.child(p, 0);
+                if (prev.dag.isWalked(oldChild)) from = Math.min(from, pos[oldChild]);
+            }
+        }
+        return from;
+    }
+
+    /** Sizes the per-commit arrays for the current DAG, keeping values of a previous build. */
+    private void resetMetrics(GraphState prev) {
+        int n = dag.size();
+        minDepth = prev == null ? new int[n] : Arrays.copyOf(prev.minDepth, n);
+        maxDepth = prev == null ? new int[n] : Arrays.copyOf(prev.maxDepth, n);
+        fpDist = prev == null ? new int[n] : Arrays.copyOf(prev.fpDist, n);
+        upstreamUnique = prev == null ? new int[n] : Arrays.copyOf(prev.upstreamUnique, n);
+        daysSinceLast = prev == null ? new int[n] : Arrays.copyOf(prev.daysSinceLast, n);
+        branchCounts = new int[n];
+        firstParent = extend(prev == null ? null : prev.firstParent, n);
+        fpSegmentStartOf = extend(prev == null ? null : prev.fpSegmentStartOf, n);
+    }
+
+    private static int[] extend(int[] prev, int n) {
+        int[] a = new int[n];
+        int kept = prev == null ? 0 : prev.length;
+        if (kept > 0) System.arraycopy(prev, 0, a, 0, kept);
+        Arrays.fill(a, kept, n, CommitDag.NONE);
+        return a;
+    }
+
+    /**
+     * Writes the metrics of every walked commit, or with a previous state only the rows that
+     * differ from it. The repo-wide average degree moves with almost every new commit; the
+     * otherwise unchanged rows then get a narrow single-column update, so a refresh leaves the
+     * same values as a full build.
+     */
+    private void persistMetrics(GraphState prev) throws Exception {
+        int[] topo = dag.topo();
+        final double avgDeg = averageDegree();
+        boolean rewriteAvgDeg = prev == null || Double.compare(avgDeg, prev.avgDeg) != 0;
+        List<String> avgOnly = new ArrayList<>();
+        GraphMetricsWriter.Report report;
+        try (GraphMetricsWriter.GraphMetricsSink sink = metricsWriter.open()) {
+            for (int id : topo) {
+                String sha = dag.sha(id);
+                int mergeCnt = dag.isMerge(id) ? 1 : 0;
+                if (prev != null && unchanged(prev, id, mergeCnt)) {
+                    if (rewriteAvgDeg) avgOnly.add(sha);
+                    continue;
                 }
-                updated++;
+                sink.add(
+                        sha,
+                        dag.parentCount(id),
+                        dag.childCount(id),
+                        mergeCnt,
+                        minDepth[id],
+                        maxDepth[id],
+                        branchCounts[id],
+                        avgDeg,
+                        fpDist[id],
+                        upstreamUnique[id],
+                        daysSinceLast[id]
+                );
             }
-            LOG.info("Persisted {} rows. avgDeg={}", updated, avgDeg);
+            report = sink.finish();
+        }
+        if (report.getUnmatched() > 0) {
+            LOG.warn("{} graph metric rows matched no commit", report.getUnmatched());
+        }
+        if (!avgOnly.isEmpty()) {
+            metricsWriter.updateAverageDegree(avgOnly, avgDeg);
+        }
+        LOG.info("Persisted graph metrics: {} avgDeg={} averageDegreeOnly={}", report, avgDeg, avgOnly.size());
+    }
 
-        } catch (Exception e) {
-            LOG.error("Graph build failed: {}", e.getMessage(), e);
+    private boolean unchanged(GraphState prev, int id, int mergeCnt) {
+        CommitDag old = prev.dag;
+        if (id >= old.size() || !old.isWalked(id)) return false;
+        return old.parentCount(id) == dag.parentCount(id)
+                && old.childCount(id) == dag.childCount(id)
+                && (old.isMerge(id) ? 1 : 0) == mergeCnt
+                && prev.minDepth[id] == minDepth[id]
+                && prev.maxDepth[id] == maxDepth[id]
+                && prev.branchCounts[id] == branchCounts[id]
+                && prev.fpDist[id] == fpDist[id]
+                && prev.upstreamUnique[id] == upstreamUnique[id]
+                && prev.daysSinceLast[id] == daysSinceLast[id];
+    }
+
+    private void saveState(Repository repo, Map<String, ObjectId> refs) {
+        File file = GraphState.location(repo.getDirectory());
+        try {
+            new GraphState(dag, refs, readShallow(repo), minDepth, maxDepth, firstParent, fpSegmentStartOf,
+                    fpDist, upstreamUnique, daysSinceLast, branchCounts, averageDegree()).write(file);
+        } catch (IOException e) {
+            LOG.warn("Could not save graph state to {}: {}", file, e.getMessage());
         }
-        return this;
     }
 
+    private static String readShallow(Repository repo) throws IOException {
+        File shallow = new File(repo.getDirectory(), "shallow");
+        return shallow.isFile() ? Files.readString(shallow.toPath()) : "";
+    }
+
+    /** Rough heap footprint, used by {@link GraphRegistry} to stay within its memory budget. */
+    public long estimatedBytes() {
+        long n = dag.size();
+        long e = dag.edgeCount();
+        // DAG node + CSR/time/flag arrays + metric arrays + page order + branch origin; vertices are views
+        return n * (64 + 16 + 2 + 4 * 13) + e * 8;
+    }
+
+    /** Streams the graph as Grafana node-graph JSON without copying the vertex map, see {@link GraphExporter}. */
+    public void export(OutputStream out, Predicate<Vertex> filter, boolean gzip) throws IOException {
+        GraphExporter.export(vertices.asMap(), filter, out, gzip, false);
+    }
+
+    /** Read-only view of all DAG commits by sha; each {@link Vertex} is created on access. */
+    @JsonProperty("vertices")
     public Map<String, Vertex> getVertices() {
-        return Map.copyOf(vertices);
+        return vertices.asMap();
     }
 }
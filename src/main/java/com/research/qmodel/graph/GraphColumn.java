@@ -0,0 +1,49 @@
+package com.research.qmodel.graph;
+
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+
+/**
+ * Per-commit metric columns that can be selected on a graph page. Keys are the field names of
+ * {@link com.research.qmodel.model.Commit}, so in-memory and persisted rows look the same.
+ */
+public enum GraphColumn {
+    COMMIT_DATE("commitDate"),
+    IN_DEGREE("inDegree"),
+    OUT_DEGREE("outDegree"),
+    MERGE_COUNT("mergeCount"),
+    MIN_DEPTH("minDepthOfCommitHistory"),
+    MAX_DEPTH("maxDepthOfCommitHistory"),
+    NUMBER_OF_BRANCHES("numberOfBranches"),
+    AVERAGE_DEGREE("averageDegree"),
+    DISTANCE_TO_BRANCH_START("distanceToBranchStart"),
+    UPSTREAM_HEADS_UNIQUE("upstreamHeadsUniqueOnSegment"),
+    DAYS_SINCE_LAST_MERGE("daysSinceLastMergeOnSegment");
+
+    private final String key;
+
+    GraphColumn(String key) {
+        this.key = key;
+    }
+
+    public String getKey() {
+        return key;
+    }
+
+    public static GraphColumn of(String key) {
+        for (GraphColumn c : values()) {
+            if (c.key.equalsIgnoreCase(key) || c.name().equals(key.toUpperCase(Locale.ROOT))) return c;
+        }
+        throw new IllegalArgumentException("Unknown graph column: " + key);
+    }
+
+    /** The named columns, or all of them when none are given. */
+    public static Set<GraphColumn> parse(List<String> keys) {
+        if (keys == null || keys.isEmpty()) return EnumSet.allOf(GraphColumn.class);
+        Set<GraphColumn> columns = EnumSet.noneOf(GraphColumn.class);
+        for (String key : keys) columns.add(of(key.trim()));
+        return columns;
+    }
+}
@@ -0,0 +1,114 @@
+package com.research.qmodel.graph;
+
+import com.google.gson.stream.JsonWriter;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Predicate;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Writes a commit graph as Grafana node-graph JSON ({@code {"nodes": [...], "edges": [...]}})
+ * straight to a stream with a Gson {@link JsonWriter}, so memory stays constant regardless of the
+ * graph size. Nodes carry the same fields {@link GitMaintainable#exportGraph} always wrote.
+ * <p>
+ * A filter restricts the export to a subgraph: only matching vertices are written, and only
+ * edges whose both ends match.
+ */
+public final class GraphExporter {
+
+    public static final Predicate<Vertex> ALL = v -> true;
+
+    private GraphExporter() {
+    }
+
+    /** Vertices with a commit time within {@code [from, to]}; a {@code null} bound is open. */
+    public static Predicate<Vertex> timeWindow(Date from, Date to) {
+        return v -> v.getTimestamp() != null
+                && (from == null || !v.getTimestamp().before(from))
+                && (to == null || !v.getTimestamp().after(to));
+    }
+
+    /** Vertices whose sha is in {@code shas}. */
+    public static Predicate<Vertex> subgraph(Collection<String> shas) {
+        Set<String> keep = new HashSet<>(shas);
+        return v -> keep.contains(v.getSha());
+    }
+
+    /**
+     * Writes the graph to {@code out}, gzip-compressed if asked. The stream is flushed but not
+     * closed, it belongs to the caller.
+     */
+    public static void export(Map<String, Vertex> vertices, Predicate<Vertex> filter, OutputStream out,
+                              boolean gzip, boolean pretty) throws IOException {
+        GZIPOutputStream gz = gzip ? new GZIPOutputStream(out, 1 << 16) : null;
+        Writer writer = new BufferedWriter(new OutputStreamWriter(gz != null ? gz : out, StandardCharsets.UTF_8), 1 << 16);
+        JsonWriter json = new JsonWriter(writer);
+        if (pretty) json.setIndent("  ");
+
+        json.beginObject();
+        json.name("nodes").beginArray();
+        for (Vertex v : vertices.values()) {
+            if (filter.test(v)) writeNode(json, v);
+        }
+        json.endArray();
+
+        json.name("edges").beginArray();
+        long edgeId = 1;
+        for (Vertex v : vertices.values()) {
+            if (!filter.test(v) || v.getNeighbors() == null) continue;
+            for (String neighbor : v.getNeighbors()) {
+                if (filter != ALL) {
+                    Vertex target = vertices.get(neighbor);
+                    if (target == null || !filter.test(target)) continue;
+                }
+                json.beginObject();
+                json.name("id").value(String.valueOf(edgeId++));
+                json.name("source").value(v.getSha());
+                json.name("target").value(neighbor);
+                json.name("mainStat").value("53/s");
+                json.endObject();
+            }
+        }
+        json.endArray();
+        json.endObject();
+
+        json.flush();
+        if (gz != null) gz.finish();
+        out.flush();
+    }
+
+    private static void writeNode(JsonWriter json, Vertex v) throws IOException {
+        json.beginObject();
+        json.name("id").value(v.getSha());
+        json.name("title").value("Commit " + v.getSha());
+        if (v.getBranches() != null) {
+            json.name("subTitle").value("Branches: " + String.join(", ", v.getBranches()));
+        }
+        json.name("arc__failed").value(v.getArcFailed());
+        json.name("arc__passed").value(v.getArcPassed());
+        json.name("detail__zone").value("Zone " + v.getSha());
+        if (v.getTimestamp() != null) {
+            json.name("timestamp").value(v.getTimestamp().toString());
+        }
+        json.name("numberOfVertices").value(v.getNumberOfVertices());
+        json.name("numberOfBranches").value(v.getNumberOfBranches());
+        json.name("numberOfEdges").value(v.getNumberOfEdges());
+        json.name("inDegree").value(v.getInDegree());
+        json.name("outDegree").value(v.getOutDegree());
+        json.name("averageDegree").value(v.getAverageDegree());
+        json.name("maxDepthOfCommitHistory").value(v.getMaxDepthOfCommitHistory());
+        json.name("minDepthOfCommitHistory").value(v.getMinDepthOfCommitHistory());
+        json.name("isMerge").value(v.isMerge());
+        json.endObject();
+    }
+}
@@ -0,0 +1,19 @@
+package com.research.qmodel.graph;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+import java.util.List;
+import java.util.Map;
+
+/** One page of commits with the selected metric columns, see {@link GraphQuery}. */
+@Getter
+@AllArgsConstructor
+public class GraphPage {
+    public enum Source {MEMORY, DATABASE}
+
+    private final Source source;
+    private final List<Map<String, Object>> rows;
+    /** Cursor for the following page, {@code null} on the last one. */
+    private final String nextCursor;
+}
@@ -0,0 +1,55 @@
+package com.research.qmodel.graph;
+
+import lombok.Builder;
+import lombok.Getter;
+
+import java.util.Set;
+
+/**
+ * One page request over the walked commits of a graph. Commits are ordered by
+ * {@code (maxDepthOfCommitHistory, sha)}: a parent is always deeper-ordered before its children,
+ * so the order is topological, and the same order can be reproduced from the persisted
+ * {@code commit} table. The cursor is the position of the last commit of the previous page.
+ */
+@Getter
+@Builder
+public class GraphQuery {
+    public static final int DEFAULT_LIMIT = 500;
+    public static final int MAX_LIMIT = 5000;
+
+    private final int afterDepth;
+    private final String afterSha;
+    private final int limit;
+    /** Inclusive commit time window in epoch millis, {@code null} for an open end. */
+    private final Long from;
+    private final Long to;
+    /** Ref name, short branch name or {@code HEAD}; only commits reachable from it are returned. */
+    private final String branch;
+    private final boolean mergesOnly;
+    private final Set<GraphColumn> columns;
+
+    /** Query builder positioned after the given cursor, or at the start for a {@code null} cursor. */
+    public static GraphQueryBuilder after(String cursor) {
+        GraphQueryBuilder b = builder().afterDepth(-1).afterSha("").limit(DEFAULT_LIMIT);
+        if (cursor == null || cursor.isEmpty()) return b;
+        int dot = cursor.indexOf('.');
+        try {
+            return b.afterDepth(Integer.parseInt(cursor.substring(0, dot))).afterSha(cursor.substring(dot + 1));
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Malformed graph cursor: " + cursor);
+        }
+    }
+
+    public static String cursor(int depth, String sha) {
+        return depth + "." + sha;
+    }
+
+    /** Whether {@code (depth, sha)} comes after the cursor position. */
+    boolean isAfter(int depth, String sha) {
+        return depth != afterDepth ? depth > afterDepth : sha.compareTo(afterSha) > 0;
+    }
+
+    public int pageSize() {
+        return Math.max(1, Math.min(limit, MAX_LIMIT));
+    }
+}
@@ -0,0 +1,179 @@
+package com.research.qmodel.graph;
+
+import com.research.qmodel.errors.GraphBuildException;
+import com.research.qmodel.service.GraphMetricsWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.File;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Long-lived home of the built {@link Graph}s, one per {@code owner/repo} clone under
+ * {@code qmodel.repo.basePath}. Missing clones are made blob-less through {@link RepoCloneManager},
+ * the graph only reads commits.
+ * <p>
+ * Concurrent requests for the same repo share one build or refresh. A refresh builds a new
+ * {@code Graph} and swaps it in, so callers holding the previous instance keep a consistent view.
+ * Graphs are evicted least recently used first once their estimated size exceeds
+ * {@code qmodel.graph.registry.max-bytes}.
+ */
+@Component
+public class GraphRegistry {
+
+    private static final Logger LOG = LoggerFactory.getLogger(GraphRegistry.class);
+
+    private final GraphMetricsWriter metricsWriter;
+
+    private final RepoCloneManager cloneManager;
+
+    @Value("${qmodel.repo.basePath:/tmp}")
+    private String repoBasePath = "/tmp";
+
+    @Value("${qmodel.graph.registry.max-bytes:2147483648}")
+    private long maxBytes = 2L << 30;
+
+    /** Access-ordered, guarded by {@code this}. */
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private long totalBytes;
+
+    private final Map<String, CompletableFuture<Graph>> inFlight = new ConcurrentHashMap<>();
+
+    public GraphRegistry(GraphMetricsWriter metricsWriter, RepoCloneManager cloneManager) {
+        this.metricsWriter = metricsWriter;
+        this.cloneManager = cloneManager;
+    }
+
+    private record Entry(Graph graph, long bytes) {
+    }
+
+    /** The graph of the repo, built from its clone on first use. */
+    public Graph get(String owner, String repo) {
+        Optional<Graph> cached = getIfPresent(owner, repo);
+        return cached.orElseGet(() -> load(owner, repo, false));
+    }
+
+    /** The graph of the repo if it is already built, without building it. */
+    public Optional<Graph> getIfPresent(String owner, String repo) {
+        synchronized (this) {
+            Entry e = entries.get(key(owner, repo));
+            return e == null ? Optional.empty() : Optional.of(e.graph());
+        }
+    }
+
+    /**
+     * Fetches the repo and brings its graph up to date with the clone, incrementally when a
+     * snapshot exists.
+     */
+    public Graph refresh(String owner, String repo) {
+        return load(owner, repo, true);
+    }
+
+    public void evict(String owner, String repo) {
+        synchronized (this) {
+            Entry e = entries.remove(key(owner, repo));
+            if (e != null) totalBytes -= e.bytes();
+        }
+    }
+
+    public synchronized long totalBytes() {
+        return totalBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    String repoPath(String owner, String repo) {
+        return repoBasePath + File.separator + owner + "_" + repo;
+    }
+
+    private static String key(String owner, String repo) {
+        return owner + "/" + repo;
+    }
+
+    private Graph load(String owner, String repo, boolean refresh) {
+        String key = key(owner, repo);
+        CompletableFuture<Graph> mine = new CompletableFuture<>();
+        CompletableFuture<Graph> running = inFlight.putIfAbsent(key, mine);
+        if (running != null) {
+            LOG.debug("Joining running graph build for {}", key);
+            return await(key, running);
+        }
+        try {
+            // another build may have finished between the caller's cache miss and putIfAbsent
+            Optional<Graph> built = refresh ? Optional.empty() : getIfPresent(owner, repo);
+            if (built.isPresent()) {
+                mine.complete(built.get());
+                return built.get();
+            }
+            long t0 = System.currentTimeMillis();
+            sync(owner, repo, refresh);
+            Graph graph = newGraph();
+            if (refresh) {
+                graph.refresh(repoPath(owner, repo));
+            } else {
+                graph.build(repoPath(owner, repo));
+            }
+            put(key, graph);
+            LOG.info("Graph {} {} in {} ms", key, refresh ? "refreshed" : "built", System.currentTimeMillis() - t0);
+            mine.complete(graph);
+        } catch (Exception e) {
+            mine.completeExceptionally(e);
+        } finally {
+            inFlight.remove(key, mine);
+        }
+        return await(key, mine);
+    }
+
+    /**
+     * Clones a missing repo graph-only, see {@link RepoCloneManager.Mode#BLOBLESS}, and fetches an
+     * existing one before a refresh.
+     */
+    private void sync(String owner, String repo, boolean refresh) {
+        if (cloneManager == null) return;
+        if (!refresh && new File(repoPath(owner, repo), ".git").isDirectory()) return;
+        try {
+            cloneManager.sync(owner, repo, RepoCloneManager.Mode.BLOBLESS).join();
+        } catch (CompletionException e) {
+            throw (RuntimeException) e.getCause();
+        }
+    }
+
+    Graph newGraph() {
+        return new Graph(metricsWriter);
+    }
+
+    private static Graph await(String key, CompletableFuture<Graph> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            throw new GraphBuildException("Graph build failed for " + key, e.getCause());
+        }
+    }
+
+    private synchronized void put(String key, Graph graph) {
+        long bytes = graph.estimatedBytes();
+        Entry old = entries.put(key, new Entry(graph, bytes));
+        if (old != null) totalBytes -= old.bytes();
+        totalBytes += bytes;
+
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (totalBytes > maxBytes && it.hasNext()) {
+            Map.Entry<String, Entry> eldest = it.next();
+            if (eldest.getKey().equals(key)) continue;
+            totalBytes -= eldest.getValue().bytes();
+            it.remove();
+            LOG.info("Evicted graph {} ({} bytes) to stay within {} bytes", eldest.getKey(),
+                    eldest.getValue().bytes(), maxBytes);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.ObjectId;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * DAG and per-commit metric values of the last {@link Graph} build, saved next to the clone as a
+ * binary snapshot so the next build only has to walk and recompute what changed.
+ * <p>
+ * Metric arrays are indexed by DAG id, the ref map holds the walked ref tips and
+ * {@code shallow} the content of {@code .git/shallow} (empty for a full clone).
+ */
+final class GraphState {
+
+    private static final int MAGIC = 0x51474753; // "QGGS"
+    private static final int VERSION = 2;
+    private static final int HEADER_BYTES = 6 * 4 + 8;
+    private static final int METRICS = 8;
+    private static final int WALKED = 1;
+    private static final int MERGE = 2;
+
+    static final String FILE_NAME = "qmodel/graph-state.bin";
+
+    final CommitDag dag;
+    final Map<String, ObjectId> refs;
+    final String shallow;
+    final int[] minDepth;
+    final int[] maxDepth;
+    final int[] firstParent;
+    final int[] fpSegmentStartOf;
+    final int[] fpDist;
+    final int[] upstreamUnique;
+    final int[] daysSinceLast;
+    final int[] branchCounts;
+    final double avgDeg;
+
+    GraphState(CommitDag dag, Map<String, ObjectId> refs, String shallow,
+               int[] minDepth, int[] maxDepth, int[] firstParent, int[] fpSegmentStartOf, int[] fpDist,
+               int[] upstreamUnique, int[] daysSinceLast, int[] branchCounts, double avgDeg) {
+        this.dag = dag;
+        this.refs = refs;
+        this.shallow = shallow;
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+        this.firstParent = firstParent;
+        this.fpSegmentStartOf = fpSegmentStartOf;
+        this.fpDist = fpDist;
+        this.upstreamUnique = upstreamUnique;
+        this.daysSinceLast = daysSinceLast;
+        this.branchCounts = branchCounts;
+        this.avgDeg = avgDeg;
+    }
+
+    static File location(File gitDir) {
+        return new File(gitDir, FILE_NAME);
+    }
+
+    /**
+     * Writes the state as one memory-mapped file: a fixed header, the ref/shallow metadata, then
+     * raw SHAs, flags and plain int arrays that {@link #read(File)} copies out in bulk. Writes to
+     * a temporary file first so a crash never leaves a truncated state behind.
+     */
+    void write(File file) throws IOException {
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Cannot create " + dir);
+        }
+        int n = dag.size();
+        int[] topo = dag.topo();
+        int[] parentOffsets = new int[topo.length + 1];
+        for (int k = 0; k < topo.length; k++) {
+            parentOffsets[k + 1] = parentOffsets[k] + dag.parentCount(topo[k]);
+        }
+        int[] parentEdges = new int[parentOffsets[topo.length]];
+        for (int k = 0; k < topo.length; k++) {
+            for (int i = 0; i < dag.parentCount(topo[k]); i++) {
+                parentEdges[parentOffsets[k] + i] = dag.parent(topo[k], i);
+            }
+        }
+        byte[] meta = writeMeta();
+
+        long size = HEADER_BYTES + meta.length
+                + (long) n * (Constants.OBJECT_ID_LENGTH + 1)
+                + 4L * (n + topo.length + parentOffsets.length + parentEdges.length + (long) METRICS * n);
+        File tmp = new File(dir, file.getName() + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_WRITE, 0, size);
+            buf.putInt(MAGIC).putInt(VERSION).putInt(n).putInt(topo.length).putInt(parentEdges.length)
+                    .putInt(meta.length).putDouble(avgDeg);
+            buf.put(meta);
+            byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+            for (int id = 0; id < n; id++) {
+                dag.objectId(id).copyRawTo(raw, 0);
+                buf.put(raw);
+            }
+            for (int id = 0; id < n; id++) {
+                buf.put((byte) ((dag.isWalked(id) ? WALKED : 0) | (dag.isMerge(id) ? MERGE : 0)));
+            }
+            int[] times = new int[n];
+            for (int id = 0; id < n; id++) times[id] = dag.commitTime(id);
+            for (int[] a : new int[][]{times, topo, parentOffsets, parentEdges, minDepth, maxDepth, firstParent,
+                    fpSegmentStartOf, fpDist, upstreamUnique, daysSinceLast, branchCounts}) {
+                putInts(buf, a);
+            }
+            buf.force();
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void putInts(MappedByteBuffer buf, int[] a) {
+        buf.asIntBuffer().put(a);
+        buf.position(buf.position() + 4 * a.length);
+    }
+
+    private static int[] getInts(MappedByteBuffer buf, int len) {
+        int[] a = new int[len];
+        buf.asIntBuffer().get(a);
+        buf.position(buf.position() + 4 * len);
+        return a;
+    }
+
+    private byte[] writeMeta() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeUTF(shallow);
+            out.writeInt(refs.size());
+            byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+            for (Map.Entry<String, ObjectId> e : refs.entrySet()) {
+                out.writeUTF(e.getKey());
+                e.getValue().copyRawTo(raw, 0);
+                out.write(raw);
+            }
+        }
+        return bytes.toByteArray();
+    }
+
+    /** Reads a saved state, or returns {@code null} when there is none or it has another format version. */
+    static GraphState read(File file) throws IOException {
+        if (!file.isFile()) return null;
+        try (FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            if (ch.size() < HEADER_BYTES) return null;
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+            if (buf.getInt() != MAGIC || buf.getInt() != VERSION) return null;
+            int n = buf.getInt();
+            int walkedCount = buf.getInt();
+            int edgeCount = buf.getInt();
+            byte[] meta = new byte[buf.getInt()];
+            double avgDeg = buf.getDouble();
+            buf.get(meta);
+
+            String shallow;
+            Map<String, ObjectId> refs = new LinkedHashMap<>();
+            try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(meta))) {
+                shallow = in.readUTF();
+                int refCount = in.readInt();
+                byte[] raw = new byte[Constants.OBJECT_ID_LENGTH];
+                for (int i = 0; i < refCount; i++) {
+                    String name = in.readUTF();
+                    in.readFully(raw);
+                    refs.put(name, ObjectId.fromRaw(raw));
+                }
+            }
+
+            byte[] shas = new byte[n * Constants.OBJECT_ID_LENGTH];
+            buf.get(shas);
+            byte[] flags = new byte[n];
+            buf.get(flags);
+            int[] times = getInts(buf, n);
+            int[] topo = getInts(buf, walkedCount);
+            int[] parentOffsets = getInts(buf, walkedCount + 1);
+            int[] parentEdges = getInts(buf, edgeCount);
+            int[][] metrics = new int[METRICS][];
+            for (int i = 0; i < METRICS; i++) {
+                metrics[i] = getInts(buf, n);
+            }
+
+            ObjectId[] ids = new ObjectId[n];
+            CommitDag.Builder b = CommitDag.builder(n);
+            for (int id = 0; id < n; id++) {
+                ids[id] = ObjectId.fromRaw(shas, id * Constants.OBJECT_ID_LENGTH);
+                b.intern(ids[id]);
+            }
+            for (int k = 0; k < walkedCount; k++) {
+                int id = topo[k];
+                ObjectId[] parents = new ObjectId[parentOffsets[k + 1] - parentOffsets[k]];
+                for (int i = 0; i < parents.length; i++) {
+                    parents[i] = ids[parentEdges[parentOffsets[k] + i]];
+                }
+                b.addCommit(ids[id], times[id], (flags[id] & MERGE) != 0, parents);
+            }
+            return new GraphState(b.build(), refs, shallow, metrics[0], metrics[1], metrics[2], metrics[3],
+                    metrics[4], metrics[5], metrics[6], metrics[7], avgDeg);
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.research.qmodel.graph;
+
+import java.util.Arrays;
+
+/**
+ * For every walked commit, the set of heads (branch tips) that can reach it.
+ * <p>
+ * Computed in a single pass over the DAG in topological order (children first): a commit's set
+ * is the union of its children's sets plus the heads seeded on it. Large DAGs are swept level by
+ * level with the commits of a level in parallel, see {@link MetricPasses#sweepChildrenFirst}. Sets are word-packed
+ * {@code long[]} bitmaps that are structurally shared, a commit whose set equals one of its
+ * children's (the common case on linear history) points at the same array, so memory grows with
+ * the number of fork/merge points rather than with heads x commits.
+ */
+final class HeadReachability {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final int headCount;
+    private final long[][] bits;
+
+    private HeadReachability(int headCount, long[][] bits) {
+        this.headCount = headCount;
+        this.bits = bits;
+    }
+
+    /**
+     * @param seedsPerHead for each head, the DAG ids it reaches directly, normally just its tip.
+     *                     The head index is the bit index, see {@link #countReaching(int, int)}.
+     */
+    static HeadReachability compute(CommitDag dag, int[][] seedsPerHead) {
+        int heads = seedsPerHead.length;
+        int words = (heads + 63) >>> 6;
+
+        long[][] seeded = new long[dag.size()][];
+        for (int h = 0; h < heads; h++) {
+            for (int id : seedsPerHead[h]) {
+                if (seeded[id] == null) seeded[id] = new long[words];
+                seeded[id][h >>> 6] |= 1L << h;
+            }
+        }
+
+        long[][] bits = new long[dag.size()][];
+        MetricPasses.sweepChildrenFirst(dag, id -> {
+            bits[id] = union(dag, id, seeded[id], bits, words);
+            seeded[id] = null;
+        });
+        return new HeadReachability(heads, bits);
+    }
+
+    private static long[] union(CommitDag dag, int id, long[] own, long[][] bits, int words) {
+        int cc = dag.childCount(id);
+        long[] shared = own;
+        long[] acc = null;
+        for (int i = 0; i < cc; i++) {
+            long[] c = bits[dag.child(id, i)];
+            if (c == null || c == EMPTY || c == shared) continue;
+            if (shared == null) {
+                shared = c;
+                continue;
+            }
+            if (acc == null) acc = shared.clone();
+            for (int w = 0; w < words; w++) acc[w] |= c[w];
+        }
+        if (acc == null) return shared == null ? EMPTY : shared;
+
+        // reuse an input array when the union added nothing to it
+        if (Arrays.equals(acc, shared)) return shared;
+        for (int i = 0; i < cc; i++) {
+            long[] c = bits[dag.child(id, i)];
+            if (c != null && Arrays.equals(acc, c)) return c;
+        }
+        return acc;
+    }
+
+    int headCount() {
+        return headCount;
+    }
+
+    boolean reaches(int head, int id) {
+        long[] b = bits[id];
+        int w = head >>> 6;
+        return b != null && w < b.length && (b[w] & (1L << head)) != 0;
+    }
+
+    /** Number of heads with index {@code < headLimit} that can reach the commit. */
+    int countReaching(int id, int headLimit) {
+        long[] b = bits[id];
+        if (b == null || headLimit <= 0) return 0;
+        int full = Math.min(headLimit >>> 6, b.length);
+        int cnt = 0;
+        for (int w = 0; w < full; w++) cnt += Long.bitCount(b[w]);
+        int rem = headLimit & 63;
+        if (rem != 0 && full < b.length) cnt += Long.bitCount(b[full] & ((1L << rem) - 1));
+        return cnt;
+    }
+}
@@ -0,0 +1,110 @@
+package com.research.qmodel.graph;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.function.IntConsumer;
+import java.util.stream.IntStream;
+
+/**
+ * Runs the per-commit metric passes of a {@link Graph} build. Each pass names the passes whose
+ * output it reads; passes without a pending dependency run at the same time on a shared,
+ * bounded {@link ForkJoinPool}. A failing pass fails {@link #await()} and skips its dependents.
+ */
+final class MetricPasses {
+
+    private static final Logger LOG = LoggerFactory.getLogger(MetricPasses.class);
+
+    /** Levels narrower than this are swept on the calling thread. */
+    static final int PARALLEL_THRESHOLD = 4096;
+
+    private static final ForkJoinPool POOL = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+
+    interface Pass {
+        void run() throws Exception;
+    }
+
+    private final Map<String, CompletableFuture<Void>> scheduled = new LinkedHashMap<>();
+
+    static ForkJoinPool pool() {
+        return POOL;
+    }
+
+    MetricPasses add(String name, Pass pass, String... after) {
+        CompletableFuture<?>[] deps = new CompletableFuture<?>[after.length];
+        for (int i = 0; i < after.length; i++) {
+            deps[i] = scheduled.get(after[i]);
+            if (deps[i] == null) throw new IllegalArgumentException(name + " depends on unknown pass " + after[i]);
+        }
+        CompletableFuture<Void> f = CompletableFuture.allOf(deps).thenRunAsync(() -> {
+            long t0 = System.nanoTime();
+            try {
+                pass.run();
+            } catch (Exception e) {
+                throw new CompletionException(e);
+            }
+            LOG.debug("pass {} took {} ms", name, (System.nanoTime() - t0) / 1_000_000);
+        }, POOL);
+        scheduled.put(name, f);
+        return this;
+    }
+
+    void await() throws Exception {
+        try {
+            CompletableFuture.allOf(scheduled.values().toArray(new CompletableFuture<?>[0])).join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            while (cause instanceof CompletionException && cause.getCause() != null) cause = cause.getCause();
+            if (cause instanceof Exception ex) throw ex;
+            throw e;
+        }
+    }
+
+    /** Visits {@code ids[from..to)}, in parallel when the range is large. */
+    static void forEach(int[] ids, int from, int to, IntConsumer visit) {
+        if (to - from < PARALLEL_THRESHOLD) {
+            for (int i = from; i < to; i++) visit.accept(ids[i]);
+            return;
+        }
+        POOL.submit(() -> IntStream.range(from, to).parallel().forEach(i -> visit.accept(ids[i]))).join();
+    }
+
+    /**
+     * Visits the walked commits children first. Commits are grouped into levels, one more than
+     * the highest level of their children, so commits of one level never depend on each other
+     * and wide levels are visited in parallel. Small DAGs are swept in plain reverse topo order.
+     */
+    static void sweepChildrenFirst(CommitDag dag, IntConsumer visit) {
+        int[] topo = dag.topo();
+        if (topo.length < PARALLEL_THRESHOLD) {
+            for (int k = topo.length - 1; k >= 0; k--) visit.accept(topo[k]);
+            return;
+        }
+        int[] level = new int[dag.size()];
+        int maxLevel = 0;
+        for (int k = topo.length - 1; k >= 0; k--) {
+            int id = topo[k];
+            int l = 0;
+            for (int i = 0; i < dag.childCount(id); i++) {
+                l = Math.max(l, level[dag.child(id, i)] + 1);
+            }
+            level[id] = l;
+            maxLevel = Math.max(maxLevel, l);
+        }
+        int[] offsets = new int[maxLevel + 2];
+        for (int id : topo) offsets[level[id] + 1]++;
+        for (int l = 0; l <= maxLevel; l++) offsets[l + 1] += offsets[l];
+        int[] order = new int[topo.length];
+        int[] fill = offsets.clone();
+        for (int id : topo) order[fill[level[id]]++] = id;
+
+        for (int l = 0; l <= maxLevel; l++) {
+            forEach(order, offsets[l], offsets[l + 1], visit);
+        }
+    }
+}
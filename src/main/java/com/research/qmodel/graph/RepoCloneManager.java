@@ -0,0 +1,205 @@
+package com.research.qmodel.graph;
+
+import com.research.qmodel.dto.Project;
+import com.research.qmodel.errors.RepoSyncException;
+import org.eclipse.jgit.api.CloneCommand;
+import org.eclipse.jgit.api.FetchCommand;
+import org.eclipse.jgit.api.Git;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Clones and fetches many repositories at once on a bounded worker pool. A repo that is not on
+ * disk yet is cloned into {@code qmodel.repo.basePath/owner_repo}, one that is gets an
+ * incremental {@code fetch}. Requests for a repo that is already being synced share that run.
+ * <p>
+ * {@link Mode#SHALLOW} and {@link Mode#BLOBLESS} clones skip the checkout and are meant for
+ * commit-metadata work. JGit can clone shallow but cannot read a partial clone's missing
+ * objects, so blob-less clones and their fetches go through the {@code git} CLI, which fetches
+ * missing blobs on demand. Progress of every run is kept in a {@link SimpleProgressMonitor}.
+ */
+@Component
+public class RepoCloneManager implements DisposableBean {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RepoCloneManager.class);
+
+    /**
+     * {@code BLOBLESS} is the graph-only mode: commits and trees are fetched, blobs only when
+     * something reads them, see {@link BlobFetcher}.
+     */
+    public enum Mode {FULL, SHALLOW, BLOBLESS}
+
+    @Value("${qmodel.repo.basePath:/tmp}")
+    private String repoBasePath = "/tmp";
+
+    @Value("${qmodel.clone.base-url:https://github.com/}")
+    private String baseUrl = "https://github.com/";
+
+    @Value("${qmodel.clone.shallow-depth:1}")
+    private int shallowDepth = 1;
+
+    /** Seconds, as JGit and {@code git -c http.lowSpeedTime} expect. */
+    @Value("${qmodel.clone.timeout:900}")
+    private int timeoutSeconds = 900;
+
+    private final ExecutorService pool;
+
+    private final Map<String, CompletableFuture<File>> inFlight = new ConcurrentHashMap<>();
+
+    private final Map<String, SimpleProgressMonitor> progress = new ConcurrentHashMap<>();
+
+    public RepoCloneManager(@Value("${qmodel.clone.threads:8}") int threads) {
+        AtomicInteger n = new AtomicInteger();
+        this.pool = Executors.newFixedThreadPool(Math.max(1, threads), r -> {
+            Thread t = new Thread(r, "repo-sync-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+    }
+
+    /** Clones or fetches the repo; completes with its directory. */
+    public CompletableFuture<File> sync(String owner, String repo, Mode mode) {
+        String key = owner + "/" + repo;
+        CompletableFuture<File> created = new CompletableFuture<>();
+        CompletableFuture<File> running = inFlight.putIfAbsent(key, created);
+        if (running != null) return running;
+
+        File dir = repoPath(owner, repo);
+        SimpleProgressMonitor monitor = new SimpleProgressMonitor(key, new File(dir, ".git"));
+        progress.put(key, monitor);
+        pool.execute(() -> {
+            Throwable failure = null;
+            try {
+                run(owner, repo, dir, mode, monitor);
+                // pooled readers reopen the clone rather than rely on rescanning what git rewrote
+                RepositoryPool.shared().invalidate(dir);
+            } catch (Exception e) {
+                failure = e;
+            } catch (Error e) {
+                failure = e;
+                throw e;
+            } finally {
+                monitor.finish(failure == null);
+                // leave inFlight before completing, a caller woken by the result may sync again
+                inFlight.remove(key, created);
+                if (failure == null) {
+                    created.complete(dir);
+                } else {
+                    LOG.error("Sync of {} failed: {}", key, failure.getMessage(), failure);
+                    created.completeExceptionally(new RepoSyncException("Cannot sync " + key, failure));
+                }
+            }
+        });
+        return created;
+    }
+
+    /** Syncs all repos, at most {@code qmodel.clone.threads} at a time; keyed by {@code owner/repo}. */
+    public Map<String, CompletableFuture<File>> syncAll(Collection<Project> projects, Mode mode) {
+        Map<String, CompletableFuture<File>> futures = new LinkedHashMap<>();
+        for (Project p : projects) {
+            futures.put(p.projectOwner() + "/" + p.projectName(), sync(p.projectOwner(), p.projectName(), mode));
+        }
+        return futures;
+    }
+
+    /** Progress of the current and finished runs, keyed by {@code owner/repo}. */
+    public Map<String, SimpleProgressMonitor.Progress> progress() {
+        Map<String, SimpleProgressMonitor.Progress> snapshot = new TreeMap<>();
+        progress.forEach((key, monitor) -> snapshot.put(key, monitor.snapshot()));
+        return snapshot;
+    }
+
+    File repoPath(String owner, String repo) {
+        return new File(repoBasePath, owner + "_" + repo);
+    }
+
+    String remoteUrl(String owner, String repo) {
+        return baseUrl + owner + "/" + repo;
+    }
+
+    private void run(String owner, String repo, File dir, Mode mode, SimpleProgressMonitor monitor) throws Exception {
+        boolean exists = new File(dir, ".git").isDirectory();
+        if (exists && isPartialClone(dir)) {
+            git(dir, monitor, "fetch", "--prune", "--progress", "origin");
+        } else if (exists) {
+            fetch(dir, monitor);
+        } else if (mode == Mode.BLOBLESS) {
+            File parent = dir.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) throw new IOException("Cannot create " + parent);
+            git(parent, monitor, "clone", "--filter=blob:none", "--no-checkout", "--progress",
+                    remoteUrl(owner, repo), dir.getAbsolutePath());
+        } else {
+            CloneCommand clone = Git.cloneRepository()
+                    .setURI(remoteUrl(owner, repo))
+                    .setDirectory(dir)
+                    .setTimeout(timeoutSeconds)
+                    .setProgressMonitor(monitor);
+            if (mode == Mode.SHALLOW) clone.setDepth(shallowDepth).setNoCheckout(true);
+            clone.call().close();
+            LOG.info("Cloned {}/{} ({})", owner, repo, mode);
+        }
+    }
+
+    private void fetch(File dir, SimpleProgressMonitor monitor) throws Exception {
+        try (RepositoryPool.Lease lease = RepositoryPool.shared().acquire(dir)) {
+            Git git = lease.git();
+            FetchCommand fetch = git.fetch()
+                    .setRemote("origin")
+                    .setRemoveDeletedRefs(true)
+                    .setTimeout(timeoutSeconds)
+                    .setProgressMonitor(monitor);
+            if (new File(git.getRepository().getDirectory(), "shallow").isFile()) {
+                fetch.setDepth(shallowDepth);
+            }
+            fetch.call();
+        }
+    }
+
+    private static boolean isPartialClone(File dir) throws IOException {
+        try (RepositoryPool.Lease lease = RepositoryPool.shared().acquire(dir)) {
+            return BlobFetcher.isPartialClone(lease.repository());
+        }
+    }
+
+    /** Runs the git CLI, feeding its progress output to the monitor. */
+    private void git(File workDir, SimpleProgressMonitor monitor, String... args) throws Exception {
+        List<String> cmd = new ArrayList<>(List.of("git", "-c", "http.lowSpeedLimit=1",
+                "-c", "http.lowSpeedTime=" + timeoutSeconds));
+        cmd.addAll(List.of(args));
+        Process p = new ProcessBuilder(cmd).directory(workDir).redirectErrorStream(true).start();
+        StringBuilder tail = new StringBuilder();
+        try (BufferedReader out = new BufferedReader(new InputStreamReader(p.getInputStream(), StandardCharsets.UTF_8))) {
+            StringBuilder line = new StringBuilder();
+            int ch;
+            while ((ch = out.read()) != -1) {
+                if (ch != '\r' && ch != '\n') {
+                    line.append((char) ch);
+                    continue;
+                }
+                monitor.status(line.toString());
+                tail.setLength(0);
+                tail.append(line);
+                line.setLength(0);
+            }
+        }
+        int exit = p.waitFor();
+        if (exit != 0) throw new IOException("git " + args[0] + " exited with " + exit + ": " + tail);
+    }
+
+    @Override
+    public void destroy() {
+        pool.shutdownNow();
+    }
+}
@@ -0,0 +1,234 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ConfigConstants;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.lib.RepositoryCache;
+import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
+import org.eclipse.jgit.util.FS;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Open {@link Repository} handles shared by everything that reads a clone, keyed by the
+ * canonical git directory. Opening a repository loads its pack indexes and ref database; a
+ * pooled handle keeps them, and pack data read through it stays in JGit's window cache, see
+ * {@code qmodel.git.*}. Handles are reference counted: {@link #acquire} leases one, closing the
+ * {@link Lease} returns it. A handle nobody leases is closed after {@code
+ * qmodel.git.pool.idle-timeout} or when more than {@code qmodel.git.pool.max-idle} sit idle.
+ * <p>
+ * Every handle is opened with {@code core.commitGraph} on, so walks parse commits from git's own
+ * {@code commit-graph} file when the clone has one; the setting lives in the handle's in-memory
+ * config only.
+ * <p>
+ * A repository is safe to read from many threads as long as each has its own walks and readers.
+ * Code that replaces a clone on disk should {@link #invalidate} it so the next lease reopens it.
+ */
+public final class RepositoryPool {
+
+    private static final Logger LOG = LoggerFactory.getLogger(RepositoryPool.class);
+
+    private static final RepositoryPool SHARED = new RepositoryPool(5 * 60_000L, 32);
+
+    private final Map<File, Entry> entries = new HashMap<>();
+    private long idleTimeoutMillis;
+    private int maxIdle;
+    private long acquires;
+    private long opens;
+    private long evictions;
+
+    RepositoryPool(long idleTimeoutMillis, int maxIdle) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxIdle = maxIdle;
+    }
+
+    /** The pool used by the graph builder, SZZ and {@link GitMaintainable}. */
+    public static RepositoryPool shared() {
+        return SHARED;
+    }
+
+    /** Acquires, opens, idle handles closed and handles held right now. */
+    public record Stats(long acquires, long opens, long evictions, int open, int leased) {
+        /** Share of acquires that found the repository already open. */
+        public double hitRate() {
+            return acquires == 0 ? 0 : (double) (acquires - opens) / acquires;
+        }
+    }
+
+    private static final class Entry {
+        final File key;
+        final Repository repository;
+        int leases;
+        long idleSince;
+        boolean invalidated;
+
+        Entry(File key, Repository repository) {
+            this.key = key;
+            this.repository = repository;
+        }
+    }
+
+    /** One use of a pooled repository; close it instead of the repository. */
+    public final class Lease implements AutoCloseable {
+        private final Entry entry;
+        private final Git git;
+        private boolean released;
+
+        private Lease(Entry entry) {
+            this.entry = entry;
+            this.git = Git.wrap(entry.repository);
+        }
+
+        public Repository repository() {
+            return entry.repository;
+        }
+
+        /** A {@link Git} over the pooled repository; closing it leaves the repository open. */
+        public Git git() {
+            return git;
+        }
+
+        @Override
+        public void close() {
+            synchronized (RepositoryPool.this) {
+                if (released) return;
+                released = true;
+            }
+            release(entry);
+        }
+    }
+
+    public synchronized void configure(long idleTimeoutMillis, int maxIdle) {
+        this.idleTimeoutMillis = idleTimeoutMillis;
+        this.maxIdle = maxIdle;
+        evictIdle(System.currentTimeMillis());
+    }
+
+    /** Leases the repository of a work tree, a {@code .git} directory or a bare clone. */
+    public Lease acquire(String repoPath) throws IOException {
+        return acquire(new File(repoPath));
+    }
+
+    public Lease acquire(File path) throws IOException {
+        File gitDir = RepositoryCache.FileKey.resolve(path, FS.DETECTED);
+        if (gitDir == null) {
+            // not a repository (yet); opened as a git dir like before pooling, but never shared
+            Entry entry = new Entry(path, open(new FileRepositoryBuilder().setGitDir(path)));
+            entry.invalidated = true;
+            entry.leases++;
+            synchronized (this) {
+                acquires++;
+                opens++;
+            }
+            return new Lease(entry);
+        }
+        File key = gitDir.getCanonicalFile();
+        synchronized (this) {
+            acquires++;
+            Entry entry = entries.get(key);
+            if (entry == null) {
+                // opening only reads config and refs; packs are scanned on first object access
+                entry = new Entry(key, open(new FileRepositoryBuilder().setGitDir(key).setMustExist(true)));
+                entries.put(key, entry);
+                opens++;
+            }
+            entry.leases++;
+            evictIdle(System.currentTimeMillis());
+            return new Lease(entry);
+        }
+    }
+
+    private static Repository open(FileRepositoryBuilder builder) throws IOException {
+        Repository repository = builder.build();
+        // written by git gc or git commit-graph write; JGit ignores it unless told otherwise
+        repository.getConfig().setBoolean(ConfigConstants.CONFIG_CORE_SECTION, null,
+                ConfigConstants.CONFIG_COMMIT_GRAPH, true);
+        return repository;
+    }
+
+    /**
+     * Drops the handle of the repository at {@code path}; it is closed once its last lease is
+     * returned and the next {@link #acquire} opens it afresh.
+     */
+    public void invalidate(File path) {
+        File gitDir = RepositoryCache.FileKey.resolve(path, FS.DETECTED);
+        if (gitDir == null) return;
+        Repository toClose = null;
+        synchronized (this) {
+            Entry entry = entries.get(canonical(gitDir));
+            if (entry == null) return;
+            entries.remove(entry.key);
+            entry.invalidated = true;
+            if (entry.leases == 0) toClose = entry.repository;
+        }
+        if (toClose != null) toClose.close();
+    }
+
+    public synchronized Stats stats() {
+        int leased = 0;
+        for (Entry entry : entries.values()) {
+            if (entry.leases > 0) leased++;
+        }
+        return new Stats(acquires, opens, evictions, entries.size(), leased);
+    }
+
+    /** Closes every idle handle; leased ones are closed when returned. */
+    public void clear() {
+        List<Repository> toClose = new ArrayList<>();
+        synchronized (this) {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry entry = it.next();
+                entry.invalidated = true;
+                if (entry.leases == 0) toClose.add(entry.repository);
+                it.remove();
+            }
+        }
+        toClose.forEach(Repository::close);
+    }
+
+    private void release(Entry entry) {
+        boolean close;
+        synchronized (this) {
+            entry.leases--;
+            entry.idleSince = System.currentTimeMillis();
+            close = entry.invalidated && entry.leases == 0;
+            if (!close) evictIdle(entry.idleSince);
+        }
+        if (close) entry.repository.close();
+    }
+
+    /** Called with the lock held. */
+    private void evictIdle(long now) {
+        List<Entry> idle = new ArrayList<>();
+        for (Entry entry : entries.values()) {
+            if (entry.leases == 0) idle.add(entry);
+        }
+        idle.sort((a, b) -> Long.compare(a.idleSince, b.idleSince));
+        int excess = idle.size() - maxIdle;
+        for (Entry entry : idle) {
+            if (excess-- <= 0 && now - entry.idleSince < idleTimeoutMillis) break;
+            entries.remove(entry.key);
+            evictions++;
+            LOG.debug("Closing idle repository {}", entry.key);
+            // closing only releases pack files and is cheap, fine under the lock
+            entry.repository.close();
+        }
+    }
+
+    private static File canonical(File file) {
+        try {
+            return file.getCanonicalFile();
+        } catch (IOException e) {
+            return file.getAbsoluteFile();
+        }
+    }
+}
@@ -4,31 +4,99 @@ import org.eclipse.jgit.lib.ProgressMonitor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-class SimpleProgressMonitor implements ProgressMonitor {
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.stream.Stream;
+
+/**
+ * Progress of one clone or fetch. Task progress comes from JGit (or from {@link #status(String)}
+ * for the git CLI), transferred bytes are sampled from the growth of the clone's object
+ * directory, so both transports report bytes/sec the same way. Progress is logged at most
+ * every {@link #LOG_INTERVAL_MILLIS} and can be read at any time through {@link #snapshot()}.
+ */
+public class SimpleProgressMonitor implements ProgressMonitor {
+    private static final long LOG_INTERVAL_MILLIS = 5000;
+
     private final Logger LOGGER = LoggerFactory.getLogger(SimpleProgressMonitor.class);
-    private int totalTasks = 0;
-    private int completedTasks = 0;
+    private final String name;
+    private final File objectsDir;
+    private final long startedAt = System.currentTimeMillis();
+    private final long startBytes;
+    private volatile int totalTasks = 0;
+    private volatile String task = "";
+    private volatile int taskTotal;
+    private volatile int taskDone;
+    private volatile State state = State.RUNNING;
+    private volatile long finishedAt;
+    private volatile long lastLogAt;
+
+    public enum State {RUNNING, DONE, FAILED}
+
+    public record Progress(String repo, State state, String task, int done, int total,
+                           long bytes, double bytesPerSecond, long elapsedMillis) {
+    }
+
+    public SimpleProgressMonitor() {
+        this("repository", null);
+    }
+
+    /** @param gitDir {@code .git} directory (or bare repo) that receives the objects, may not exist yet */
+    public SimpleProgressMonitor(String name, File gitDir) {
+        this.name = name;
+        this.objectsDir = gitDir == null ? null : new File(gitDir, "objects");
+        this.startBytes = objectBytes();
+    }
 
     @Override
     public void start(int totalTasks) {
         this.totalTasks = totalTasks;
-        LOGGER.info("Starting clone with {} tasks", totalTasks);
+        LOGGER.info("{}: starting with {} tasks", name, totalTasks);
     }
 
     @Override
     public void beginTask(String title, int totalWork) {
-        LOGGER.info("Starting task: {}", title);
+        task = title;
+        taskTotal = totalWork;
+        taskDone = 0;
+        LOGGER.info("{}: starting task: {}", name, title);
     }
 
     @Override
     public void update(int completed) {
-        completedTasks += completed;
-        LOGGER.info("Progress: {}/{}", completedTasks, totalTasks);
+        taskDone += completed;
+        long now = System.currentTimeMillis();
+        if (now - lastLogAt >= LOG_INTERVAL_MILLIS) {
+            lastLogAt = now;
+            LOGGER.info("{}", snapshot());
+        }
+    }
+
+    /** Progress line of a git CLI run, e.g. {@code Receiving objects:  45% (450/1000)}. */
+    public void status(String line) {
+        String t = line.trim();
+        if (t.isEmpty()) return;
+        int colon = t.indexOf(':');
+        task = colon > 0 ? t.substring(0, colon) : t;
+        int open = t.indexOf('(');
+        int slash = t.indexOf('/', open + 1);
+        int close = t.indexOf(')', slash + 1);
+        if (open > 0 && slash > open && close > slash) {
+            try {
+                taskDone = Integer.parseInt(t.substring(open + 1, slash));
+                taskTotal = Integer.parseInt(t.substring(slash + 1, close));
+            } catch (NumberFormatException ignored) {
+                // not a counter line
+            }
+        }
+        update(0);
     }
 
     @Override
     public void endTask() {
-        LOGGER.info("Task completed");
+        LOGGER.info("{}: task completed: {}", name, task);
     }
 
     @Override
@@ -40,4 +108,32 @@ class SimpleProgressMonitor implements ProgressMonitor {
     public void showDuration(boolean b) {
 
     }
+
+    public void finish(boolean ok) {
+        finishedAt = System.currentTimeMillis();
+        state = ok ? State.DONE : State.FAILED;
+        LOGGER.info("{}", snapshot());
+    }
+
+    public Progress snapshot() {
+        long end = finishedAt == 0 ? System.currentTimeMillis() : finishedAt;
+        long elapsed = Math.max(1, end - startedAt);
+        long bytes = Math.max(0, objectBytes() - startBytes);
+        return new Progress(name, state, task, taskDone, taskTotal, bytes, bytes * 1000.0 / elapsed, elapsed);
+    }
+
+    private long objectBytes() {
+        if (objectsDir == null || !objectsDir.isDirectory()) return 0;
+        try (Stream<Path> files = Files.walk(objectsDir.toPath())) {
+            return files.mapToLong(p -> {
+                try {
+                    return Files.isRegularFile(p) ? Files.size(p) : 0;
+                } catch (IOException e) {
+                    return 0; // pack files come and go while the transfer runs
+                }
+            }).sum();
+        } catch (IOException | UncheckedIOException e) {
+            return 0;
+        }
+    }
 }
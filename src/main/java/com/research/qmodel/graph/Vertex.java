@@ -5,6 +5,10 @@ import java.util.*;
 import lombok.Getter;
 import lombok.Setter;
 
+/**
+ * Commit vertex. The vertices of a built {@link Graph} are read-only views over its
+ * {@link VertexStore}; standalone instances hold their own values.
+ */
 @Getter
 @Setter
 public class Vertex {
@@ -95,11 +99,11 @@ public class Vertex {
     @Override
     public boolean equals(Object o) {
         if (!(o instanceof Vertex vertex)) return false;
-        return maxDepthOfCommitHistory == vertex.maxDepthOfCommitHistory && minDepthOfCommitHistory == vertex.minDepthOfCommitHistory && isMerge == vertex.isMerge && inDegree == vertex.inDegree && outDegree == vertex.outDegree && mergeCount == vertex.mergeCount && Objects.equals(sha, vertex.sha) && Objects.equals(neighbors, vertex.neighbors);
+        return getMaxDepthOfCommitHistory() == vertex.getMaxDepthOfCommitHistory() && getMinDepthOfCommitHistory() == vertex.getMinDepthOfCommitHistory() && isMerge() == vertex.isMerge() && getInDegree() == vertex.getInDegree() && getOutDegree() == vertex.getOutDegree() && getMergeCount() == vertex.getMergeCount() && Objects.equals(getSha(), vertex.getSha()) && Objects.equals(getNeighbors(), vertex.getNeighbors());
     }
 
     @Override
     public int hashCode() {
-        return Objects.hash(sha, neighbors, maxDepthOfCommitHistory, minDepthOfCommitHistory, isMerge, inDegree, outDegree, mergeCount);
+        return Objects.hash(getSha(), getNeighbors(), getMaxDepthOfCommitHistory(), getMinDepthOfCommitHistory(), isMerge(), getInDegree(), getOutDegree(), getMergeCount());
     }
 }
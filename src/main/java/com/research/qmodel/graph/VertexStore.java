@@ -0,0 +1,206 @@
+package com.research.qmodel.graph;
+
+import java.util.*;
+
+/**
+ * Columnar backing for the vertices of a built {@link Graph}. Degrees, timestamps and merge flags
+ * come from the {@link CommitDag} arrays and depths from the graph's metric arrays, all indexed by
+ * the DAG id; no per-commit objects are kept. {@link #asMap()} hands out {@link Vertex} flyweights
+ * that read those arrays and are created on access, so callers that walk the map see the same
+ * values as the materialized vertices it replaces.
+ */
+final class VertexStore {
+
+    static final VertexStore EMPTY = new VertexStore(CommitDag.builder(0).build(), new int[0], new int[0]);
+
+    private final CommitDag dag;
+    private final int[] minDepth;
+    private final int[] maxDepth;
+    private final Map<String, Vertex> view = new View();
+
+    VertexStore(CommitDag dag, int[] minDepth, int[] maxDepth) {
+        this.dag = dag;
+        this.minDepth = minDepth;
+        this.maxDepth = maxDepth;
+    }
+
+    int size() {
+        return dag.size();
+    }
+
+    Vertex vertex(int id) {
+        return new StoredVertex(this, id);
+    }
+
+    /** Read-only view keyed by sha, iterated in DAG id order. */
+    Map<String, Vertex> asMap() {
+        return view;
+    }
+
+    private final class View extends AbstractMap<String, Vertex> {
+        private final Set<Entry<String, Vertex>> entries = new AbstractSet<>() {
+            @Override
+            public Iterator<Entry<String, Vertex>> iterator() {
+                return new Iterator<>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < dag.size();
+                    }
+
+                    @Override
+                    public Entry<String, Vertex> next() {
+                        if (!hasNext()) throw new NoSuchElementException();
+                        Vertex v = vertex(next++);
+                        return new SimpleImmutableEntry<>(v.getSha(), v);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return dag.size();
+            }
+        };
+
+        @Override
+        public Set<Entry<String, Vertex>> entrySet() {
+            return entries;
+        }
+
+        @Override
+        public int size() {
+            return dag.size();
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return key instanceof String sha && dag.id(sha) != CommitDag.NONE;
+        }
+
+        @Override
+        public Vertex get(Object key) {
+            if (!(key instanceof String sha)) return null;
+            int id = dag.id(sha);
+            return id == CommitDag.NONE ? null : vertex(id);
+        }
+    }
+
+    /**
+     * Flyweight over one DAG id. The stored columns are read-only; the remaining {@link Vertex}
+     * properties keep their defaults, as they did on the materialized vertices.
+     */
+    private static final class StoredVertex extends Vertex {
+        private final VertexStore store;
+        private final int id;
+
+        StoredVertex(VertexStore store, int id) {
+            this.store = store;
+            this.id = id;
+        }
+
+        @Override
+        public String getSha() {
+            return store.dag.sha(id);
+        }
+
+        @Override
+        public Set<String> getNeighbors() {
+            Set<String> neighbors = new HashSet<>();
+            for (int i = 0; i < store.dag.childCount(id); i++) {
+                neighbors.add(store.dag.sha(store.dag.child(id, i)));
+            }
+            return neighbors;
+        }
+
+        @Override
+        public Date getTimestamp() {
+            return store.dag.isWalked(id) ? new Date(1000L * store.dag.commitTime(id)) : null;
+        }
+
+        @Override
+        public boolean isMerge() {
+            return store.dag.isWalked(id) && store.dag.isMerge(id);
+        }
+
+        @Override
+        public int getInDegree() {
+            return store.dag.parentCount(id);
+        }
+
+        @Override
+        public int getOutDegree() {
+            return store.dag.childCount(id);
+        }
+
+        @Override
+        public int getMinDepthOfCommitHistory() {
+            return store.minDepth[id];
+        }
+
+        @Override
+        public int getMaxDepthOfCommitHistory() {
+            return store.maxDepth[id];
+        }
+
+        @Override
+        public void setSha(String sha) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setNeighbors(Set<String> neighbors) {
+            throw readOnly();
+        }
+
+        @Override
+        public void addNeighbor(String neighborSha) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setTimestamp(Date timestamp) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setMerge(boolean isMerge) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setInDegree(int inDegree) {
+            throw readOnly();
+        }
+
+        @Override
+        public void incrementInDegree() {
+            throw readOnly();
+        }
+
+        @Override
+        public void setOutDegree(int outDegree) {
+            throw readOnly();
+        }
+
+        @Override
+        public void incrementOutDegree() {
+            throw readOnly();
+        }
+
+        @Override
+        public void setMinDepthOfCommitHistory(int minDepth) {
+            throw readOnly();
+        }
+
+        @Override
+        public void setMaxDepthOfCommitHistory(int maxDepth) {
+            throw readOnly();
+        }
+
+        private static UnsupportedOperationException readOnly() {
+            return new UnsupportedOperationException("Graph vertices are read-only");
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package com.research.qmodel.model;
+
+import jakarta.persistence.*;
+import java.util.Date;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * One SZZ run over the fixed issues of a project. A run that did not finish, e.g. because the
+ * service was restarted, is picked up again by the next run of the same project and depth; see
+ * {@link SzzJobIssue} for the per-issue progress it resumes from.
+ */
+@Entity
+@Table(name = "szz_job")
+@Getter
+@Setter
+@NoArgsConstructor
+public class SzzJob {
+  public enum Status {
+    RUNNING,
+    FINISHED
+  }
+
+  @Id
+  @GeneratedValue(strategy = GenerationType.IDENTITY)
+  private Long id;
+
+  private String projectOwner;
+  private String projectName;
+  private int depth;
+
+  @Enumerated(EnumType.STRING)
+  private Status status;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date createdAt;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date checkpointAt;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date finishedAt;
+
+  private int issuesTotal;
+  private int issuesDone;
+  private int issuesFailed;
+
+  /** Issues that already had bug-introducing commits when the job was created. */
+  private int issuesSkipped;
+
+  /** Blames computed by all runs of the job, i.e. blame cache misses. */
+  private long blames;
+
+  /** Time spent tracing, summed over runs; what throughput is measured against. */
+  private long activeMillis;
+
+  public SzzJob(String projectOwner, String projectName, int depth) {
+    this.projectOwner = projectOwner;
+    this.projectName = projectName;
+    this.depth = depth;
+    this.status = Status.RUNNING;
+    this.createdAt = new Date();
+  }
+}
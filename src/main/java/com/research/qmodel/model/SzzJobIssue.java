@@ -0,0 +1,50 @@
+package com.research.qmodel.model;
+
+import jakarta.persistence.*;
+import java.util.Date;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/** Progress of one issue within a {@link SzzJob}. */
+@Entity
+@Table(name = "szz_job_issue")
+@IdClass(SzzJobIssueID.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class SzzJobIssue {
+  public enum Status {
+    PENDING,
+    RUNNING,
+    DONE,
+    FAILED
+  }
+
+  @Id private Long jobId;
+  @Id private Long issueId;
+
+  @Enumerated(EnumType.STRING)
+  private Status status;
+
+  /** Runs that started tracing the issue. */
+  private int attempts;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date startedAt;
+
+  @Temporal(TemporalType.TIMESTAMP)
+  private Date finishedAt;
+
+  private long durationMillis;
+  private int bugIntroducingCommits;
+
+  @Column(columnDefinition = "TEXT")
+  private String lastError;
+
+  public SzzJobIssue(Long jobId, Long issueId) {
+    this.jobId = jobId;
+    this.issueId = issueId;
+    this.status = Status.PENDING;
+  }
+}
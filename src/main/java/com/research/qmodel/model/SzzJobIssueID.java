@@ -0,0 +1,19 @@
+package com.research.qmodel.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+
+@Data
+@EqualsAndHashCode
+@AllArgsConstructor
+@NoArgsConstructor
+public class SzzJobIssueID implements Serializable {
+    private static final long serialVersionUID = 1L;
+
+    private Long jobId;
+    private Long issueId;
+}
@@ -8,10 +8,12 @@ import jakarta.persistence.criteria.CriteriaQuery;
 import jakarta.persistence.criteria.Root;
 
 import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
 import java.util.function.Predicate;
 
 import jakarta.transaction.Transactional;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.domain.Specification;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Modifying;
@@ -56,4 +58,44 @@ public interface CommitRepository extends JpaRepository<Commit, CommitID> {
                             @Param("daysSinceLastMerge") int daysSinceLastMerge);
 
 
+    interface GraphRow {
+        String getSha();
+        Date getCommitDate();
+        Integer getInDegree();
+        Integer getOutDegree();
+        Integer getMergeCount();
+        Integer getMinDepthOfCommitHistory();
+        Integer getMaxDepthOfCommitHistory();
+        Integer getNumberOfBranches();
+        Double getAverageDegree();
+        Integer getDistanceToBranchStart();
+        Integer getUpstreamHeadsUniqueOnSegment();
+        Integer getDaysSinceLastMergeOnSegment();
+    }
+
+    /** Graph metric columns of a project's commits after {@code (afterDepth, afterSha)}, in (max depth, sha) order. */
+    @Query("""
+            SELECT c.sha AS sha, c.commitDate AS commitDate, c.inDegree AS inDegree, c.outDegree AS outDegree,
+                   c.mergeCount AS mergeCount, c.minDepthOfCommitHistory AS minDepthOfCommitHistory,
+                   c.maxDepthOfCommitHistory AS maxDepthOfCommitHistory, c.numberOfBranches AS numberOfBranches,
+                   c.averageDegree AS averageDegree, c.distanceToBranchStart AS distanceToBranchStart,
+                   c.upstreamHeadsUniqueOnSegment AS upstreamHeadsUniqueOnSegment,
+                   c.daysSinceLastMergeOnSegment AS daysSinceLastMergeOnSegment
+            FROM Commit c JOIN c.aGraph g JOIN g.project p
+            WHERE p.projectName = :projectName AND p.projectOwner = :ownerName
+              AND (c.maxDepthOfCommitHistory > :afterDepth
+                   OR (c.maxDepthOfCommitHistory = :afterDepth AND c.sha > :afterSha))
+              AND (:from IS NULL OR c.commitDate >= :from)
+              AND (:to IS NULL OR c.commitDate <= :to)
+              AND (:mergesOnly = false OR c.mergeCount > 0)
+            ORDER BY c.maxDepthOfCommitHistory, c.sha
+            """)
+    List<GraphRow> findGraphPage(@Param("projectName") String projectName,
+                                 @Param("ownerName") String ownerName,
+                                 @Param("afterDepth") int afterDepth,
+                                 @Param("afterSha") String afterSha,
+                                 @Param("from") Date from,
+                                 @Param("to") Date to,
+                                 @Param("mergesOnly") boolean mergesOnly,
+                                 Pageable page);
 }
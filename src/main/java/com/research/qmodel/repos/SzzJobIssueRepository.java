@@ -0,0 +1,10 @@
+package com.research.qmodel.repos;
+
+import com.research.qmodel.model.SzzJobIssue;
+import com.research.qmodel.model.SzzJobIssueID;
+import java.util.List;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SzzJobIssueRepository extends JpaRepository<SzzJobIssue, SzzJobIssueID> {
+  List<SzzJobIssue> findByJobId(Long jobId);
+}
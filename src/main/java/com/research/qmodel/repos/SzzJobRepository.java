@@ -0,0 +1,11 @@
+package com.research.qmodel.repos;
+
+import com.research.qmodel.model.SzzJob;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+public interface SzzJobRepository extends JpaRepository<SzzJob, Long> {
+  SzzJob findFirstByProjectOwnerAndProjectNameOrderByIdDesc(String projectOwner, String projectName);
+
+  SzzJob findFirstByProjectOwnerAndProjectNameAndDepthAndStatusOrderByIdDesc(
+      String projectOwner, String projectName, int depth, SzzJob.Status status);
+}
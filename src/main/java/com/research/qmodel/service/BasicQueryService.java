@@ -8,18 +8,32 @@ import com.research.qmodel.model.Commit;
 import org.apache.commons.lang3.StringUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.*;
 import org.springframework.stereotype.Service;
+import org.springframework.web.client.RestClientResponseException;
 import org.springframework.web.client.RestTemplate;
 
 import java.net.URI;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
 import java.util.stream.Collectors;
 
+/**
+ * Reads the GitHub REST API. Paged endpoints are read with up to {@code qmodel.github.fetch-threads}
+ * page requests in flight, see {@link PageFetcher}, within the quota left on the configured
+ * tokens, see {@link GitHubTokenPool}; rows still reach the caller in page order.
+ */
 @Service
-public class BasicQueryService extends GitHubIssuesFetcher {
+public class BasicQueryService extends GitHubIssuesFetcher implements DisposableBean {
+
+    private static final Pattern PAGE_PARAM = Pattern.compile("[?&]page=(\\d+)");
 
     private final RestTemplate restTemplate;
     private final ObjectMapper objectMapper;
@@ -45,9 +59,24 @@ public class BasicQueryService extends GitHubIssuesFetcher {
     @Value("${app.hard_max_pages:100000}")
     private int HARD_MAX_PAGES;
 
-    public BasicQueryService(RestTemplate restTemplate, ObjectMapper objectMapper) {
+    private final GitHubTokenPool tokenPool;
+
+    private final ExecutorService pageExecutor;
+
+    private final PageFetcher pageFetcher;
+
+    public BasicQueryService(RestTemplate restTemplate, ObjectMapper objectMapper, GitHubTokenPool tokenPool,
+                             @Value("${qmodel.github.fetch-threads:4}") int fetchThreads) {
         this.restTemplate = restTemplate;
         this.objectMapper = objectMapper;
+        this.tokenPool = tokenPool;
+        AtomicInteger n = new AtomicInteger();
+        this.pageExecutor = Executors.newFixedThreadPool(Math.max(1, fetchThreads), r -> {
+            Thread t = new Thread(r, "github-page-" + n.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        this.pageFetcher = new PageFetcher(pageExecutor, fetchThreads, tokenPool::headroom);
     }
 
     public <T> T retrieveMetrics(String url, TypeReference<T> targetType, String urlCondition, String pageCondition, boolean withCursor) {
@@ -59,20 +88,18 @@ public class BasicQueryService extends GitHubIssuesFetcher {
             return objectMapper.convertValue(all, targetType);
         }
 
-        int pageNumber = 1;
-        int totalRows = 0;
+        int[] totalRows = {0};
+        pageFetcher.fetch(
+                pageNumber -> getRowDataPage(url, BASE_URL, pageNumber, PAGE_SIZE, urlCondition, pageCondition, false),
+                maxPages(),
+                (pageNumber, page) -> {
+                    all.addAll(page.rows());
+                    totalRows[0] += page.rows().size();
 
-        while (true) {
-            PageChunk page = getRowDataPage(url, BASE_URL, pageNumber, PAGE_SIZE, urlCondition, pageCondition, false);
-            if (page.rows.isEmpty()) break;
-            all.addAll(page.rows);
-            totalRows += page.rows.size();
+                    LOGGER.info("page={} rows={} totalRows={} hasNext={}", pageNumber, page.rows().size(), totalRows[0], page.hasNext());
 
-            LOGGER.info("page={} rows={} totalRows={} hasNext={}", pageNumber, page.rows.size(), totalRows, page.hasNext);
-
-            if (!shouldContinue(page.hasNext, pageNumber, totalRows)) break;
-            pageNumber++;
-        }
+                    return shouldContinue(page.hasNext(), pageNumber, totalRows[0]);
+                });
 
         return objectMapper.convertValue(all, targetType);
     }
@@ -108,27 +135,21 @@ public class BasicQueryService extends GitHubIssuesFetcher {
             return;
         }
 
-        int pageNumber = 1;
-        int totalRows = 0;
-
-        while (true) {
-            PageChunk page = getRowDataPage(url, BASE_URL, pageNumber, PAGE_SIZE, urlCondition, pageCondition, false);
-            if (page.rows.isEmpty()) break;
+        int[] totalRows = {0};
+        pageFetcher.fetch(
+                pageNumber -> getRowDataPage(url, BASE_URL, pageNumber, PAGE_SIZE, urlCondition, pageCondition, false),
+                maxPages(),
+                (pageNumber, page) -> {
+                    buffer.addAll(page.rows());
+                    totalRows[0] += page.rows().size();
 
-            buffer.addAll(page.rows);
-            totalRows += page.rows.size();
-
-            if (buffer.size() >= 70000) {
-                flush.run();
-            }
-            LOGGER.info("stream page={} pageRows={} buffer={} totalRows={} hasNext={}", pageNumber, page.rows.size(), buffer.size(), totalRows, page.hasNext);
+                    if (buffer.size() >= 70000) {
+                        flush.run();
+                    }
+                    LOGGER.info("stream page={} pageRows={} buffer={} totalRows={} hasNext={}", pageNumber, page.rows().size(), buffer.size(), totalRows[0], page.hasNext());
 
-            if (!shouldContinue(page.hasNext, pageNumber, totalRows)) {
-                break;
-            }
-            pageNumber++;
-            LOGGER.info("Page number: {}", pageNumber);
-        }
+                    return shouldContinue(page.hasNext(), pageNumber, totalRows[0]);
+                });
 
         flush.run();
     }
@@ -181,30 +202,29 @@ public class BasicQueryService extends GitHubIssuesFetcher {
     }
 
     public String getHtmlData(String url) {
-        RequestEntity<Void> req = newGetRequest(url);
-        if (req == null) return null;
         try {
-            ResponseEntity<String> resp = restTemplate.exchange(req, String.class);
-            return resp.getBody();
+            ResponseEntity<String> resp = exchange(url, String.class);
+            return resp == null ? null : resp.getBody();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception e) {
             LOGGER.error(e.getMessage(), e);
-            getNextKey(true);
             return null;
         }
     }
 
+    /** Quota and request counts of the configured GitHub tokens, without the tokens themselves. */
+    public List<GitHubTokenPool.Usage> tokenUsage() {
+        return tokenPool.usage();
+    }
+
     private boolean isDemo() {
         return "demo".equalsIgnoreCase(mode);
     }
 
-    private static final class PageChunk {
-        final List<JsonNode> rows;
-        final boolean hasNext;
-
-        PageChunk(List<JsonNode> rows, boolean hasNext) {
-            this.rows = rows;
-            this.hasNext = hasNext;
-        }
+    private int maxPages() {
+        return isDemo() ? DEMO_MAX_PAGES : HARD_MAX_PAGES;
     }
 
     private static List<JsonNode> rowsFromBody(JsonNode body) {
@@ -227,6 +247,17 @@ public class BasicQueryService extends GitHubIssuesFetcher {
         return false;
     }
 
+    /** Number of the {@code rel="last"} page, 0 when the header does not name one. */
+    static int lastPageFromLink(HttpHeaders headers) {
+        String link = headers.getFirst("Link");
+        if (link == null) return 0;
+        for (String part : link.split(",")) {
+            if (!part.toLowerCase(Locale.ROOT).contains("rel=\"last\"")) continue;
+            Matcher m = PAGE_PARAM.matcher(part);
+            if (m.find()) return Integer.parseInt(m.group(1));
+        }
+        return 0;
+    }
 
     private static boolean inferHasNextBySize(int pageSize, List<JsonNode> rows) {
         return rows.size() == pageSize;
@@ -244,25 +275,25 @@ public class BasicQueryService extends GitHubIssuesFetcher {
         }
     }
 
-    private PageChunk getRowDataPage(String url, String baseUrl, int pageNumber, int pageSize, String urlCondition, String pageCondition, boolean skipPages) {
+    private PageFetcher.Page getRowDataPage(String url, String baseUrl, int pageNumber, int pageSize, String urlCondition, String pageCondition, boolean skipPages) {
 
         final String apiUrl = skipPages ? String.format(url, baseUrl, "") : String.format(url, baseUrl, urlCondition + "page=" + pageNumber + pageCondition + "per_page=" + pageSize);
 
         ResponseEntity<JsonNode> resp = retrieveRowData(apiUrl);
-        if (resp == null) return new PageChunk(List.of(), false);
+        if (resp == null) return PageFetcher.Page.EMPTY;
 
         List<JsonNode> rows = rowsFromBody(resp.getBody());
         boolean hasNext = hasNextFromLink(resp.getHeaders());
         if (!hasNext && !resp.getHeaders().containsKey("Link")) {
             hasNext = inferHasNextBySize(pageSize, rows);
         }
-        return new PageChunk(rows, hasNext);
+        return new PageFetcher.Page(rows, hasNext, lastPageFromLink(resp.getHeaders()));
     }
 
     public JsonNode getRowData(String url, String baseUrl, int pageNumber, int pageSize, String urlCondition, String pageCondition, boolean skipPages) {
 
-        PageChunk pg = getRowDataPage(url, baseUrl, pageNumber, pageSize, urlCondition, pageCondition, skipPages);
-        return objectMapper.valueToTree(pg.rows);
+        PageFetcher.Page pg = getRowDataPage(url, baseUrl, pageNumber, pageSize, urlCondition, pageCondition, skipPages);
+        return objectMapper.valueToTree(pg.rows());
     }
 
     public JsonNode getRowDataWithCursor(String urlTemplate) {
@@ -271,10 +302,10 @@ public class BasicQueryService extends GitHubIssuesFetcher {
         return resp == null ? null : resp.getBody();
     }
 
-    private RequestEntity<Void> newGetRequest(String url) {
+    private RequestEntity<Void> newGetRequest(String url, String key) {
         try {
             HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", getNextKey(false));
+            if (key != null) headers.set("Authorization", key);
             return new RequestEntity<>(headers, HttpMethod.GET, new URI(url));
         } catch (Exception e) {
             LOGGER.error("newGetRequest failed: {}", e.getMessage(), e);
@@ -284,9 +315,10 @@ public class BasicQueryService extends GitHubIssuesFetcher {
 
     private ResponseEntity<JsonNode> retrieveRowData(String url) {
         try {
-            RequestEntity<Void> req = newGetRequest(url);
-            if (req == null) return null;
-            return restTemplate.exchange(req, JsonNode.class);
+            return exchange(url, JsonNode.class);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception first) {
             return restoreStateIfFailed(url);
         }
@@ -294,16 +326,47 @@ public class BasicQueryService extends GitHubIssuesFetcher {
 
     private ResponseEntity<JsonNode> restoreStateIfFailed(String url) {
         try {
-            HttpHeaders headers = new HttpHeaders();
-            headers.set("Authorization", getNextKey(true));
-            RequestEntity<Void> req = new RequestEntity<>(headers, HttpMethod.GET, new URI(url));
-            return restTemplate.exchange(req, JsonNode.class);
+            // the pool hands out another token if this one was rate limited
+            return exchange(url, JsonNode.class);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
         } catch (Exception second) {
             LOGGER.error("GET failed for {}: {}", url, second.getMessage(), second);
             return null;
         }
     }
 
+    /** One GET with the token that has the most quota left; its quota is updated from the response. */
+    private <T> ResponseEntity<T> exchange(String url, Class<T> type) throws Exception {
+        String key = tokenPool.acquire();
+        RequestEntity<Void> req = newGetRequest(url, key);
+        if (req == null) return null;
+        try {
+            ResponseEntity<T> resp = restTemplate.exchange(req, type);
+            tokenPool.update(key, resp.getHeaders());
+            return resp;
+        } catch (RestClientResponseException e) {
+            if (isRateLimited(e.getStatusCode().value(), e.getResponseHeaders())) {
+                tokenPool.rateLimited(key, e.getResponseHeaders());
+            } else {
+                tokenPool.update(key, e.getResponseHeaders());
+            }
+            throw e;
+        }
+    }
+
+    /**
+     * GitHub answers 403 or 429 for both the primary and the secondary rate limits; a 403
+     * without a drained quota or a {@code Retry-After} is a plain permission error.
+     */
+    static boolean isRateLimited(int status, HttpHeaders headers) {
+        if (status == 429) return true;
+        if (status != 403) return false;
+        return headers != null && ("0".equals(headers.getFirst("X-RateLimit-Remaining"))
+                || headers.getFirst("Retry-After") != null);
+    }
+
     String parseToCommitUrl(String urlFormat) {
         return String.format(urlFormat, BASE_URL, "");
     }
@@ -313,4 +376,9 @@ public class BasicQueryService extends GitHubIssuesFetcher {
         }, "?", "&", false);
         return forks.parallelStream().map(o -> o.get("full_name").asText()).collect(Collectors.toSet());
     }
+
+    @Override
+    public void destroy() {
+        pageExecutor.shutdownNow();
+    }
 }
@@ -26,11 +26,13 @@ import org.springframework.stereotype.Service;
 import org.springframework.web.client.RestTemplate;
 
 @Service
-public abstract class GitHubIssuesFetcher extends BasicKeyManager {
+public abstract class GitHubIssuesFetcher {
     @Autowired
     private RestTemplate restTemplate;
     @Autowired
     private ObjectMapper objectMapper;
+    @Autowired
+    private GitHubTokenPool tokenPool;
     private final Logger LOGGER = LoggerFactory.getLogger(GitHubIssuesFetcher.class);
     @Value("${app.base_url:https://api.github.com/}")
     private String BASE_URL;
@@ -76,6 +78,15 @@ public abstract class GitHubIssuesFetcher extends BasicKeyManager {
         return null;
     }
 
+    private static HttpHeaders responseHeaders(HttpURLConnection connection) {
+        HttpHeaders headers = new HttpHeaders();
+        connection.getHeaderFields().forEach((name, values) -> {
+            // the status line is listed under a null name
+            if (name != null) headers.addAll(name, values);
+        });
+        return headers;
+    }
+
     JsonNode getRowData(String urlFormat, String projOwner, String projName) throws Exception {
         String url = String.format(urlFormat, BASE_URL, projOwner, projName);
 
@@ -85,14 +96,22 @@ public abstract class GitHubIssuesFetcher extends BasicKeyManager {
         int skip = 1;
         while (nextUrl != null) {
 
-            String currentKey = getNextKey(false);
+            String currentKey = tokenPool.acquire();
             HttpURLConnection connection = (HttpURLConnection) new URL(nextUrl).openConnection();
             connection.setRequestMethod("GET");
             connection.setRequestProperty("Accept", "application/vnd.github.v3+json");
-            connection.setRequestProperty("Authorization", currentKey);
+            if (currentKey != null) connection.setRequestProperty("Authorization", currentKey);
 
             int responseCode = connection.getResponseCode();
+            HttpHeaders headers = responseHeaders(connection);
+            if (BasicQueryService.isRateLimited(responseCode, headers)) {
+                tokenPool.rateLimited(currentKey, headers);
+            } else {
+                // only the quota headers are taken, a permission error does not park the token
+                tokenPool.update(currentKey, headers);
+            }
             if (responseCode != HttpURLConnection.HTTP_OK) {
+                LOGGER.error("GET {} failed with {}", nextUrl, responseCode);
                 throw new RuntimeException("HTTP GET Request Failed with Error code : " + responseCode);
             }
             BufferedReader in = new BufferedReader(new InputStreamReader(connection.getInputStream()));
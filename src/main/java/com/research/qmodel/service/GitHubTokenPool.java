@@ -0,0 +1,223 @@
+package com.research.qmodel.service;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpHeaders;
+import org.springframework.stereotype.Component;
+
+import java.util.*;
+
+/**
+ * The GitHub tokens of {@code qmodel.api.key} and the quota GitHub last reported for each in the
+ * {@code X-RateLimit-*} headers, or in {@code Retry-After} when a secondary limit was hit.
+ * {@link #acquire} hands out the token with the most requests left and takes one off its quota,
+ * so concurrent requests spread over all tokens and in-flight requests never overdraw one. When
+ * every token is used up, callers park until the first reset. A token GitHub has not reported
+ * on yet is assumed to have {@code qmodel.github.token-limit} requests.
+ * <p>
+ * Per-token usage is published as {@code qmodel.github.token.*} meters tagged with the token's
+ * position in {@code qmodel.api.key}, never the token itself, and by {@link #usage()}.
+ */
+@Component
+public class GitHubTokenPool {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GitHubTokenPool.class);
+
+    /** Back-off for a token GitHub rejected without saying when it may be used again. */
+    private static final long REJECTED_BACKOFF_MILLIS = 60_000;
+
+    public record Usage(String key, int remaining, int limit, long resetEpochSecond, long requests,
+                        long rateLimited) {
+    }
+
+    private static final class Token {
+        final String key;
+        final String value;
+        int limit;
+        int remaining;
+        /** 0 while GitHub has not reported a window for the token. */
+        long resetMillis;
+        long requests;
+        long rateLimited;
+
+        Token(String key, String value, int limit) {
+            this.key = key;
+            this.value = value;
+            this.limit = limit;
+            this.remaining = limit;
+        }
+
+        void refresh(long now) {
+            if (resetMillis > 0 && resetMillis <= now) {
+                remaining = limit;
+                resetMillis = 0;
+            }
+        }
+    }
+
+    private final List<Token> tokens = new ArrayList<>();
+    private final Map<String, Token> byValue = new HashMap<>();
+    private long waits;
+    private long waitMillis;
+
+    public GitHubTokenPool(@Value("${qmodel.api.key}") String[] apiKeys,
+                           @Value("${qmodel.github.token-limit:5000}") int defaultLimit,
+                           ObjectProvider<MeterRegistry> meterRegistry) {
+        for (String apiKey : apiKeys) {
+            if (StringUtils.isBlank(apiKey) || byValue.containsKey(apiKey)) continue;
+            Token token = new Token("key-" + tokens.size(), apiKey, defaultLimit);
+            tokens.add(token);
+            byValue.put(apiKey, token);
+        }
+        if (tokens.isEmpty()) {
+            LOGGER.warn("No GitHub tokens configured, requests are sent unauthenticated");
+            // GitHub still limits anonymous requests, tracked as one token without a value
+            tokens.add(new Token("anonymous", null, defaultLimit));
+        }
+        meterRegistry.ifAvailable(this::registerMeters);
+    }
+
+    /**
+     * Takes one request off the quota of the token with the most left, parking while every token
+     * is used up.
+     *
+     * @return the {@code Authorization} header value, {@code null} when no tokens are configured
+     */
+    public synchronized String acquire() throws InterruptedException {
+        while (true) {
+            long now = System.currentTimeMillis();
+            Token best = null;
+            long firstReset = Long.MAX_VALUE;
+            for (Token token : tokens) {
+                token.refresh(now);
+                if (token.remaining > 0 && (best == null || token.remaining > best.remaining)) best = token;
+                if (token.resetMillis > 0) firstReset = Math.min(firstReset, token.resetMillis);
+            }
+            if (best != null) {
+                best.remaining--;
+                best.requests++;
+                return best.value;
+            }
+            // a second of slack, GitHub's reset is rounded down to the second
+            long wait = Math.max(1, firstReset - now + 1000);
+            LOGGER.warn("All {} GitHub tokens are used up, waiting {} s for the first reset", tokens.size(), wait / 1000);
+            waits++;
+            waitMillis += wait;
+            wait(wait);
+        }
+    }
+
+    /** Takes the quota GitHub reported in a response to a request made with {@code token}. */
+    public synchronized void update(String token, HttpHeaders headers) {
+        Token t = find(token);
+        if (t == null || headers == null) return;
+        try {
+            String retryAfter = headers.getFirst("Retry-After");
+            if (retryAfter != null) {
+                t.remaining = 0;
+                t.resetMillis = System.currentTimeMillis() + Long.parseLong(retryAfter.trim()) * 1000;
+                return;
+            }
+            String remaining = headers.getFirst("X-RateLimit-Remaining");
+            String reset = headers.getFirst("X-RateLimit-Reset");
+            if (remaining == null || reset == null) return;
+            String limit = headers.getFirst("X-RateLimit-Limit");
+            if (limit != null) t.limit = Integer.parseInt(limit.trim());
+            t.remaining = Integer.parseInt(remaining.trim());
+            t.resetMillis = Long.parseLong(reset.trim()) * 1000;
+            // a token may have more left than assumed, wake the callers parked for a reset
+            if (t.remaining > 0) notifyAll();
+        } catch (NumberFormatException e) {
+            LOGGER.warn("Ignoring malformed rate limit headers of {}: {}", t.key, e.getMessage());
+        }
+    }
+
+    /**
+     * A request with {@code token} was refused for exceeding a rate limit, see
+     * {@link BasicQueryService#isRateLimited}; other refusals are not the pool's business.
+     */
+    public synchronized void rateLimited(String token, HttpHeaders headers) {
+        Token t = find(token);
+        if (t == null) return;
+        t.rateLimited++;
+        int remainingBefore = t.remaining;
+        long resetBefore = t.resetMillis;
+        update(token, headers);
+        if (t.remaining == remainingBefore && t.resetMillis == resetBefore) {
+            t.remaining = 0;
+            t.resetMillis = System.currentTimeMillis() + REJECTED_BACKOFF_MILLIS;
+        }
+        LOGGER.warn("GitHub token {} is rate limited until {}", t.key, new Date(t.resetMillis));
+    }
+
+    /** Requests all tokens together may still make in their current windows. */
+    public synchronized int headroom() {
+        long now = System.currentTimeMillis();
+        long sum = 0;
+        for (Token token : tokens) {
+            token.refresh(now);
+            sum += token.remaining;
+        }
+        return (int) Math.min(Integer.MAX_VALUE, sum);
+    }
+
+    public synchronized List<Usage> usage() {
+        long now = System.currentTimeMillis();
+        List<Usage> usage = new ArrayList<>(tokens.size());
+        for (Token token : tokens) {
+            token.refresh(now);
+            usage.add(new Usage(token.key, token.remaining, token.limit, token.resetMillis / 1000, token.requests,
+                    token.rateLimited));
+        }
+        return usage;
+    }
+
+    private Token find(String token) {
+        return token == null ? tokens.get(0).value == null ? tokens.get(0) : null : byValue.get(token);
+    }
+
+    private void registerMeters(MeterRegistry registry) {
+        for (Token token : tokens) {
+            Gauge.builder("qmodel.github.token.remaining", this, p -> p.usageOf(token).remaining())
+                    .tag("key", token.key)
+                    .description("Requests left in the token's current rate limit window")
+                    .register(registry);
+            Gauge.builder("qmodel.github.token.limit", this, p -> p.usageOf(token).limit())
+                    .tag("key", token.key)
+                    .register(registry);
+            Gauge.builder("qmodel.github.token.reset", this, p -> p.usageOf(token).resetEpochSecond())
+                    .tag("key", token.key)
+                    .baseUnit("seconds")
+                    .description("Epoch second the token's window resets, 0 when not limited")
+                    .register(registry);
+            FunctionCounter.builder("qmodel.github.token.requests", this, p -> p.usageOf(token).requests())
+                    .tag("key", token.key)
+                    .register(registry);
+            FunctionCounter.builder("qmodel.github.token.rate-limited", this, p -> p.usageOf(token).rateLimited())
+                    .tag("key", token.key)
+                    .register(registry);
+        }
+        FunctionCounter.builder("qmodel.github.tokens.waits", this, p -> p.waitStats()[0])
+                .description("Times a request parked because every token was used up")
+                .register(registry);
+        FunctionCounter.builder("qmodel.github.tokens.wait-time", this, p -> p.waitStats()[1] / 1000.0)
+                .baseUnit("seconds")
+                .register(registry);
+    }
+
+    private synchronized Usage usageOf(Token token) {
+        token.refresh(System.currentTimeMillis());
+        return new Usage(token.key, token.remaining, token.limit, token.resetMillis / 1000, token.requests,
+                token.rateLimited);
+    }
+
+    private synchronized long[] waitStats() {
+        return new long[]{waits, waitMillis};
+    }
+}
@@ -0,0 +1,292 @@
+package com.research.qmodel.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+
+/**
+ * Bulk writer for the per-commit graph metrics computed by {@link com.research.qmodel.graph.Graph}.
+ * <p>
+ * Replaces one {@code updateGraphMetrics} round trip per commit with JDBC batches of
+ * {@code qmodel.graph.metrics.batch-size} rows. In {@link Mode#TEMP_TABLE} mode the rows are
+ * loaded into a temporary table instead and applied with a single {@code UPDATE ... JOIN}.
+ */
+@Service
+public class GraphMetricsWriter {
+
+    public enum Mode {BATCH, TEMP_TABLE}
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(GraphMetricsWriter.class);
+
+    private static final String UPDATE_SQL = """
+            update commit set
+              in_degree = ?,
+              out_degree = ?,
+              merge_count = ?,
+              min_depth_of_commit_history = ?,
+              max_depth_of_commit_history = ?,
+              number_of_branches = ?,
+              average_degree = ?,
+              distance_to_branch_start = ?,
+              upstream_heads_unique_on_segment = ?,
+              days_since_last_merge_on_segment = ?
+            where sha = ?
+            """;
+
+    private static final String TEMP_TABLE = "tmp_graph_metrics";
+
+    private static final String CREATE_TEMP_SQL = "create temporary table " + TEMP_TABLE + " ("
+            + "in_degree int, out_degree int, merge_count int, "
+            + "min_depth_of_commit_history int, max_depth_of_commit_history int, "
+            + "number_of_branches int, average_degree double, distance_to_branch_start int, "
+            + "upstream_heads_unique_on_segment int, days_since_last_merge_on_segment int, "
+            + "sha varchar(64) primary key)";
+
+    private static final String INSERT_TEMP_SQL = "insert into " + TEMP_TABLE
+            + " values (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+
+    private static final String APPLY_TEMP_SQL = """
+            update commit c join tmp_graph_metrics t on c.sha = t.sha set
+              c.in_degree = t.in_degree,
+              c.out_degree = t.out_degree,
+              c.merge_count = t.merge_count,
+              c.min_depth_of_commit_history = t.min_depth_of_commit_history,
+              c.max_depth_of_commit_history = t.max_depth_of_commit_history,
+              c.number_of_branches = t.number_of_branches,
+              c.average_degree = t.average_degree,
+              c.distance_to_branch_start = t.distance_to_branch_start,
+              c.upstream_heads_unique_on_segment = t.upstream_heads_unique_on_segment,
+              c.days_since_last_merge_on_segment = t.days_since_last_merge_on_segment
+            """;
+
+    private static final String UNMATCHED_TEMP_SQL = "select count(*) from " + TEMP_TABLE
+            + " t left join commit c on c.sha = t.sha where c.sha is null";
+
+    private final DataSource dataSource;
+
+    @Value("${qmodel.graph.metrics.batch-size:5000}")
+    private int batchSize = 5000;
+
+    @Value("${qmodel.graph.metrics.write-mode:BATCH}")
+    private Mode mode = Mode.BATCH;
+
+    public GraphMetricsWriter(DataSource dataSource) {
+        this.dataSource = dataSource;
+    }
+
+    /**
+     * Opens a sink on its own connection. Rows are sent every batch but only committed by
+     * {@link GraphMetricsSink#finish()}; closing an unfinished sink rolls them back.
+     */
+    public GraphMetricsSink open() throws SQLException {
+        return new JdbcSink(dataSource.getConnection(), mode, Math.max(1, batchSize));
+    }
+
+    /** Sets {@code average_degree} alone on the given commits, returns the number of rows updated. */
+    public int updateAverageDegree(List<String> shas, double avgDeg) {
+        int[][] counts = new JdbcTemplate(dataSource).batchUpdate(
+                "update commit set average_degree = ? where sha = ?",
+                shas,
+                Math.max(1, batchSize),
+                (ps, sha) -> {
+                    ps.setDouble(1, avgDeg);
+                    ps.setString(2, sha);
+                });
+        int updated = 0;
+        for (int[] batch : counts) {
+            for (int c : batch) {
+                if (c > 0) updated += c;
+            }
+        }
+        return updated;
+    }
+
+    public interface GraphMetricsSink extends AutoCloseable {
+        void add(String sha,
+                 int inDeg,
+                 int outDeg,
+                 int mergeCount,
+                 int minDepth,
+                 int maxDepth,
+                 int numBranches,
+                 double avgDeg,
+                 int distToBranchStart,
+                 int upstreamHeadsUnique,
+                 int daysSinceLastMerge) throws SQLException;
+
+        /** Flushes the remaining rows, commits and releases the connection; repeated calls return the same report. */
+        Report finish() throws SQLException;
+
+        /** Rolls back the rows {@link #finish()} has not committed and releases the connection. */
+        @Override
+        default void close() throws SQLException {
+        }
+    }
+
+    public static final class Report {
+        private final long rows;
+        private final long unmatched;
+        private final long elapsedMillis;
+
+        public Report(long rows, long unmatched, long elapsedMillis) {
+            this.rows = rows;
+            this.unmatched = unmatched;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public long getRows() {
+            return rows;
+        }
+
+        /** Rows whose sha matched no commit; -1 when the driver did not report update counts. */
+        public long getUnmatched() {
+            return unmatched;
+        }
+
+        public long getElapsedMillis() {
+            return elapsedMillis;
+        }
+
+        public double getRowsPerSecond() {
+            return elapsedMillis == 0 ? rows : rows * 1000.0 / elapsedMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("rows=%d unmatched=%d elapsedMs=%d rowsPerSec=%.1f",
+                    rows, unmatched, elapsedMillis, getRowsPerSecond());
+        }
+    }
+
+    private static final class JdbcSink implements GraphMetricsSink {
+        private final Connection connection;
+        private final boolean autoCommit;
+        private final Mode mode;
+        private final int batchSize;
+        private final PreparedStatement statement;
+        private final long startedAt = System.currentTimeMillis();
+        private long rows;
+        private long unmatched;
+        private boolean countsKnown = true;
+        private int pending;
+        private boolean released;
+        private Report report;
+
+        JdbcSink(Connection connection, Mode mode, int batchSize) throws SQLException {
+            this.connection = connection;
+            this.autoCommit = connection.getAutoCommit();
+            this.mode = mode;
+            this.batchSize = batchSize;
+            try {
+                connection.setAutoCommit(false);
+                if (mode == Mode.TEMP_TABLE) {
+                    try (Statement st = connection.createStatement()) {
+                        st.execute("drop temporary table if exists " + TEMP_TABLE);
+                        st.execute(CREATE_TEMP_SQL);
+                    }
+                    statement = connection.prepareStatement(INSERT_TEMP_SQL);
+                } else {
+                    statement = connection.prepareStatement(UPDATE_SQL);
+                }
+            } catch (SQLException e) {
+                release();
+                throw e;
+            }
+        }
+
+        @Override
+        public void add(String sha, int inDeg, int outDeg, int mergeCount, int minDepth, int maxDepth,
+                        int numBranches, double avgDeg, int distToBranchStart, int upstreamHeadsUnique,
+                        int daysSinceLastMerge) throws SQLException {
+            statement.setInt(1, inDeg);
+            statement.setInt(2, outDeg);
+            statement.setInt(3, mergeCount);
+            statement.setInt(4, minDepth);
+            statement.setInt(5, maxDepth);
+            statement.setInt(6, numBranches);
+            statement.setDouble(7, avgDeg);
+            statement.setInt(8, distToBranchStart);
+            statement.setInt(9, upstreamHeadsUnique);
+            statement.setInt(10, daysSinceLastMerge);
+            statement.setString(11, sha);
+            statement.addBatch();
+            rows++;
+            if (++pending >= batchSize) flush();
+        }
+
+        private void flush() throws SQLException {
+            if (pending == 0) return;
+            int[] counts = statement.executeBatch();
+            pending = 0;
+            if (mode != Mode.BATCH) return;
+            for (int c : counts) {
+                if (c == 0) unmatched++;
+                else if (c == Statement.SUCCESS_NO_INFO) countsKnown = false;
+            }
+        }
+
+        @Override
+        public Report finish() throws SQLException {
+            if (report != null) return report;
+            if (released) throw new SQLException("Graph metrics sink is already closed");
+            try {
+                flush();
+                if (mode == Mode.TEMP_TABLE) {
+                    try (Statement st = connection.createStatement()) {
+                        int updated = st.executeUpdate(APPLY_TEMP_SQL);
+                        try (ResultSet rs = st.executeQuery(UNMATCHED_TEMP_SQL)) {
+                            unmatched = rs.next() ? rs.getLong(1) : 0;
+                        }
+                        st.execute("drop temporary table if exists " + TEMP_TABLE);
+                        LOGGER.debug("Applied {} graph metric rows from {}", updated, TEMP_TABLE);
+                    }
+                }
+                connection.commit();
+            } catch (SQLException e) {
+                connection.rollback();
+                throw e;
+            } finally {
+                statement.close();
+                release();
+            }
+            report = new Report(rows, countsKnown ? unmatched : -1, System.currentTimeMillis() - startedAt);
+            return report;
+        }
+
+        @Override
+        public void close() throws SQLException {
+            if (released) return;
+            try {
+                connection.rollback();
+                if (mode == Mode.TEMP_TABLE) {
+                    try (Statement st = connection.createStatement()) {
+                        st.execute("drop temporary table if exists " + TEMP_TABLE);
+                    }
+                }
+                LOGGER.warn("Rolled back {} unfinished graph metric rows", rows);
+            } finally {
+                statement.close();
+                release();
+            }
+        }
+
+        private void release() throws SQLException {
+            released = true;
+            try {
+                connection.setAutoCommit(autoCommit);
+            } finally {
+                connection.close();
+            }
+        }
+    }
+}
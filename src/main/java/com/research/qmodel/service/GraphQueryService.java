@@ -0,0 +1,89 @@
+package com.research.qmodel.service;
+
+import com.research.qmodel.errors.GraphNotLoadedException;
+import com.research.qmodel.graph.Graph;
+import com.research.qmodel.graph.GraphColumn;
+import com.research.qmodel.graph.GraphPage;
+import com.research.qmodel.graph.GraphQuery;
+import com.research.qmodel.graph.GraphRegistry;
+import com.research.qmodel.repos.CommitRepository;
+import com.research.qmodel.repos.CommitRepository.GraphRow;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.*;
+
+/**
+ * Pages through the commit graph of a project. A graph held by {@link GraphRegistry} is read
+ * directly; otherwise the metric columns persisted on {@code commit} are queried with the same
+ * ordering and cursor, so a client can keep paging when the graph is loaded or evicted. A read
+ * never builds a graph, that is left to {@code POST .../graph/refresh}.
+ */
+@Service
+public class GraphQueryService {
+
+    private final GraphRegistry graphRegistry;
+    private final CommitRepository commitRepository;
+
+    public GraphQueryService(GraphRegistry graphRegistry, CommitRepository commitRepository) {
+        this.graphRegistry = graphRegistry;
+        this.commitRepository = commitRepository;
+    }
+
+    /** @throws GraphNotLoadedException for a branch filter while the graph is not loaded */
+    public GraphPage page(String owner, String repo, GraphQuery query) {
+        Optional<Graph> graph = graphRegistry.getIfPresent(owner, repo);
+        if (graph.isPresent()) {
+            return graph.get().page(query);
+        }
+        if (query.getBranch() != null) {
+            // branch reachability is not persisted, it needs the graph
+            throw new GraphNotLoadedException("Graph of " + owner + "/" + repo + " is not loaded, POST "
+                    + "api/v1/metrics/repos/" + owner + "/" + repo + "/graph/refresh to build it");
+        }
+        return fromDatabase(owner, repo, query);
+    }
+
+    private GraphPage fromDatabase(String owner, String repo, GraphQuery query) {
+        int limit = query.pageSize();
+        List<GraphRow> found = commitRepository.findGraphPage(repo, owner,
+                query.getAfterDepth(), query.getAfterSha(),
+                query.getFrom() == null ? null : new Date(query.getFrom()),
+                query.getTo() == null ? null : new Date(query.getTo()),
+                query.isMergesOnly(), PageRequest.of(0, limit + 1));
+
+        Set<GraphColumn> columns = query.getColumns() == null
+                ? EnumSet.allOf(GraphColumn.class) : query.getColumns();
+        List<Map<String, Object>> rows = new ArrayList<>();
+        for (GraphRow r : found.subList(0, Math.min(limit, found.size()))) {
+            rows.add(row(r, columns));
+        }
+        String nextCursor = null;
+        if (found.size() > limit) {
+            GraphRow last = found.get(limit - 1);
+            nextCursor = GraphQuery.cursor(last.getMaxDepthOfCommitHistory(), last.getSha());
+        }
+        return new GraphPage(GraphPage.Source.DATABASE, rows, nextCursor);
+    }
+
+    private static Map<String, Object> row(GraphRow r, Set<GraphColumn> columns) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        row.put("sha", r.getSha());
+        for (GraphColumn c : columns) {
+            row.put(c.getKey(), switch (c) {
+                case COMMIT_DATE -> r.getCommitDate();
+                case IN_DEGREE -> r.getInDegree();
+                case OUT_DEGREE -> r.getOutDegree();
+                case MERGE_COUNT -> r.getMergeCount();
+                case MIN_DEPTH -> r.getMinDepthOfCommitHistory();
+                case MAX_DEPTH -> r.getMaxDepthOfCommitHistory();
+                case NUMBER_OF_BRANCHES -> r.getNumberOfBranches();
+                case AVERAGE_DEGREE -> r.getAverageDegree();
+                case DISTANCE_TO_BRANCH_START -> r.getDistanceToBranchStart();
+                case UPSTREAM_HEADS_UNIQUE -> r.getUpstreamHeadsUniqueOnSegment();
+                case DAYS_SINCE_LAST_MERGE -> r.getDaysSinceLastMergeOnSegment();
+            });
+        }
+        return row;
+    }
+}
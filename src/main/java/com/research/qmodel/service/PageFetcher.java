@@ -0,0 +1,89 @@
+package com.research.qmodel.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntSupplier;
+
+/**
+ * Reads the numbered pages of a GitHub list endpoint with several requests in flight and hands
+ * them to the caller in page order. When the first page's {@code Link} header names the last
+ * page, the pages up to it are requested {@code parallelism} at a time. Otherwise pages are
+ * requested ahead speculatively: one page at first, twice as many each time a page says there
+ * is a next one. Pages requested past the end come back empty and are dropped.
+ * <p>
+ * The number of requests in flight never exceeds {@code headroom}, the quota left on all
+ * tokens together, see {@link GitHubTokenPool}.
+ */
+final class PageFetcher {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(PageFetcher.class);
+
+    /** One page; {@code lastPage} is 0 unless the response named the last page. */
+    record Page(List<JsonNode> rows, boolean hasNext, int lastPage) {
+        static final Page EMPTY = new Page(List.of(), false, 0);
+    }
+
+    @FunctionalInterface
+    interface Source {
+        /** Never throws; a failed request is an {@link Page#EMPTY} page. */
+        Page fetch(int pageNumber);
+    }
+
+    @FunctionalInterface
+    interface Sink {
+        /** @return false to stop reading */
+        boolean accept(int pageNumber, Page page);
+    }
+
+    private final ExecutorService executor;
+    private final int parallelism;
+    private final IntSupplier headroom;
+
+    PageFetcher(ExecutorService executor, int parallelism, IntSupplier headroom) {
+        this.executor = executor;
+        this.parallelism = Math.max(1, parallelism);
+        this.headroom = headroom;
+    }
+
+    /** Reads pages 1..{@code maxPages} until one is empty, has no next page or the sink stops. */
+    void fetch(Source source, int maxPages, Sink sink) {
+        Page first = source.fetch(1);
+        if (first.rows().isEmpty() || !sink.accept(1, first) || !first.hasNext()) return;
+
+        boolean lastKnown = first.lastPage() > 0;
+        int last = lastKnown ? Math.min(first.lastPage(), maxPages) : maxPages;
+        int window = lastKnown ? parallelism : 1;
+        Deque<Future<Page>> inFlight = new ArrayDeque<>();
+        int nextToRequest = 2;
+        try {
+            for (int pageNumber = 2; pageNumber <= last; pageNumber++) {
+                int width = Math.max(1, Math.min(window, headroom.getAsInt()));
+                while (nextToRequest <= last && inFlight.size() < width) {
+                    int requested = nextToRequest++;
+                    inFlight.add(executor.submit(() -> source.fetch(requested)));
+                }
+                Page page = inFlight.poll().get();
+                if (page.rows().isEmpty() || !sink.accept(pageNumber, page) || !page.hasNext()) return;
+                if (!lastKnown) window = Math.min(parallelism, window * 2);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.warn("Interrupted while reading pages");
+        } catch (ExecutionException e) {
+            LOGGER.error("Page request failed: {}", e.getCause().getMessage(), e.getCause());
+        } finally {
+            if (!inFlight.isEmpty()) {
+                LOGGER.debug("Dropping {} pages requested past the end", inFlight.size());
+                inFlight.forEach(f -> f.cancel(true));
+            }
+        }
+    }
+}
@@ -5,11 +5,11 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.research.qmodel.annotations.ChangePatchProcessor;
 import com.research.qmodel.errors.IssueNotFoundException;
-import com.research.qmodel.model.AGraph;
+import com.research.qmodel.graph.BlobFetcher;
+import com.research.qmodel.graph.RepositoryPool;
 import com.research.qmodel.model.Commit;
 import com.research.qmodel.model.CommitID;
 import com.research.qmodel.model.FileChange;
-import com.research.qmodel.model.Project;
 import com.research.qmodel.model.ProjectIssue;
 import com.research.qmodel.model.ProjectPull;
 import com.research.qmodel.model.Timeline;
@@ -17,32 +17,28 @@ import com.research.qmodel.repos.CommitRepository;
 import com.research.qmodel.repos.ProjectIssueRepository;
 import com.research.qmodel.repos.ProjectPullRepository;
 import com.research.qmodel.service.BasicQueryService;
-import com.research.qmodel.service.DataPersistance;
 import java.util.*;
 import java.io.*;
-import java.util.stream.Collectors;
-import org.apache.commons.lang3.StringUtils;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.eclipse.jgit.api.Git;
-import org.eclipse.jgit.api.ResetCommand;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.blame.BlameResult;
 import org.eclipse.jgit.lib.ObjectId;
 import org.eclipse.jgit.lib.Repository;
 import org.eclipse.jgit.revwalk.RevCommit;
-import org.eclipse.jgit.storage.file.FileRepositoryBuilder;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Service;
 
 @Service
 public class BasicBugFinder implements ChangePatchProcessor {
-  @Autowired private CommitRepository commitRepository;
-  @Autowired private ProjectIssueRepository projectIssueRepository;
-  @Autowired private ObjectMapper objectMapper;
-  @Autowired private BasicQueryService basicQueryService;
-  @Autowired private ProjectPullRepository projectPullRepository;
+  private final CommitRepository commitRepository;
+  private final ProjectIssueRepository projectIssueRepository;
+  private final ObjectMapper objectMapper;
+  private final BasicQueryService basicQueryService;
+  private final ProjectPullRepository projectPullRepository;
   private final Logger LOGGER = LoggerFactory.getLogger(BasicBugFinder.class);
 
   @Value("${qmodel.defect.labels:bug}")
@@ -51,7 +47,37 @@ public class BasicBugFinder implements ChangePatchProcessor {
   @Value("${qmodel.repo.basePath:/tmp}")
   private String repoBasePath;
 
-  @Autowired private DataPersistance dataPersistance;
+  private final BlameCache blameCache;
+  private final FixingCommitResolver fixingCommitResolver;
+  private final HunkSzzTracer hunkSzzTracer;
+  private final SzzJobTracker szzJobTracker;
+
+  @Value("${qmodel.szz.threads:4}")
+  private int szzThreads = 4;
+
+  @Value("${qmodel.szz.save-batch-size:50}")
+  private int szzSaveBatchSize = 50;
+
+  public BasicBugFinder(
+      CommitRepository commitRepository,
+      ProjectIssueRepository projectIssueRepository,
+      ObjectMapper objectMapper,
+      BasicQueryService basicQueryService,
+      ProjectPullRepository projectPullRepository,
+      BlameCache blameCache,
+      FixingCommitResolver fixingCommitResolver,
+      HunkSzzTracer hunkSzzTracer,
+      SzzJobTracker szzJobTracker) {
+    this.commitRepository = commitRepository;
+    this.projectIssueRepository = projectIssueRepository;
+    this.objectMapper = objectMapper;
+    this.basicQueryService = basicQueryService;
+    this.projectPullRepository = projectPullRepository;
+    this.blameCache = blameCache;
+    this.fixingCommitResolver = fixingCommitResolver;
+    this.hunkSzzTracer = hunkSzzTracer;
+    this.szzJobTracker = szzJobTracker;
+  }
 
   public List<String> findAllBugsFixingCommits(String repoName, String repoOwner, int depth)
       throws JsonProcessingException {
@@ -116,24 +142,7 @@ public class BasicBugFinder implements ChangePatchProcessor {
       }
       cachedCommits.addAll(retrievedCommits);
       List<Commit> foundCommitsInDb =
-          retrievedCommits.stream()
-              .filter(Objects::nonNull)
-              .filter(StringUtils::isNotBlank)
-              .map(
-                  c ->
-                      commitRepository
-                          .findById(new CommitID(c))
-                          .orElseGet(
-                              () -> {
-                                AGraph graphWithoutForks =
-                                    basicQueryService.retrieveCommitBySha(repoOwner, repoName, c);
-                                dataPersistance.persistGraph(
-                                    List.of(new Project(repoOwner, repoName)),
-                                    Map.of(new Project(repoOwner, repoName), graphWithoutForks));
-                                return commitRepository.findById(new CommitID(c)).orElse(null);
-                              }))
-              .filter(Objects::nonNull)
-              .collect(Collectors.toList());
+          fixingCommitResolver.resolve(repoOwner, repoName, retrievedCommits);
 
       if (foundCommitsInDb.isEmpty()) {
         LOGGER.warn(
@@ -196,24 +205,16 @@ public class BasicBugFinder implements ChangePatchProcessor {
     List<Commit> candidateCommits = new ArrayList<>();
     List<Commit> commits = foundIssue.getFixingCommits();
 
-    for (Commit commit : commits) {
-      String currentCommitSha = commit.getSha();
-      String repoPath = getRepositoryPath(owner, repo);
-        if (commit.getFileChanges()==null) {
-            continue;
-        }
-      for (FileChange fileChange : commit.getFileChanges()) {
-        Set<Integer> modifiedLines = getChangedLineNumbers(fileChange.getPatch());
-
-        for (int line : modifiedLines) {
-          List<Commit> bugIntroducingCommitsCandidates =
-              traceLineToCommit(repoPath, fileChange.getFileName(), line, currentCommitSha, depth);
-
-          if (bugIntroducingCommitsCandidates != null
-              && !bugIntroducingCommitsCandidates.isEmpty()) {
-            candidateCommits.addAll(bugIntroducingCommitsCandidates);
-          }
+    try (RepositoryPool.Lease lease =
+        RepositoryPool.shared().acquire(OrphanCommits.gitDir(getRepositoryPath(owner, repo)))) {
+      Git git = lease.git();
+      for (Commit commit : commits) {
+        if (commit.getFileChanges() == null) {
+          continue;
         }
+        traceFileChangesToCommits(git, commit.getSha(), commit.getFileChanges(), depth)
+            .values()
+            .forEach(lines -> lines.values().forEach(candidateCommits::addAll));
       }
     }
     return candidateCommits;
@@ -237,92 +238,281 @@ public class BasicBugFinder implements ChangePatchProcessor {
     return parseDiffForModifiedLines(runGitCommand(repoPath, command));
   }
 
+  /**
+   * Traces the changed lines of every fixed issue's fixing commits back to the commits that
+   * introduced them. Issues are spread over {@code qmodel.szz.threads} workers reading one pooled
+   * {@link Repository}, see {@link RepositoryPool}; fixing commits missing locally are fetched
+   * once up front, see {@link OrphanCommits}, so that no worker ever touches the working tree.
+   * Issues are saved in batches of {@code qmodel.szz.save-batch-size} as they finish, and each
+   * batch is a checkpoint of the run's {@link SzzJobTracker job}: after a restart the next call
+   * only traces what the interrupted run did not finish.
+   */
   public void traceCommitsToOrigin(String owner, String repo, int depth) {
     String repoPath = repoBasePath + File.separator + owner + "_" + repo;
-    Queue<ProjectIssue> projectIssues =
-        new LinkedList<>(projectIssueRepository.finAllFixedIssues(repo, owner));
+    File gitDir = OrphanCommits.gitDir(repoPath);
+
+    // JPA entities are lazy, copy what the workers need while the session is still ours
+    Map<Long, IssueToTrace> traceable = new LinkedHashMap<>();
+    List<Long> traced = new ArrayList<>();
+    for (ProjectIssue issue : projectIssueRepository.finAllFixedIssues(repo, owner)) {
+      if (issue.getBugIntroducingCommits() != null && !issue.getBugIntroducingCommits().isEmpty()) {
+        LOGGER.info("Issue {} has been processed already", issue.getId());
+        traced.add(issue.getId());
+        continue;
+      }
+      if (issue.getFixingCommits() == null || issue.getFixingCommits().isEmpty()) {
+        LOGGER.warn("No commits associated with issue {}", issue.getId());
+        continue;
+      }
+      traceable.put(issue.getId(), new IssueToTrace(issue, fixesToTrace(issue)));
+    }
+    SzzJobTracker.Run run =
+        szzJobTracker.start(
+            owner, repo, depth, traceable.keySet(), traced, blameCache.stats().misses());
+    List<IssueToTrace> issuesToTrace = run.toTrace().stream().map(traceable::get).toList();
+    LOGGER.info(
+        "SZZ job {} traces {} of {} fixed issues",
+        run.jobId(),
+        issuesToTrace.size(),
+        traceable.size() + traced.size());
+
+    AtomicInteger threadCount = new AtomicInteger();
+    ExecutorService pool =
+        Executors.newFixedThreadPool(
+            Math.max(1, szzThreads),
+            r -> {
+              Thread t = new Thread(r, "szz-" + repo + "-" + threadCount.incrementAndGet());
+              t.setDaemon(true);
+              return t;
+            });
+
+    try (RepositoryPool.Lease lease = RepositoryPool.shared().acquire(gitDir)) {
+      Repository repository = lease.repository();
+      Git git = lease.git();
+      OrphanCommits.pruneLegacyRefs(repository);
+      Set<ObjectId> fixingCommits = new LinkedHashSet<>();
+      for (IssueToTrace issueToTrace : issuesToTrace) {
+        for (FixToTrace fix : issueToTrace.fixes()) {
+          if (ObjectId.isId(fix.sha())) {
+            fixingCommits.add(ObjectId.fromString(fix.sha()));
+          } else {
+            LOGGER.warn("Skipping malformed commit id {}", fix.sha());
+          }
+        }
+      }
+      Set<ObjectId> unavailable = OrphanCommits.fetch(git, fixingCommits);
+      if (!unavailable.isEmpty()) {
+        LOGGER.warn("{} fixing commits are not available from origin", unavailable.size());
+      }
 
-    FileRepositoryBuilder builder = new FileRepositoryBuilder();
+      CompletionService<List<Commit>> completion = new ExecutorCompletionService<>(pool);
+      Map<Future<List<Commit>>, ProjectIssue> submitted = new HashMap<>();
+      for (IssueToTrace issueToTrace : issuesToTrace) {
+        ProjectIssue issue = issueToTrace.issue();
+        submitted.put(
+            completion.submit(
+                () -> {
+                  run.started(issue.getId());
+                  try {
+                    return traceIssue(git, issue.getId(), issueToTrace.fixes(), depth);
+                  } finally {
+                    run.traced(issue.getId());
+                  }
+                }),
+            issue);
+      }
+
+      List<ProjectIssue> batch = new ArrayList<>();
+      for (int remaining = submitted.size(); remaining > 0; remaining--) {
+        Future<List<Commit>> done = completion.take();
+        ProjectIssue issue = submitted.get(done);
+        try {
+          done.get().forEach(issue::addBugIntroducing);
+        } catch (ExecutionException e) {
+          Throwable cause = e.getCause();
+          LOGGER.error("Tracing issue {} failed: {}", issue.getId(), cause.getMessage(), cause);
+          run.failed(issue.getId(), cause);
+          continue;
+        }
+        batch.add(issue);
+        if (batch.size() >= szzSaveBatchSize) {
+          saveIssues(run, batch);
+        }
+        LOGGER.info("Issues still left in the queue: {}", Optional.of(remaining - 1));
+      }
+      saveIssues(run, batch);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.error("SZZ tracing interrupted for {}/{}", owner, repo);
+    } catch (Exception e) {
+      LOGGER.error("Fatal error during SZZ tracing: {}", e.getMessage(), e);
+    } finally {
+      pool.shutdownNow();
+      try {
+        szzJobTracker.finish(run, blameCache.stats().misses());
+      } catch (Exception e) {
+        LOGGER.error("Could not checkpoint SZZ job {}: {}", run.jobId(), e.getMessage(), e);
+      }
+    }
 
-    try (Repository repository =
-            builder.setGitDir(new File(repoPath + "/.git")).readEnvironment().findGitDir().build();
-        Git git = new Git(repository)) {
+    LOGGER.info("Trace to origin completed for repo {} and owner {}", repo, owner);
+  }
 
-      while (!projectIssues.isEmpty()) {
-        ProjectIssue issue = projectIssues.poll();
-          if (!issue.getBugIntroducingCommits().isEmpty()) {
-              LOGGER.info("Issue {} has been processed already", issue.getId());
-              continue;
-          }
-        LOGGER.info("Issues still left in the queue: {}", Optional.of(projectIssues.size()));
+  /** Progress and throughput of the latest {@link #traceCommitsToOrigin} job of the project. */
+  public SzzJobTracker.Report szzJobReport(String owner, String repo) {
+    return szzJobTracker.report(owner, repo);
+  }
 
-        if (issue.getFixingCommits() == null || issue.getFixingCommits().isEmpty()) {
-            LOGGER.warn("No commits associated with issue {}", issue.getId());
+  private List<FixToTrace> fixesToTrace(ProjectIssue issue) {
+    List<FixToTrace> fixes = new ArrayList<>();
+    for (Commit fixCommit : issue.getFixingCommits()) {
+      List<FixedFile> files = new ArrayList<>();
+      for (FileChange file : fixCommit.getFileChanges()) {
+        if (file == null || file.getChangedLines() == null) {
+          LOGGER.warn("File or changed lines are null for commit {}", fixCommit.getSha());
+          continue;
         }
+        files.add(new FixedFile(file.getFileName(), new TreeSet<>(file.getChangedLines())));
+      }
+      fixes.add(new FixToTrace(fixCommit.getSha(), files));
+    }
+    return fixes;
+  }
 
-        Set<String> visited = new HashSet<>();
+  /** Bug-introducing commits of one issue as found by each tracer, for comparing them. */
+  public record TracerComparison(
+      Long issueId, Set<String> lineTracer, Set<String> hunkTracer, Set<String> both) {}
 
-        for (Commit fixCommit : issue.getFixingCommits()) {
-          RevCommit revFix;
+  /**
+   * Runs the line-by-line tracer of {@link #traceCommitsToOrigin} and {@link HunkSzzTracer} on
+   * the same issue without saving anything.
+   */
+  public TracerComparison compareTracers(String owner, String repo, Long issueId, int depth)
+      throws IOException {
+    ProjectIssue issue = projectIssueRepository.findIssueById(repo, owner, issueId);
+    if (issue == null) {
+      throw new IssueNotFoundException("Issue with id " + issueId + " is not found.");
+    }
+    List<FixToTrace> fixes = issue.getFixingCommits() == null ? List.of() : fixesToTrace(issue);
+    File gitDir = OrphanCommits.gitDir(getRepositoryPath(owner, repo));
+
+    try (RepositoryPool.Lease lease = RepositoryPool.shared().acquire(gitDir)) {
+      Repository repository = lease.repository();
+      Git git = lease.git();
+      OrphanCommits.fetch(
+          git,
+          fixes.stream()
+              .map(FixToTrace::sha)
+              .filter(ObjectId::isId)
+              .map(ObjectId::fromString)
+              .toList());
+
+      Set<String> lineTracer = new LinkedHashSet<>();
+      traceIssue(git, issueId, fixes, depth).forEach(c -> lineTracer.add(c.getSha()));
+
+      Set<String> hunkTracer = new LinkedHashSet<>();
+      for (FixToTrace fix : fixes) {
+        RevCommit fixCommit;
+        try {
+          fixCommit = repository.parseCommit(ObjectId.fromString(fix.sha()));
+        } catch (Exception e) {
+          LOGGER.error("Fixing commit {} of issue {} is not available", fix.sha(), issueId);
+          continue;
+        }
+        for (FixedFile file : fix.files()) {
           try {
-            revFix = repository.parseCommit(ObjectId.fromString(fixCommit.getSha()));
+            hunkSzzTracer
+                .trace(git, fixCommit, file.fileName(), depth)
+                .forEach(introducer -> hunkTracer.add(introducer.sha()));
           } catch (Exception e) {
-            checkoutOrphanedCommit(git, repository, fixCommit.getSha());
-            try {
-              revFix = repository.parseCommit(ObjectId.fromString(fixCommit.getSha()));
-            } catch (Exception e1) {
-              LOGGER.error("failed to pick up orphaned commit", e1);
-              continue;
-            }
-          }
-          if (revFix.getParentCount() == 0) {
-            LOGGER.warn("No parent found for commit {}", fixCommit.getSha());
-            continue;
+            LOGGER.error(
+                "Hunk trace error in {}@{}: {}", file.fileName(), fix.sha(), e.getMessage(), e);
           }
+        }
+      }
+
+      Set<String> both = new LinkedHashSet<>(lineTracer);
+      both.retainAll(hunkTracer);
+      return new TracerComparison(issueId, lineTracer, hunkTracer, both);
+    }
+  }
+
+  private record FixedFile(String fileName, Set<Integer> changedLines) {}
+
+  private record FixToTrace(String sha, List<FixedFile> files) {}
+
+  private record IssueToTrace(ProjectIssue issue, List<FixToTrace> fixes) {}
+
+  private List<Commit> traceIssue(Git git, Long issueId, List<FixToTrace> fixes, int depth) {
+    Repository repository = git.getRepository();
+    Set<String> visited = new HashSet<>();
+    List<Commit> bugIntroducing = new ArrayList<>();
+    for (FixToTrace fix : fixes) {
+      RevCommit revFix;
+      try {
+        revFix = repository.parseCommit(ObjectId.fromString(fix.sha()));
+      } catch (Exception e) {
+        LOGGER.error("Fixing commit {} of issue {} is not available", fix.sha(), issueId);
+        continue;
+      }
+      if (revFix.getParentCount() == 0) {
+        LOGGER.warn("No parent found for commit {}", fix.sha());
+        continue;
+      }
 
-          for (RevCommit parent : revFix.getParents()) {
-            for (FileChange file : fixCommit.getFileChanges()) {
-              if (file == null || file.getChangedLines() == null) {
-                LOGGER.warn("File or changed lines are null for commit {}", fixCommit.getSha());
-                continue;
-              }
-              for (Integer line : file.getChangedLines()) {
-                try {
-                  recursivelyTraceLine(
-                      git,
-                      repository,
-                      file.getFileName(),
-                      line,
-                      parent.getName(),
-                      depth,
-                      visited,
-                      issue);
-                } catch (Exception e) {
-                  LOGGER.error(
-                      "Trace error for line {} in {}: {}",
-                      line,
-                      file.getFileName(),
-                      e.getMessage(),
-                      e);
-                }
-              }
+      for (RevCommit parent : revFix.getParents()) {
+        for (FixedFile file : fix.files()) {
+          for (Integer line : file.changedLines()) {
+            try {
+              recursivelyTraceLine(
+                  git,
+                  repository,
+                  file.fileName(),
+                  line,
+                  parent.getName(),
+                  depth,
+                  visited,
+                  issueId,
+                  bugIntroducing);
+            } catch (Exception e) {
+              LOGGER.error(
+                  "Trace error for line {} in {}: {}", line, file.fileName(), e.getMessage(), e);
             }
           }
         }
+      }
+    }
+    return bugIntroducing;
+  }
 
+  /** Saves traced issues and checkpoints the job; an issue only counts as done once saved. */
+  private void saveIssues(SzzJobTracker.Run run, List<ProjectIssue> batch) {
+    if (batch.isEmpty()) {
+      return;
+    }
+    try {
+      projectIssueRepository.saveAll(batch);
+      LOGGER.info("Issues {} saved in the DB", batch.stream().map(ProjectIssue::getId).toList());
+      batch.forEach(issue -> run.finished(issue.getId(), bugIntroducingCount(issue)));
+    } catch (Exception e) {
+      LOGGER.error("Batch save failed, saving issues one by one: {}", e.getMessage(), e);
+      for (ProjectIssue issue : batch) {
         try {
           projectIssueRepository.save(issue);
           LOGGER.info("Issue {} saved in the DB", issue.getId());
-        } catch (Exception e) {
-          LOGGER.error("Error saving issue {}: {}", issue.getId(), e.getMessage(), e);
+          run.finished(issue.getId(), bugIntroducingCount(issue));
+        } catch (Exception e1) {
+          LOGGER.error("Error saving issue {}: {}", issue.getId(), e1.getMessage(), e1);
+          run.failed(issue.getId(), e1);
         }
       }
-
-    } catch (Exception e) {
-      LOGGER.error("Fatal error during SZZ tracing: {}", e.getMessage(), e);
     }
+    batch.clear();
+    szzJobTracker.checkpoint(run, blameCache.stats().misses());
+  }
 
-    LOGGER.info("Trace to origin completed for repo {} and owner {}", repo, owner);
+  private static int bugIntroducingCount(ProjectIssue issue) {
+    return issue.getBugIntroducingCommits() == null ? 0 : issue.getBugIntroducingCommits().size();
   }
 
   private void recursivelyTraceLine(
@@ -333,7 +523,8 @@ public class BasicBugFinder implements ChangePatchProcessor {
       String blameContextSha,
       int depth,
       Set<String> visitedLineCommitPairs,
-      ProjectIssue issue)
+      Long issueId,
+      List<Commit> bugIntroducing)
       throws Exception {
 
     if (depth <= 0) {
@@ -357,7 +548,7 @@ public class BasicBugFinder implements ChangePatchProcessor {
       Commit blamedCommit = blamed.get();
       RevCommit revCommit = repo.parseCommit(ObjectId.fromString(blamedSha));
 
-      issue.addBugIntroducing(blamedCommit);
+      bugIntroducing.add(blamedCommit);
       for (int i = 0; i < revCommit.getParentCount(); i++) {
         RevCommit parent = revCommit.getParent(i);
 
@@ -368,10 +559,18 @@ public class BasicBugFinder implements ChangePatchProcessor {
             file,
             line,
             depth - 1,
-            issue.getId());
+            issueId);
 
         recursivelyTraceLine(
-            git, repo, file, line, parent.getName(), depth - 1, visitedLineCommitPairs, issue);
+            git,
+            repo,
+            file,
+            line,
+            parent.getName(),
+            depth - 1,
+            visitedLineCommitPairs,
+            issueId,
+            bugIntroducing);
       }
     } else {
       LOGGER.warn(
@@ -382,135 +581,165 @@ public class BasicBugFinder implements ChangePatchProcessor {
   public List<Commit> traceLineToCommit(
       String repoPath, String file, int line, String startingCommit, int depth)
       throws IOException, GitAPIException {
-    List<Commit> bugIntroducingCommits = new ArrayList<>();
-    Set<String> visitedCommits = new HashSet<>();
-    String currentCommitSha = startingCommit;
-
-    FileRepositoryBuilder builder = new FileRepositoryBuilder();
-    try (Repository repository =
-        builder.setGitDir(new File(repoPath + "/.git")).readEnvironment().findGitDir().build()) {
-      try (Git git = new Git(repository)) {
-        for (int i = 0; i < depth; i++) {
-          if (visitedCommits.contains(currentCommitSha)) {
-            break;
-          }
-          visitedCommits.add(currentCommitSha);
-          String blamedCommitSha = getBlamedCommit(git, repository, file, line, currentCommitSha);
-          if (blamedCommitSha == null || blamedCommitSha.equals(currentCommitSha)) {
-            break;
-          }
+    return traceLinesToCommits(repoPath, file, List.of(line), startingCommit, depth)
+        .getOrDefault(line, List.of());
+  }
 
-          RevCommit blamedCommit = repository.parseCommit(ObjectId.fromString(blamedCommitSha));
-          if (blamedCommit != null) {
-            Optional<Commit> foundCommit = commitRepository.findById(new CommitID(blamedCommitSha));
-            if (foundCommit.isPresent()) {
-              bugIntroducingCommits.add(foundCommit.get());
-              currentCommitSha = blamedCommitSha;
-            }
-          } else {
-            break;
-          }
-        }
-      }
+  /**
+   * Traces every line of one file back from {@code startingCommit}. Lines that meet at the same
+   * commit share one blame of the file, see {@link BlameCache}.
+   */
+  public Map<Integer, List<Commit>> traceLinesToCommits(
+      String repoPath, String file, Collection<Integer> lines, String startingCommit, int depth)
+      throws IOException, GitAPIException {
+    if (lines.isEmpty()) {
+      return new LinkedHashMap<>();
+    }
+    try (RepositoryPool.Lease lease =
+        RepositoryPool.shared().acquire(OrphanCommits.gitDir(repoPath))) {
+      return traceFileLines(lease.git(), file, lines, startingCommit, depth);
     }
-
-    return bugIntroducingCommits;
   }
 
-  private String getBlamedCommit(
-      Git git, Repository repository, String file, int line, String startingCommit)
+  /**
+   * Batch form of {@link #traceLineToCommit} for all files a commit changed: the repository is
+   * opened once and every file is blamed once per ancestor, however many of its lines changed.
+   *
+   * @return bug-introducing candidates per changed line, per file name
+   */
+  public Map<String, Map<Integer, List<Commit>>> traceFileChangesToCommits(
+      String repoPath, String startingCommit, Collection<FileChange> fileChanges, int depth)
       throws IOException, GitAPIException {
-    BlameResult blameResult = null;
-    ObjectId commitId = repository.resolve(startingCommit);
-
-    if (commitId == null) {
-      System.out.println("Commit " + startingCommit + " not found. Fetching from origin...");
-      try {
-        git.fetch()
-            .setRemote("origin")
-            .setRefSpecs("+refs/*:refs/remotes/origin/*")
-            .call();
-
-        commitId = repository.resolve(startingCommit);
+    try (RepositoryPool.Lease lease =
+        RepositoryPool.shared().acquire(OrphanCommits.gitDir(repoPath))) {
+      return traceFileChangesToCommits(lease.git(), startingCommit, fileChanges, depth);
+    }
+  }
 
-        if (commitId == null) {
-          System.out.println("Commit " + startingCommit + " still missing after fetch.");
-          return null;
-        }
-      } catch (Exception fetchException) {
-        System.out.println("Error fetching commit: " + fetchException.getMessage());
-        return null;
+  private Map<String, Map<Integer, List<Commit>>> traceFileChangesToCommits(
+      Git git, String startingCommit, Collection<FileChange> fileChanges, int depth)
+      throws IOException, GitAPIException {
+    Map<String, Map<Integer, List<Commit>>> candidates = new LinkedHashMap<>();
+    for (FileChange fileChange : fileChanges) {
+      if (fileChange == null || fileChange.getFileName() == null) {
+        continue;
+      }
+      Set<Integer> modifiedLines = getChangedLineNumbers(fileChange.getPatch());
+      if (modifiedLines.isEmpty()) {
+        continue;
       }
+      candidates
+          .computeIfAbsent(fileChange.getFileName(), k -> new LinkedHashMap<>())
+          .putAll(
+              traceFileLines(git, fileChange.getFileName(), modifiedLines, startingCommit, depth));
     }
+    return candidates;
+  }
 
-    try {
-      blameResult = findBlamedRef(git, file, commitId);
-    } catch (Exception blameException) {
-      checkoutOrphanedCommit(git, repository, startingCommit);
-      blameResult = findBlamedRef(git, file, commitId);
+  /**
+   * Walks all lines of a file back one ancestor per round. Lines that sit at the same commit in
+   * a round are answered by one blame, and the blamed commits of a round are loaded in one query.
+   * A line stops at a commit that blames itself, cannot be blamed or is not in the database.
+   */
+  private Map<Integer, List<Commit>> traceFileLines(
+      Git git, String file, Collection<Integer> lines, String startingCommit, int depth)
+      throws IOException, GitAPIException {
+    Repository repository = git.getRepository();
+    Map<Integer, List<Commit>> bugIntroducingCommits = new LinkedHashMap<>();
+    Map<Integer, String> current = new LinkedHashMap<>();
+    for (int line : lines) {
+      bugIntroducingCommits.put(line, new ArrayList<>());
+      current.put(line, startingCommit);
     }
 
-    if (blameResult != null) {
-      int totalLinesInBlame = blameResult.getResultContents().size();
-      if (line - 1 < totalLinesInBlame && line - 1 >= 0) {
-        RevCommit sourceCommit = blameResult.getSourceCommit(line - 1);
-        if (sourceCommit != null) {
-          return sourceCommit.getName();
+    for (int i = 0; i < depth && !current.isEmpty(); i++) {
+      Map<String, List<Integer>> linesByCommit = new LinkedHashMap<>();
+      current.forEach(
+          (line, sha) -> linesByCommit.computeIfAbsent(sha, k -> new ArrayList<>()).add(line));
+
+      Map<Integer, String> blamed = new LinkedHashMap<>();
+      for (Map.Entry<String, List<Integer>> group : linesByCommit.entrySet()) {
+        BlameCache.Blame blame = blameFile(git, repository, file, group.getKey());
+        for (int line : group.getValue()) {
+          String blamedSha = sourceOf(blame, file, line, group.getKey());
+          if (blamedSha != null && !blamedSha.equals(group.getKey())) {
+            blamed.put(line, blamedSha);
+          }
         }
-      } else {
-        System.out.println(
-            "Skipping line "
-                + line
-                + ": out of bounds for blame result with "
-                + totalLinesInBlame
-                + " lines.");
       }
-    } else {
-      System.out.println(
-          "Blame result is null for file: " + file + " in commit: " + startingCommit);
+
+      if (blamed.isEmpty()) {
+        break;
+      }
+      Map<String, Commit> found = new HashMap<>();
+      commitRepository
+          .findAllById(new LinkedHashSet<>(blamed.values()).stream().map(CommitID::new).toList())
+          .forEach(c -> found.put(c.getSha(), c));
+
+      Map<Integer, String> next = new LinkedHashMap<>();
+      blamed.forEach(
+          (line, sha) -> {
+            Commit commit = found.get(sha);
+            if (commit != null) {
+              bugIntroducingCommits.get(line).add(commit);
+              next.put(line, sha);
+            }
+          });
+      current = next;
     }
-    return null;
+    return bugIntroducingCommits;
   }
 
-  private void checkoutOrphanedCommit(Git git, Repository repository, String commitSha)
-      throws GitAPIException, IOException {
+  private String getBlamedCommit(
+      Git git, Repository repository, String file, int line, String startingCommit)
+      throws IOException, GitAPIException {
+    return sourceOf(blameFile(git, repository, file, startingCommit), file, line, startingCommit);
+  }
 
-    try {
-      String uniqueSuffix = System.currentTimeMillis() + "_" + UUID.randomUUID().toString().substring(0, 8);
-      git.fetch()
-          .setRemote("origin")
-          .setRefSpecs(
-              "+" + commitSha + ":refs/remotes/origin/temp_commit_" + uniqueSuffix)
-          .call();
-      resolveLockIssue(git.getRepository().getDirectory().toPath().toString());
-      git.clean().setCleanDirectories(true).setForce(true).call();
-      git.stashCreate().setIncludeUntracked(true).call();
-      git.reset().setMode(ResetCommand.ResetType.HARD).setRef(commitSha).call();
-      String tempBranch = "temp_commit_" + commitSha.substring(0, 7) + "_" + uniqueSuffix;
-      git.branchCreate()
-          .setName(tempBranch)
-          .setStartPoint(commitSha)
-          .setForce(true)
-          .call();
-      git.checkout().setName(tempBranch).call();
-      LOGGER.info("Checked out orphaned commit {} via branch {}", commitSha, tempBranch);
-    } catch (Exception e) {
-      LOGGER.error("Failed to process commit in szz {}", commitSha, e);
+  /** Whole-file blame at {@code startingCommit}, or null if the commit cannot be had. */
+  private BlameCache.Blame blameFile(
+      Git git, Repository repository, String file, String startingCommit)
+      throws IOException, GitAPIException {
+    ObjectId commitId = repository.resolve(startingCommit);
+    if (commitId == null) {
+      LOGGER.warn("Commit {} cannot be resolved", startingCommit);
+      return null;
+    }
+    if (!OrphanCommits.fetch(git, List.of(commitId)).isEmpty()) {
+      LOGGER.warn("Commit {} is missing locally and could not be fetched", startingCommit);
+      return null;
     }
-  }
 
-  private void resolveLockIssue(String repoPath) throws IOException, InterruptedException {
-    File lockFile = new File(repoPath + "/index.lock");
+    return blameCache.get(
+        repository,
+        file,
+        commitId,
+        () -> {
+          try {
+            // blob-less clones only have the blobs something asked for
+            BlobFetcher.fetchFileHistory(repository, commitId, file);
+          } catch (IOException e) {
+            LOGGER.warn("Could not fetch blobs of {}@{}: {}", file, startingCommit, e.getMessage());
+          }
+          return findBlamedRef(git, file, commitId);
+        });
+  }
 
-    if (lockFile.exists()) {
-      System.out.println("Found stale lock file: " + lockFile.getPath());
-      if (lockFile.delete()) {
-        System.out.println("Successfully deleted the lock file.");
-      } else {
-        System.out.println("Failed to delete the lock file.");
-      }
+  private String sourceOf(BlameCache.Blame blame, String file, int line, String startingCommit) {
+    if (blame == null) {
+      return null;
+    }
+    if (blame.lineCount() == 0) {
+      LOGGER.warn("Blame result is empty for file {} in commit {}", file, startingCommit);
+    } else if (line - 1 < blame.lineCount() && line - 1 >= 0) {
+      return blame.sourceOf(line);
+    } else {
+      LOGGER.debug(
+          "Skipping line {}: out of bounds for blame result with {} lines",
+          Optional.of(line),
+          Optional.of(blame.lineCount()));
     }
-    Thread.sleep(1000);
+    return null;
   }
 
   private static BlameResult findBlamedRef(Git git, String file, ObjectId commitId)
@@ -0,0 +1,286 @@
+package com.research.qmodel.service.findbugs;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import org.apache.commons.lang3.StringUtils;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.lib.AnyObjectId;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Blame results keyed by (repository, file, start commit). A blame at a fixed commit never
+ * changes, so SZZ keeps the whole table of line to source (commit, path, line) of a file and
+ * answers every changed line of that file from one {@code git blame}. Tables are held in an LRU
+ * bounded by {@code qmodel.szz.blame-cache.max-lines} and, when {@code
+ * qmodel.szz.blame-cache.dir} is set, also written to disk so a later run does not blame the
+ * same file again. Concurrent misses on one key share a single blame.
+ */
+@Component
+public class BlameCache {
+  private static final Logger LOGGER = LoggerFactory.getLogger(BlameCache.class);
+  private static final int FORMAT_VERSION = 2;
+
+  @Value("${qmodel.szz.blame-cache.max-lines:5000000}")
+  private long maxLines = 5_000_000;
+
+  @Value("${qmodel.szz.blame-cache.dir:}")
+  private String dir = "";
+
+  private final LinkedHashMap<String, Blame> entries = new LinkedHashMap<>(256, 0.75f, true);
+  /** Blames being computed, guarded by {@code this} like {@link #entries}. */
+  private final Map<String, CompletableFuture<Blame>> loading = new HashMap<>();
+  private long cachedLines;
+  private long hits;
+  private long diskHits;
+  private long misses;
+
+  /** Computes the blame of a file on a miss; may return {@code null} if the file is absent. */
+  @FunctionalInterface
+  public interface Loader {
+    BlameResult load() throws IOException, GitAPIException;
+  }
+
+  public record Stats(long hits, long diskHits, long misses, int entries, long lines) {}
+
+  /** Source commit, path and line of every line of a file at one commit. */
+  public static final class Blame {
+    static final Blame EMPTY =
+        new Blame(new ObjectId[0], new String[0], new int[0], new int[0], new int[0]);
+
+    private final ObjectId[] commits;
+    private final String[] paths;
+    private final int[] lineToCommit;
+    private final int[] lineToPath;
+    private final int[] sourceLines;
+
+    Blame(
+        ObjectId[] commits,
+        String[] paths,
+        int[] lineToCommit,
+        int[] lineToPath,
+        int[] sourceLines) {
+      this.commits = commits;
+      this.paths = paths;
+      this.lineToCommit = lineToCommit;
+      this.lineToPath = lineToPath;
+      this.sourceLines = sourceLines;
+    }
+
+    static Blame of(BlameResult result) {
+      if (result == null) return EMPTY;
+      int lines = result.getResultContents().size();
+      Map<ObjectId, Integer> commitIndex = new LinkedHashMap<>();
+      Map<String, Integer> pathIndex = new LinkedHashMap<>();
+      int[] lineToCommit = new int[lines];
+      int[] lineToPath = new int[lines];
+      int[] sourceLines = new int[lines];
+      for (int i = 0; i < lines; i++) {
+        RevCommit source = result.getSourceCommit(i);
+        if (source == null) {
+          lineToCommit[i] = -1;
+          lineToPath[i] = -1;
+          continue;
+        }
+        lineToCommit[i] = commitIndex.computeIfAbsent(source.copy(), k -> commitIndex.size());
+        lineToPath[i] = pathIndex.computeIfAbsent(result.getSourcePath(i), k -> pathIndex.size());
+        sourceLines[i] = result.getSourceLine(i) + 1;
+      }
+      return new Blame(
+          commitIndex.keySet().toArray(new ObjectId[0]),
+          pathIndex.keySet().toArray(new String[0]),
+          lineToCommit,
+          lineToPath,
+          sourceLines);
+    }
+
+    public int lineCount() {
+      return lineToCommit.length;
+    }
+
+    /** @param line 1-based line number; returns {@code null} when out of range or unattributed */
+    public String sourceOf(int line) {
+      int c = attributed(line) ? lineToCommit[line - 1] : -1;
+      return c < 0 ? null : commits[c].name();
+    }
+
+    /** Path of the line in {@link #sourceOf(int)}; differs from the blamed one after renames. */
+    public String sourcePathOf(int line) {
+      int p = attributed(line) ? lineToPath[line - 1] : -1;
+      return p < 0 ? null : paths[p];
+    }
+
+    /** 1-based number of the line in {@link #sourceOf(int)}, 0 when unattributed. */
+    public int sourceLineOf(int line) {
+      return attributed(line) ? sourceLines[line - 1] : 0;
+    }
+
+    private boolean attributed(int line) {
+      return line >= 1 && line <= lineToCommit.length && lineToCommit[line - 1] >= 0;
+    }
+  }
+
+  public Blame get(Repository repository, String file, AnyObjectId start, Loader loader)
+      throws IOException, GitAPIException {
+    String key = repository.getDirectory().getAbsolutePath() + '\0' + file + '\0' + start.name();
+    CompletableFuture<Blame> mine = new CompletableFuture<>();
+    CompletableFuture<Blame> running;
+    synchronized (this) {
+      Blame cached = entries.get(key);
+      if (cached != null) {
+        hits++;
+        return cached;
+      }
+      running = loading.putIfAbsent(key, mine);
+      if (running != null) hits++;
+    }
+    if (running != null) return await(running);
+    try {
+      Blame blame = load(key, loader);
+      put(key, blame);
+      mine.complete(blame);
+      return blame;
+    } catch (Throwable t) {
+      mine.completeExceptionally(t);
+      throw t;
+    } finally {
+      synchronized (this) {
+        loading.remove(key);
+      }
+    }
+  }
+
+  private Blame load(String key, Loader loader) throws IOException, GitAPIException {
+    Blame blame = readFromDisk(key);
+    if (blame != null) {
+      synchronized (this) {
+        diskHits++;
+      }
+    } else {
+      blame = Blame.of(loader.load());
+      synchronized (this) {
+        misses++;
+      }
+      writeToDisk(key, blame);
+    }
+    return blame;
+  }
+
+  private static Blame await(CompletableFuture<Blame> running) throws IOException, GitAPIException {
+    try {
+      return running.join();
+    } catch (CompletionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException io) throw io;
+      if (cause instanceof GitAPIException git) throw git;
+      if (cause instanceof RuntimeException rt) throw rt;
+      if (cause instanceof Error err) throw err;
+      throw e;
+    }
+  }
+
+  public synchronized Stats stats() {
+    return new Stats(hits, diskHits, misses, entries.size(), cachedLines);
+  }
+
+  public synchronized void clear() {
+    entries.clear();
+    cachedLines = 0;
+  }
+
+  private synchronized void put(String key, Blame blame) {
+    Blame previous = entries.put(key, blame);
+    if (previous != null) cachedLines -= previous.lineCount();
+    cachedLines += blame.lineCount();
+    Iterator<Blame> eldest = entries.values().iterator();
+    while (cachedLines > maxLines && entries.size() > 1 && eldest.hasNext()) {
+      cachedLines -= eldest.next().lineCount();
+      eldest.remove();
+    }
+  }
+
+  private File diskFile(String key) {
+    if (StringUtils.isBlank(dir)) return null;
+    try {
+      byte[] digest =
+          MessageDigest.getInstance("SHA-1").digest(key.getBytes(StandardCharsets.UTF_8));
+      return new File(dir, HexFormat.of().formatHex(digest) + ".blame");
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  private Blame readFromDisk(String key) {
+    File f = diskFile(key);
+    if (f == null || !f.isFile()) return null;
+    try (DataInputStream in =
+        new DataInputStream(new BufferedInputStream(new FileInputStream(f)))) {
+      if (in.readInt() != FORMAT_VERSION || !key.equals(in.readUTF())) return null;
+      ObjectId[] commits = new ObjectId[in.readInt()];
+      byte[] raw = new byte[20];
+      for (int i = 0; i < commits.length; i++) {
+        in.readFully(raw);
+        commits[i] = ObjectId.fromRaw(raw);
+      }
+      String[] paths = new String[in.readInt()];
+      for (int i = 0; i < paths.length; i++) paths[i] = in.readUTF();
+      int lines = in.readInt();
+      int[] lineToCommit = new int[lines];
+      int[] lineToPath = new int[lines];
+      int[] sourceLines = new int[lines];
+      for (int i = 0; i < lines; i++) {
+        lineToCommit[i] = in.readInt();
+        lineToPath[i] = in.readInt();
+        sourceLines[i] = in.readInt();
+      }
+      return new Blame(commits, paths, lineToCommit, lineToPath, sourceLines);
+    } catch (IOException e) {
+      LOGGER.warn("Ignoring unreadable blame cache file {}: {}", f, e.getMessage());
+      return null;
+    }
+  }
+
+  private void writeToDisk(String key, Blame blame) {
+    File f = diskFile(key);
+    if (f == null) return;
+    try {
+      Files.createDirectories(f.getParentFile().toPath());
+      File tmp = File.createTempFile("blame", ".tmp", f.getParentFile());
+      try (DataOutputStream out =
+          new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp)))) {
+        out.writeInt(FORMAT_VERSION);
+        out.writeUTF(key);
+        out.writeInt(blame.commits.length);
+        byte[] raw = new byte[20];
+        for (ObjectId id : blame.commits) {
+          id.copyRawTo(raw, 0);
+          out.write(raw);
+        }
+        out.writeInt(blame.paths.length);
+        for (String path : blame.paths) out.writeUTF(path);
+        out.writeInt(blame.lineToCommit.length);
+        for (int i = 0; i < blame.lineToCommit.length; i++) {
+          out.writeInt(blame.lineToCommit[i]);
+          out.writeInt(blame.lineToPath[i]);
+          out.writeInt(blame.sourceLines[i]);
+        }
+      }
+      Files.move(tmp.toPath(), f.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    } catch (IOException e) {
+      LOGGER.warn("Could not write blame cache file {}: {}", f, e.getMessage());
+    }
+  }
+}
@@ -0,0 +1,142 @@
+package com.research.qmodel.service.findbugs;
+
+import com.research.qmodel.model.AGraph;
+import com.research.qmodel.model.Commit;
+import com.research.qmodel.model.CommitID;
+import com.research.qmodel.model.Project;
+import com.research.qmodel.repos.CommitRepository;
+import com.research.qmodel.service.BasicQueryService;
+import com.research.qmodel.service.DataPersistance;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Turns the SHAs of a fix PR into stored {@link Commit}s. Known commits are loaded with one
+ * {@code IN} query; unknown ones are fetched from the API on at most {@code
+ * qmodel.fixing-commits.fetch-threads} threads and stored with a single {@link
+ * DataPersistance#persistGraph} call. The fetch threads are shared by all calls.
+ */
+@Component
+public class FixingCommitResolver implements DisposableBean {
+  private static final Logger LOGGER = LoggerFactory.getLogger(FixingCommitResolver.class);
+
+  private final CommitRepository commitRepository;
+  private final BasicQueryService basicQueryService;
+  private final DataPersistance dataPersistance;
+
+  @Value("${qmodel.fixing-commits.fetch-threads:4}")
+  private int fetchThreads = 4;
+
+  private ExecutorService pool;
+
+  public FixingCommitResolver(
+      CommitRepository commitRepository,
+      BasicQueryService basicQueryService,
+      DataPersistance dataPersistance) {
+    this.commitRepository = commitRepository;
+    this.basicQueryService = basicQueryService;
+    this.dataPersistance = dataPersistance;
+  }
+
+  /**
+   * @return the stored commits in the order of {@code shas}, without blanks, duplicates and
+   *     commits that could not be found
+   */
+  public List<Commit> resolve(String owner, String repo, Collection<String> shas) {
+    List<CommitID> ids =
+        shas.stream()
+            .filter(StringUtils::isNotBlank)
+            .distinct()
+            .map(CommitID::new)
+            .toList();
+    if (ids.isEmpty()) {
+      return List.of();
+    }
+
+    Map<String, Commit> found = new HashMap<>();
+    commitRepository.findAllById(ids).forEach(c -> found.put(c.getSha(), c));
+    List<CommitID> missing = ids.stream().filter(id -> !found.containsKey(id.getSha())).toList();
+
+    if (!missing.isEmpty()) {
+      AGraph fetched = fetch(owner, repo, missing);
+      if (fetched != null) {
+        Project project = new Project(owner, repo);
+        dataPersistance.persistGraph(List.of(project), Map.of(project, fetched));
+        commitRepository.findAllById(missing).forEach(c -> found.put(c.getSha(), c));
+      }
+    }
+
+    return ids.stream().map(id -> found.get(id.getSha())).filter(Objects::nonNull).toList();
+  }
+
+  /** Fetches the commits concurrently and merges them into one graph; null if none came back. */
+  private AGraph fetch(String owner, String repo, List<CommitID> missing) {
+    ExecutorService pool = pool();
+    List<Future<AGraph>> futures = new ArrayList<>();
+    try {
+      for (CommitID id : missing) {
+        futures.add(
+            pool.submit(() -> basicQueryService.retrieveCommitBySha(owner, repo, id.getSha())));
+      }
+      AGraph merged = null;
+      for (int i = 0; i < futures.size(); i++) {
+        AGraph graph;
+        try {
+          graph = futures.get(i).get();
+        } catch (ExecutionException e) {
+          LOGGER.error(
+              "Could not retrieve commit {}: {}",
+              missing.get(i).getSha(),
+              e.getCause().getMessage(),
+              e.getCause());
+          continue;
+        }
+        if (graph == null) {
+          continue;
+        }
+        if (merged == null) {
+          merged = graph;
+        } else if (graph.getCommits() != null) {
+          for (Commit c : graph.getCommits()) merged.addCommit(c);
+        }
+      }
+      LOGGER.info("Retrieved {} commits missing from the database", missing.size());
+      return merged;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      LOGGER.warn("Interrupted while retrieving {} commits", missing.size());
+      return null;
+    } finally {
+      futures.forEach(f -> f.cancel(true));
+    }
+  }
+
+  private synchronized ExecutorService pool() {
+    if (pool == null) {
+      AtomicInteger n = new AtomicInteger();
+      pool =
+          Executors.newFixedThreadPool(
+              Math.max(1, fetchThreads),
+              r -> {
+                Thread t = new Thread(r, "fixing-commit-fetch-" + n.incrementAndGet());
+                t.setDaemon(true);
+                return t;
+              });
+    }
+    return pool;
+  }
+
+  @Override
+  public synchronized void destroy() {
+    if (pool != null) {
+      pool.shutdownNow();
+    }
+  }
+}
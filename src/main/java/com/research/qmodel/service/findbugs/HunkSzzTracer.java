@@ -0,0 +1,184 @@
+package com.research.qmodel.service.findbugs;
+
+import com.research.qmodel.graph.BlobFetcher;
+import java.io.IOException;
+import java.util.*;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.errors.GitAPIException;
+import org.eclipse.jgit.diff.DiffEntry;
+import org.eclipse.jgit.diff.DiffFormatter;
+import org.eclipse.jgit.diff.Edit;
+import org.eclipse.jgit.diff.EditList;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.treewalk.filter.PathFilter;
+import org.eclipse.jgit.util.io.DisabledOutputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Component;
+
+/**
+ * SZZ that follows whole hunks instead of single line numbers. The lines a fix deleted or
+ * replaced are taken from its diff against the first parent and blamed there together; blame
+ * tells, per line, which commit wrote it and at which path and line it sits in that commit. To
+ * go one ancestor further, that commit's own diff maps the lines it replaced back to the lines
+ * they replaced, and the whole set is blamed again in the parent. Lines a commit added from
+ * scratch end their chain there. Each (commit, path) is blamed once per level, shared through
+ * {@link BlameCache}.
+ * <p>
+ * A fix that only inserts lines has no old lines; the line just above each insertion is traced
+ * instead. Diffs are taken per path, so a rename in a commit being mapped ends the chain at it.
+ */
+@Component
+public class HunkSzzTracer {
+  private static final Logger LOGGER = LoggerFactory.getLogger(HunkSzzTracer.class);
+
+  private final BlameCache blameCache;
+
+  /** A candidate bug-introducing commit, found {@code depth} ancestors up with {@code lines}. */
+  public record Introducer(String sha, String path, int depth, int lines) {}
+
+  private record Site(ObjectId commit, String path) {}
+
+  public HunkSzzTracer(BlameCache blameCache) {
+    this.blameCache = blameCache;
+  }
+
+  /** Candidates for one file of {@code fix}, nearest first. */
+  public List<Introducer> trace(Git git, RevCommit fix, String path, int depth)
+      throws IOException, GitAPIException {
+    Repository repository = git.getRepository();
+    if (depth <= 0 || fix.getParentCount() == 0) {
+      return List.of();
+    }
+    Map<String, Introducer> found = new LinkedHashMap<>();
+    try (RevWalk walk = new RevWalk(repository)) {
+      RevCommit fixCommit = walk.parseCommit(fix);
+      RevCommit parent = walk.parseCommit(fixCommit.getParent(0));
+      EditList fixEdits = edits(repository, parent, fixCommit, path);
+      if (fixEdits == null) {
+        return List.of();
+      }
+      SortedSet<Integer> fixed = new TreeSet<>();
+      for (Edit edit : fixEdits) {
+        if (edit.getType() == Edit.Type.INSERT) {
+          if (edit.getBeginA() > 0) fixed.add(edit.getBeginA());
+        } else {
+          addRange(fixed, edit.getBeginA(), edit.getEndA());
+        }
+      }
+
+      Map<Site, SortedSet<Integer>> frontier = new LinkedHashMap<>();
+      if (!fixed.isEmpty()) frontier.put(new Site(parent, path), fixed);
+      for (int level = 1; level <= depth && !frontier.isEmpty(); level++) {
+        Map<Site, SortedSet<Integer>> next = new LinkedHashMap<>();
+        for (Map.Entry<Site, SortedSet<Integer>> step : frontier.entrySet()) {
+          Map<Site, SortedSet<Integer>> bySource = blame(git, step.getKey(), step.getValue());
+          for (Map.Entry<Site, SortedSet<Integer>> source : bySource.entrySet()) {
+            Site site = source.getKey();
+            found.putIfAbsent(
+                site.commit().name(),
+                new Introducer(site.commit().name(), site.path(), level, source.getValue().size()));
+            if (level < depth) {
+              mapToParent(walk, repository, site, source.getValue(), next);
+            }
+          }
+        }
+        frontier = next;
+      }
+    }
+    return new ArrayList<>(found.values());
+  }
+
+  /** Blames {@code lines} of the site in one go; grouped by the commit and path that wrote them. */
+  private Map<Site, SortedSet<Integer>> blame(Git git, Site site, SortedSet<Integer> lines)
+      throws IOException, GitAPIException {
+    Repository repository = git.getRepository();
+    BlameCache.Blame blame =
+        blameCache.get(
+            repository,
+            site.path(),
+            site.commit(),
+            () -> {
+              fetchBlobs(repository, site.commit(), site.path());
+              return git.blame()
+                  .setFilePath(site.path())
+                  .setStartCommit(site.commit())
+                  .setFollowFileRenames(true)
+                  .call();
+            });
+    Map<Site, SortedSet<Integer>> bySource = new LinkedHashMap<>();
+    for (int line : lines) {
+      String source = blame.sourceOf(line);
+      if (source == null) continue;
+      bySource
+          .computeIfAbsent(
+              new Site(ObjectId.fromString(source), blame.sourcePathOf(line)), k -> new TreeSet<>())
+          .add(blame.sourceLineOf(line));
+    }
+    return bySource;
+  }
+
+  /** Carries the lines {@code site} replaced (not the ones it added) to its first parent. */
+  private void mapToParent(
+      RevWalk walk,
+      Repository repository,
+      Site site,
+      SortedSet<Integer> lines,
+      Map<Site, SortedSet<Integer>> next)
+      throws IOException {
+    RevCommit commit = walk.parseCommit(site.commit());
+    if (commit.getParentCount() == 0) {
+      return;
+    }
+    RevCommit parent = walk.parseCommit(commit.getParent(0));
+    EditList edits = edits(repository, parent, commit, site.path());
+    if (edits == null) {
+      return;
+    }
+    SortedSet<Integer> replaced = new TreeSet<>();
+    for (Edit edit : edits) {
+      if (edit.getType() != Edit.Type.REPLACE) continue;
+      if (!lines.subSet(edit.getBeginB() + 1, edit.getEndB() + 1).isEmpty()) {
+        addRange(replaced, edit.getBeginA(), edit.getEndA());
+      }
+    }
+    if (!replaced.isEmpty()) {
+      next.computeIfAbsent(new Site(parent, site.path()), k -> new TreeSet<>()).addAll(replaced);
+    }
+  }
+
+  /** Edits of {@code path} from {@code oldCommit} to {@code newCommit}; null unless modified. */
+  private static EditList edits(
+      Repository repository, RevCommit oldCommit, RevCommit newCommit, String path)
+      throws IOException {
+    fetchBlobs(repository, newCommit, path);
+    try (DiffFormatter diff = new DiffFormatter(DisabledOutputStream.INSTANCE)) {
+      diff.setRepository(repository);
+      diff.setPathFilter(PathFilter.create(path));
+      for (DiffEntry entry : diff.scan(oldCommit.getTree(), newCommit.getTree())) {
+        if (entry.getChangeType() == DiffEntry.ChangeType.MODIFY
+            && entry.getNewPath().equals(path)) {
+          return diff.toFileHeader(entry).toEditList();
+        }
+      }
+    }
+    return null;
+  }
+
+  private static void fetchBlobs(Repository repository, ObjectId commit, String path) {
+    try {
+      // blob-less clones only have the blobs something asked for
+      BlobFetcher.fetchFileHistory(repository, commit, path);
+    } catch (IOException e) {
+      LOGGER.warn("Could not fetch blobs of {}@{}: {}", path, commit.name(), e.getMessage());
+    }
+  }
+
+  /** Adds the 1-based lines of the 0-based half-open range. */
+  private static void addRange(Set<Integer> lines, int begin, int end) {
+    for (int i = begin; i < end; i++) lines.add(i + 1);
+  }
+}
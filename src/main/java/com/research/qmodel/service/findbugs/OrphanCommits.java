@@ -0,0 +1,138 @@
+package com.research.qmodel.service.findbugs;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.BatchRefUpdate;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.NullProgressMonitor;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Ref;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevWalk;
+import org.eclipse.jgit.transport.ReceiveCommand;
+import org.eclipse.jgit.transport.RefSpec;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Makes commits that are on no branch of the clone (fixes merged from forks, rewritten PR
+ * branches) available for blame. They are fetched by id into {@link #REF_PREFIX}, which keeps
+ * them safe from {@code git gc}; only the object database and that namespace are written, so
+ * bare and blob-less clones work and SZZ workers never touch a working tree.
+ */
+final class OrphanCommits {
+  static final String REF_PREFIX = "refs/qmodel/orphans/";
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(OrphanCommits.class);
+
+  /** Where the removed checkout-based fallback left its temp branches and remote refs. */
+  private static final List<String> LEGACY_PREFIXES =
+      List.of(Constants.R_HEADS + "temp_commit_", Constants.R_REMOTES + "origin/temp_commit_");
+
+  /** Fetches update FETCH_HEAD and packed-refs, so fetches into one repository take turns. */
+  private static final Map<File, Object> FETCH_LOCKS = new ConcurrentHashMap<>();
+
+  private OrphanCommits() {}
+
+  /** Working-tree clone or bare repository at {@code repoPath}. */
+  static File gitDir(String repoPath) {
+    File dotGit = new File(repoPath, Constants.DOT_GIT);
+    return dotGit.isDirectory() ? dotGit : new File(repoPath);
+  }
+
+  /**
+   * Fetches those of {@code ids} that are not in the object database yet, in one request. Ids
+   * that are all present already are answered without taking the repository's fetch lock.
+   *
+   * @return ids still missing afterwards
+   */
+  static Set<ObjectId> fetch(Git git, Collection<? extends ObjectId> ids) throws IOException {
+    Repository repository = git.getRepository();
+    if (missing(repository, ids).isEmpty()) {
+      return new LinkedHashSet<>();
+    }
+    Object lock =
+        FETCH_LOCKS.computeIfAbsent(repository.getDirectory().getAbsoluteFile(), k -> new Object());
+    synchronized (lock) {
+      Set<ObjectId> missing = missing(repository, ids);
+      if (missing.isEmpty()) {
+        return missing;
+      }
+      List<RefSpec> specs = new ArrayList<>();
+      for (ObjectId id : missing) {
+        specs.add(new RefSpec("+" + id.name() + ":" + REF_PREFIX + id.name()));
+      }
+      try {
+        git.fetch().setRemote("origin").setRefSpecs(specs).call();
+      } catch (Exception e) {
+        LOGGER.error("Failed to fetch {} orphaned commits: {}", specs.size(), e.getMessage(), e);
+      }
+      Set<ObjectId> stillMissing = missing(repository, missing);
+      // JGit fetches objects wanted by id but does not update the destination refs
+      BatchRefUpdate update = repository.getRefDatabase().newBatchUpdate();
+      for (ObjectId id : missing) {
+        if (!stillMissing.contains(id)) {
+          update.addCommand(new ReceiveCommand(ObjectId.zeroId(), id, REF_PREFIX + id.name()));
+        }
+      }
+      execute(repository, update);
+      LOGGER.info("Fetched {} orphaned commits into {}", update.getCommands().size(), REF_PREFIX);
+      return stillMissing;
+    }
+  }
+
+  /**
+   * Deletes the {@code temp_commit_*} refs of the old checkout-based fallback, except a branch
+   * that is still checked out.
+   *
+   * @return number of refs deleted
+   */
+  static int pruneLegacyRefs(Repository repository) throws IOException {
+    String checkedOut = repository.getFullBranch();
+    BatchRefUpdate update = repository.getRefDatabase().newBatchUpdate();
+    for (String prefix : LEGACY_PREFIXES) {
+      for (Ref ref : repository.getRefDatabase().getRefsByPrefix(prefix)) {
+        if (ref.isSymbolic() || ref.getName().equals(checkedOut)) {
+          continue;
+        }
+        update.addCommand(new ReceiveCommand(ref.getObjectId(), ObjectId.zeroId(), ref.getName()));
+      }
+    }
+    int deleted = execute(repository, update);
+    LOGGER.info("Deleted {} temp_commit refs", deleted);
+    return deleted;
+  }
+
+  /** Runs the batch, forcing every command; returns how many succeeded. */
+  private static int execute(Repository repository, BatchRefUpdate update) throws IOException {
+    if (update.getCommands().isEmpty()) {
+      return 0;
+    }
+    try (RevWalk walk = new RevWalk(repository)) {
+      update.setAllowNonFastForwards(true).execute(walk, NullProgressMonitor.INSTANCE);
+    }
+    int ok = 0;
+    for (ReceiveCommand cmd : update.getCommands()) {
+      if (cmd.getResult() == ReceiveCommand.Result.OK) {
+        ok++;
+      } else {
+        LOGGER.warn("Could not update {}: {}", cmd.getRefName(), cmd.getResult());
+      }
+    }
+    return ok;
+  }
+
+  private static Set<ObjectId> missing(Repository repository, Collection<? extends ObjectId> ids)
+      throws IOException {
+    Set<ObjectId> missing = new LinkedHashSet<>();
+    for (ObjectId id : ids) {
+      if (!repository.getObjectDatabase().has(id)) {
+        missing.add(id.copy());
+      }
+    }
+    return missing;
+  }
+}
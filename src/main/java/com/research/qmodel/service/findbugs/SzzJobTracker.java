@@ -0,0 +1,295 @@
+package com.research.qmodel.service.findbugs;
+
+import com.research.qmodel.model.SzzJob;
+import com.research.qmodel.model.SzzJobIssue;
+import com.research.qmodel.repos.SzzJobIssueRepository;
+import com.research.qmodel.repos.SzzJobRepository;
+import java.util.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Keeps the progress of {@link BasicBugFinder#traceCommitsToOrigin} in the {@code szz_job} and
+ * {@code szz_job_issue} tables. A run resumes the last unfinished job of the same project and
+ * depth: issues that job finished are not traced again, issues a crashed run left {@code
+ * RUNNING} are traced again and failed ones are retried up to {@code qmodel.szz.max-attempts}
+ * times. Progress is written at every checkpoint, i.e. whenever {@link BasicBugFinder} saves a
+ * batch of issues.
+ * <p>
+ * Throughput is measured against the time spent tracing, so it stays meaningful across
+ * restarts. Blames are counted as {@link BlameCache} misses, which include blames of other runs
+ * going on at the same time.
+ */
+@Component
+public class SzzJobTracker {
+  private static final Logger LOGGER = LoggerFactory.getLogger(SzzJobTracker.class);
+
+  @Autowired private SzzJobRepository szzJobRepository;
+  @Autowired private SzzJobIssueRepository szzJobIssueRepository;
+
+  @Value("${qmodel.szz.max-attempts:3}")
+  private int maxAttempts = 3;
+
+  public record Report(
+      Long jobId,
+      SzzJob.Status status,
+      int depth,
+      int issuesTotal,
+      int issuesDone,
+      int issuesFailed,
+      int issuesSkipped,
+      int issuesPending,
+      long blames,
+      double issuesPerMinute,
+      double blamesPerSecond,
+      Date createdAt,
+      Date checkpointAt,
+      Date finishedAt) {
+
+    static Report of(SzzJob job) {
+      double minutes = job.getActiveMillis() / 60_000.0;
+      double seconds = job.getActiveMillis() / 1_000.0;
+      return new Report(
+          job.getId(),
+          job.getStatus(),
+          job.getDepth(),
+          job.getIssuesTotal(),
+          job.getIssuesDone(),
+          job.getIssuesFailed(),
+          job.getIssuesSkipped(),
+          job.getIssuesTotal()
+              - job.getIssuesDone()
+              - job.getIssuesFailed()
+              - job.getIssuesSkipped(),
+          job.getBlames(),
+          minutes > 0 ? job.getIssuesDone() / minutes : 0,
+          seconds > 0 ? job.getBlames() / seconds : 0,
+          job.getCreatedAt(),
+          job.getCheckpointAt(),
+          job.getFinishedAt());
+    }
+  }
+
+  /** One run of a job. The per-issue methods are called from the tracing workers. */
+  public final class Run {
+    private final SzzJob job;
+    private final Map<Long, SzzJobIssue> issues;
+    private final List<Long> toTrace;
+    private final Set<SzzJobIssue> dirty = new LinkedHashSet<>();
+    private long markMillis;
+    private long markBlames;
+
+    private Run(SzzJob job, Map<Long, SzzJobIssue> issues, List<Long> toTrace, long blames) {
+      this.job = job;
+      this.issues = issues;
+      this.toTrace = toTrace;
+      this.markMillis = System.currentTimeMillis();
+      this.markBlames = blames;
+    }
+
+    public Long jobId() {
+      return job.getId();
+    }
+
+    /** Issues this run has to trace, in the order they were handed to {@link #start}. */
+    public List<Long> toTrace() {
+      return toTrace;
+    }
+
+    public synchronized void started(Long issueId) {
+      SzzJobIssue issue = issues.get(issueId);
+      issue.setStatus(SzzJobIssue.Status.RUNNING);
+      issue.setAttempts(issue.getAttempts() + 1);
+      issue.setStartedAt(new Date());
+      issue.setFinishedAt(null);
+      dirty.add(issue);
+    }
+
+    /** Tracing is over; the issue stays {@code RUNNING} until {@link #finished} once saved. */
+    public synchronized void traced(Long issueId) {
+      stopClock(issues.get(issueId));
+    }
+
+    public synchronized void finished(Long issueId, int bugIntroducingCommits) {
+      SzzJobIssue issue = end(issueId, SzzJobIssue.Status.DONE);
+      issue.setBugIntroducingCommits(bugIntroducingCommits);
+      issue.setLastError(null);
+    }
+
+    public synchronized void failed(Long issueId, Throwable error) {
+      end(issueId, SzzJobIssue.Status.FAILED).setLastError(String.valueOf(error));
+    }
+
+    private SzzJobIssue end(Long issueId, SzzJobIssue.Status status) {
+      SzzJobIssue issue = issues.get(issueId);
+      issue.setStatus(status);
+      stopClock(issue);
+      dirty.add(issue);
+      return issue;
+    }
+
+    private void stopClock(SzzJobIssue issue) {
+      if (issue.getFinishedAt() != null) return;
+      issue.setFinishedAt(new Date());
+      if (issue.getStartedAt() != null) {
+        issue.setDurationMillis(issue.getFinishedAt().getTime() - issue.getStartedAt().getTime());
+      }
+    }
+  }
+
+  /**
+   * Creates a job or resumes the last unfinished one.
+   *
+   * @param traceable fixed issues with fixing commits that still have to be traced
+   * @param traced fixed issues that already have bug-introducing commits
+   * @param blames the current {@link BlameCache} miss count
+   */
+  public Run start(
+      String owner,
+      String repo,
+      int depth,
+      Collection<Long> traceable,
+      Collection<Long> traced,
+      long blames) {
+    SzzJob unfinished =
+        szzJobRepository.findFirstByProjectOwnerAndProjectNameAndDepthAndStatusOrderByIdDesc(
+            owner, repo, depth, SzzJob.Status.RUNNING);
+    SzzJob job =
+        unfinished != null ? unfinished : szzJobRepository.save(new SzzJob(owner, repo, depth));
+    Map<Long, SzzJobIssue> issues = new LinkedHashMap<>();
+    if (unfinished != null) {
+      for (SzzJobIssue issue : szzJobIssueRepository.findByJobId(job.getId())) {
+        issues.put(issue.getIssueId(), issue);
+      }
+      LOGGER.info(
+          "Resuming SZZ job {} of {}/{} at {} of {} issues",
+          job.getId(),
+          owner,
+          repo,
+          job.getIssuesDone() + job.getIssuesSkipped(),
+          job.getIssuesTotal());
+    }
+
+    Set<SzzJobIssue> changed = new LinkedHashSet<>();
+    for (Long issueId : traced) {
+      // also covers issues a crashed run saved but did not get to checkpoint
+      SzzJobIssue issue = issues.computeIfAbsent(issueId, id -> new SzzJobIssue(job.getId(), id));
+      if (issue.getStatus() != SzzJobIssue.Status.DONE) {
+        issue.setStatus(SzzJobIssue.Status.DONE);
+        changed.add(issue);
+      }
+    }
+    List<Long> toTrace = new ArrayList<>();
+    for (Long issueId : traceable) {
+      SzzJobIssue issue =
+          issues.computeIfAbsent(
+              issueId,
+              id -> {
+                SzzJobIssue created = new SzzJobIssue(job.getId(), id);
+                changed.add(created);
+                return created;
+              });
+      boolean interrupted = issue.getStatus() == SzzJobIssue.Status.RUNNING;
+      boolean retry =
+          issue.getStatus() == SzzJobIssue.Status.FAILED && issue.getAttempts() < maxAttempts;
+      if (interrupted || retry) {
+        issue.setStatus(SzzJobIssue.Status.PENDING);
+        changed.add(issue);
+      }
+      if (issue.getStatus() == SzzJobIssue.Status.PENDING) {
+        toTrace.add(issueId);
+      }
+    }
+
+    Run run = new Run(job, issues, toTrace, blames);
+    synchronized (run) {
+      run.dirty.addAll(changed);
+    }
+    checkpoint(run, blames);
+    return run;
+  }
+
+  /** Writes the issues that changed since the last checkpoint and the job's counters. */
+  public void checkpoint(Run run, long blames) {
+    List<SzzJobIssue> changed;
+    SzzJob job = run.job;
+    synchronized (run) {
+      changed = new ArrayList<>(run.dirty);
+      run.dirty.clear();
+      long now = System.currentTimeMillis();
+      job.setActiveMillis(job.getActiveMillis() + now - run.markMillis);
+      job.setBlames(job.getBlames() + blames - run.markBlames);
+      run.markMillis = now;
+      run.markBlames = blames;
+      count(run);
+      job.setCheckpointAt(new Date(now));
+    }
+    if (!changed.isEmpty()) {
+      szzJobIssueRepository.saveAll(changed);
+    }
+    szzJobRepository.save(job);
+  }
+
+  /**
+   * Last checkpoint of a run. The job is finished unless issues are left that a later run can
+   * still trace, i.e. ones interrupted or failed fewer than {@code qmodel.szz.max-attempts} times.
+   */
+  public Report finish(Run run, long blames) {
+    SzzJob job = run.job;
+    synchronized (run) {
+      boolean open =
+          run.issues.values().stream()
+              .anyMatch(
+                  issue ->
+                      issue.getStatus() == SzzJobIssue.Status.PENDING
+                          || issue.getStatus() == SzzJobIssue.Status.RUNNING
+                          || (issue.getStatus() == SzzJobIssue.Status.FAILED
+                              && issue.getAttempts() < maxAttempts));
+      if (!open) {
+        job.setStatus(SzzJob.Status.FINISHED);
+        job.setFinishedAt(new Date());
+      }
+    }
+    checkpoint(run, blames);
+    Report report = Report.of(job);
+    LOGGER.info(
+        "SZZ job {} of {}/{} {}: {} traced, {} failed, {} pending, {} issues/min, {} blames/s",
+        job.getId(),
+        job.getProjectOwner(),
+        job.getProjectName(),
+        job.getStatus() == SzzJob.Status.FINISHED ? "finished" : "stopped",
+        report.issuesDone(),
+        report.issuesFailed(),
+        report.issuesPending(),
+        String.format("%.1f", report.issuesPerMinute()),
+        String.format("%.1f", report.blamesPerSecond()));
+    return report;
+  }
+
+  /** Progress of the latest job of the project, or {@code null} if it was never traced. */
+  public Report report(String owner, String repo) {
+    SzzJob job = szzJobRepository.findFirstByProjectOwnerAndProjectNameOrderByIdDesc(owner, repo);
+    return job == null ? null : Report.of(job);
+  }
+
+  private static void count(Run run) {
+    int done = 0;
+    int failed = 0;
+    int skipped = 0;
+    for (SzzJobIssue issue : run.issues.values()) {
+      if (issue.getStatus() == SzzJobIssue.Status.DONE) {
+        if (issue.getAttempts() == 0) skipped++;
+        else done++;
+      } else if (issue.getStatus() == SzzJobIssue.Status.FAILED) {
+        failed++;
+      }
+    }
+    run.job.setIssuesTotal(run.issues.size());
+    run.job.setIssuesDone(done);
+    run.job.setIssuesFailed(failed);
+    run.job.setIssuesSkipped(skipped);
+  }
+}
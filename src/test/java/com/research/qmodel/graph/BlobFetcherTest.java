@@ -0,0 +1,65 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.blame.BlameResult;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.treewalk.TreeWalk;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static com.research.qmodel.graph.GraphFixtures.commit;
+import static com.research.qmodel.graph.GraphFixtures.init;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BlobFetcherTest {
+
+    private static ObjectId blobOf(Repository repo, RevCommit commit, String path) throws Exception {
+        try (TreeWalk tw = TreeWalk.forPath(repo, path, repo.parseCommit(commit).getTree())) {
+            return tw.getObjectId(0);
+        }
+    }
+
+    @Test
+    void fetchesTheBlobsBlameNeedsOnDemand(@TempDir File tmp) throws Exception {
+        File upstream = new File(tmp, "up");
+        RevCommit first;
+        RevCommit last;
+        try (Git src = init(new File(upstream, "acme/app"))) {
+            first = commit(src, "a.txt", "one\ntwo\n");
+            commit(src, "b.txt", "other\n");
+            last = commit(src, "a.txt", "one\ntwo\nthree\n");
+            src.getRepository().getConfig().setBoolean("uploadpack", null, "allowFilter", true);
+            src.getRepository().getConfig().save();
+        }
+        RepoCloneManager m = new RepoCloneManager(1);
+        ReflectionTestUtils.setField(m, "baseUrl", "file://" + upstream.getAbsolutePath() + "/");
+        ReflectionTestUtils.setField(m, "repoBasePath", new File(tmp, "clones").getAbsolutePath());
+        File dir;
+        try {
+            dir = m.sync("acme", "app", RepoCloneManager.Mode.BLOBLESS).get(60, TimeUnit.SECONDS);
+        } finally {
+            m.destroy();
+        }
+
+        try (Git git = Git.open(dir)) {
+            Repository repo = git.getRepository();
+            assertTrue(BlobFetcher.isPartialClone(repo));
+            ObjectId head = repo.resolve("refs/remotes/origin/master");
+            assertFalse(repo.getObjectDatabase().has(blobOf(repo, last, "a.txt")));
+
+            assertEquals(2, BlobFetcher.fetchFileHistory(repo, head, "a.txt"));
+            assertEquals(0, BlobFetcher.fetchFileHistory(repo, head, "a.txt"));
+            assertFalse(repo.getObjectDatabase().has(blobOf(repo, last, "b.txt")));
+
+            BlameResult blame = git.blame().setFilePath("a.txt").setStartCommit(head).call();
+            assertEquals(first, blame.getSourceCommit(0));
+            assertEquals(last, blame.getSourceCommit(2));
+        }
+    }
+}
@@ -0,0 +1,50 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.lib.ObjectIdRef;
+import org.eclipse.jgit.lib.Ref;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static com.research.qmodel.graph.GraphFixtures.oid;
+import static org.junit.jupiter.api.Assertions.*;
+
+class BranchOriginIndexTest {
+
+    private static Ref ref(String name, int tip) {
+        return new ObjectIdRef.PeeledNonTag(Ref.Storage.LOOSE, name, oid(tip));
+    }
+
+    @Test
+    void labelsCommitsWithTheDeepestFirstParentBranch() {
+        // master: 1 - 2 - 3, feature: 1 - 4 - 5, topic: 4 - 6, merge 7 of 6 into 3 on release
+        CommitDag.Builder b = CommitDag.builder(7);
+        b.addCommit(oid(1), 100);
+        b.addCommit(oid(2), 200, oid(1));
+        b.addCommit(oid(4), 250, oid(1));
+        b.addCommit(oid(3), 300, oid(2));
+        b.addCommit(oid(5), 350, oid(4));
+        b.addCommit(oid(6), 360, oid(4));
+        b.addCommit(oid(7), 400, oid(3), oid(6));
+        CommitDag dag = b.build();
+
+        BranchOriginIndex index = BranchOriginIndex.build(dag, List.of(
+                ref("refs/heads/topic", 6),
+                ref("refs/heads/feature", 5),
+                ref("refs/remotes/origin/release", 7)));
+
+        // 1 is three steps below release, two below topic and feature
+        assertEquals("origin/release", index.branchOf(oid(1).name()));
+        assertEquals("origin/release", index.branchOf(oid(3).name()));
+        // 4 is one step below topic and feature; topic is listed first
+        assertEquals("topic", index.branchOf(oid(4).name()));
+        assertEquals("feature", index.branchOf(oid(5).name()));
+        // 6 is only reached through the merge's second parent
+        assertEquals("topic", index.branchOf(oid(6).name()));
+        assertNull(index.branchOf(oid(9).name()));
+
+        Map<String, String> batch = index.branchesOf(List.of(oid(5).name(), oid(9).name(), oid(2).name()));
+        assertEquals(Map.of(oid(5).name(), "feature", oid(2).name(), "origin/release"), batch);
+    }
+}
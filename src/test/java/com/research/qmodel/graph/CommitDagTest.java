@@ -0,0 +1,63 @@
+package com.research.qmodel.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static com.research.qmodel.graph.GraphFixtures.oid;
+import static org.junit.jupiter.api.Assertions.*;
+
+class CommitDagTest {
+
+    @Test
+    void internsCommitsAndBuildsAdjacency() {
+        CommitDag.Builder b = CommitDag.builder(2);
+        b.addCommit(oid(1), 100);
+        b.addCommit(oid(2), 200, oid(1));
+        b.addCommit(oid(3), 300, oid(1));
+        b.addCommit(oid(4), 400, oid(2), oid(3), oid(2));
+        CommitDag dag = b.build();
+
+        assertEquals(4, dag.size());
+        assertEquals(4, dag.edgeCount());
+        assertArrayEquals(new int[]{0, 1, 2, 3}, dag.topo());
+
+        int merge = dag.id(oid(4).name());
+        assertTrue(dag.isMerge(merge));
+        assertEquals(2, dag.parentCount(merge));
+        assertEquals(dag.id(oid(2)), dag.parent(merge, 0));
+        assertEquals(dag.id(oid(3)), dag.parent(merge, 1));
+
+        int root = dag.id(oid(1));
+        assertEquals(0, dag.parentCount(root));
+        assertEquals(2, dag.childCount(root));
+        assertEquals(400, dag.commitTime(merge));
+        assertEquals(CommitDag.NONE, dag.id(oid(99)));
+        assertEquals(CommitDag.NONE, dag.id("not-a-sha"));
+    }
+
+    @Test
+    void keepsUnwalkedParentsOutOfTopo() {
+        CommitDag.Builder b = CommitDag.builder(1);
+        b.addCommit(oid(2), 200, oid(1));
+        CommitDag dag = b.build();
+
+        int boundary = dag.id(oid(1));
+        assertEquals(2, dag.size());
+        assertFalse(dag.isWalked(boundary));
+        assertEquals(Integer.MAX_VALUE, dag.commitTimeOr(boundary, Integer.MAX_VALUE));
+        assertArrayEquals(new int[]{dag.id(oid(2))}, dag.topo());
+        assertEquals(1, dag.childCount(boundary));
+    }
+
+    @Test
+    void repairsWalkOrderThatEmitsChildBeforeParent() {
+        CommitDag.Builder b = CommitDag.builder(4);
+        b.addCommit(oid(1), 100);
+        b.addCommit(oid(3), 300, oid(2));
+        b.addCommit(oid(2), 200, oid(1));
+        b.addCommit(oid(4), 400, oid(3));
+        CommitDag dag = b.build();
+
+        int[] expected = {dag.id(oid(1)), dag.id(oid(2)), dag.id(oid(3)), dag.id(oid(4))};
+        assertArrayEquals(expected, dag.topo());
+    }
+}
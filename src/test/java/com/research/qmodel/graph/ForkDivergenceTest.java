@@ -0,0 +1,67 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.*;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TimeZone;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class ForkDivergenceTest {
+
+    private static ObjectId commit(Repository repo, long time, ObjectId... parents) throws Exception {
+        try (ObjectInserter ins = repo.newObjectInserter()) {
+            PersonIdent who = new PersonIdent("dev", "dev@example.com", new Date(time * 1000), TimeZone.getTimeZone("UTC"));
+            CommitBuilder cb = new CommitBuilder();
+            cb.setTreeId(ins.insert(new TreeFormatter()));
+            cb.setParentIds(parents);
+            cb.setAuthor(who);
+            cb.setCommitter(who);
+            cb.setMessage("c" + time);
+            ObjectId id = ins.insert(cb);
+            ins.flush();
+            return id;
+        }
+    }
+
+    private static void ref(Repository repo, String name, ObjectId id) throws Exception {
+        RefUpdate u = repo.updateRef(name);
+        u.setNewObjectId(id);
+        u.forceUpdate();
+    }
+
+    @Test
+    void classifiesCommitsByReachingRemotes(@TempDir File dir) throws Exception {
+        try (Git git = Git.init().setDirectory(dir).call()) {
+            Repository repo = git.getRepository();
+            ObjectId base = commit(repo, 1000);
+            // f1 has a skewed, older timestamp than its parent
+            ObjectId f1 = commit(repo, 500, base);
+            ObjectId f2 = commit(repo, 3000, f1);
+            ObjectId u1 = commit(repo, 2000, base);
+            ObjectId merge = commit(repo, 4000, u1, f1);
+            ObjectId released = commit(repo, 4500, merge);
+            ref(repo, "refs/heads/master", merge);
+            ref(repo, "refs/remotes/origin/release", released);
+            ref(repo, "refs/remotes/alice/main", f2);
+
+            Map<ObjectId, ForkDivergence.Side> sides = new HashMap<>();
+            ForkDivergence.Summary summary = ForkDivergence.analyze(repo, "origin",
+                    (c, side) -> assertNull(sides.put(c.copy(), side)));
+
+            assertEquals(ForkDivergence.Side.BOTH, sides.get(base));
+            assertEquals(ForkDivergence.Side.BOTH, sides.get(f1));
+            assertEquals(ForkDivergence.Side.FORK_ONLY, sides.get(f2));
+            assertEquals(ForkDivergence.Side.UPSTREAM_ONLY, sides.get(u1));
+            assertEquals(ForkDivergence.Side.UPSTREAM_ONLY, sides.get(merge));
+            assertEquals(ForkDivergence.Side.UPSTREAM_ONLY, sides.get(released));
+            assertEquals(new ForkDivergence.Summary(3, 1, 2), summary);
+        }
+    }
+}
@@ -0,0 +1,91 @@
+package com.research.qmodel.graph;
+
+import com.google.gson.JsonArray;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Date;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphExporterTest {
+
+    private static Map<String, Vertex> chain() {
+        // a -> b -> c, timestamps 1000, 2000, 3000 seconds
+        Map<String, Vertex> vertices = new LinkedHashMap<>();
+        String[] shas = {"a", "b", "c"};
+        for (int i = 0; i < shas.length; i++) {
+            Vertex v = new Vertex(shas[i]);
+            v.setTimestamp(new Date(1000_000L * (i + 1)));
+            v.setInDegree(i == 0 ? 0 : 1);
+            v.setOutDegree(i == 2 ? 0 : 1);
+            v.setMaxDepthOfCommitHistory(i);
+            if (i < 2) v.addNeighbor(shas[i + 1]);
+            vertices.put(shas[i], v);
+        }
+        return vertices;
+    }
+
+    private static JsonObject parse(byte[] bytes) {
+        return JsonParser.parseString(new String(bytes, StandardCharsets.UTF_8)).getAsJsonObject();
+    }
+
+    @Test
+    void writesNodesAndEdges() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GraphExporter.export(chain(), GraphExporter.ALL, out, false, true);
+        JsonObject graph = parse(out.toByteArray());
+
+        JsonArray nodes = graph.getAsJsonArray("nodes");
+        JsonArray edges = graph.getAsJsonArray("edges");
+        assertEquals(3, nodes.size());
+        assertEquals(2, edges.size());
+
+        JsonObject b = nodes.get(1).getAsJsonObject();
+        assertEquals("b", b.get("id").getAsString());
+        assertEquals("Commit b", b.get("title").getAsString());
+        assertEquals("Zone b", b.get("detail__zone").getAsString());
+        assertEquals(1, b.get("maxDepthOfCommitHistory").getAsInt());
+        assertFalse(b.get("isMerge").getAsBoolean());
+        assertFalse(b.has("subTitle"));
+
+        JsonObject first = edges.get(0).getAsJsonObject();
+        assertEquals("1", first.get("id").getAsString());
+        assertEquals("a", first.get("source").getAsString());
+        assertEquals("b", first.get("target").getAsString());
+    }
+
+    @Test
+    void timeWindowKeepsOnlyEdgesInsideTheWindow() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GraphExporter.export(chain(), GraphExporter.timeWindow(new Date(2000_000L), null), out, false, false);
+        JsonObject graph = parse(out.toByteArray());
+
+        assertEquals(2, graph.getAsJsonArray("nodes").size());
+        JsonArray edges = graph.getAsJsonArray("edges");
+        assertEquals(1, edges.size());
+        assertEquals("b", edges.get(0).getAsJsonObject().get("source").getAsString());
+    }
+
+    @Test
+    void gzipOutputRoundTrips() throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        GraphExporter.export(chain(), GraphExporter.subgraph(List.of("a", "c")), out, true, false);
+        byte[] json;
+        try (GZIPInputStream in = new GZIPInputStream(new ByteArrayInputStream(out.toByteArray()))) {
+            json = in.readAllBytes();
+        }
+        JsonObject graph = parse(json);
+
+        assertEquals(2, graph.getAsJsonArray("nodes").size());
+        assertEquals(0, graph.getAsJsonArray("edges").size());
+    }
+}
@@ -0,0 +1,32 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/** Commit ids and throwaway repositories shared by the graph tests. */
+final class GraphFixtures {
+
+    private GraphFixtures() {
+    }
+
+    /** A made-up commit id that is {@code n} as a 40 digit hex number. */
+    static ObjectId oid(int n) {
+        return ObjectId.fromString(String.format("%040x", n));
+    }
+
+    /** A new repository in {@code dir} whose initial branch is master. */
+    static Git init(File dir) throws Exception {
+        return Git.init().setDirectory(dir).setInitialBranch("master").call();
+    }
+
+    /** Writes {@code content} to {@code file} in the work tree and commits it. */
+    static RevCommit commit(Git git, String file, String content) throws Exception {
+        Files.writeString(new File(git.getRepository().getWorkTree(), file).toPath(), content);
+        git.add().addFilepattern(file).call();
+        return git.commit().setMessage(file + " " + content).setSign(false).call();
+    }
+}
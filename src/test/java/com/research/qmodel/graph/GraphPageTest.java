@@ -0,0 +1,105 @@
+package com.research.qmodel.graph;
+
+import com.research.qmodel.service.GraphMetricsWriter;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.MergeCommand;
+import org.eclipse.jgit.lib.Ref;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.*;
+import java.util.function.UnaryOperator;
+
+import static com.research.qmodel.graph.GraphFixtures.init;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphPageTest {
+
+    private static GraphMetricsWriter discardingWriter() {
+        return new GraphMetricsWriter(null) {
+            @Override
+            public GraphMetricsSink open() {
+                return new GraphMetricsSink() {
+                    @Override
+                    public void add(String sha, int inDeg, int outDeg, int mergeCount, int minDepth, int maxDepth,
+                                    int numBranches, double avgDeg, int distToBranchStart,
+                                    int upstreamHeadsUnique, int daysSinceLastMerge) {
+                    }
+
+                    @Override
+                    public Report finish() {
+                        return new Report(0, 0, 0);
+                    }
+                };
+            }
+        };
+    }
+
+    /** master: a - b - c - m, feature: a - f1 - f2 merged into m, topic: f1 - t. */
+    private static Graph build(File dir) throws Exception {
+        try (Git git = init(dir)) {
+            git.commit().setAllowEmpty(true).setMessage("a").call();
+            git.branchCreate().setName("feature").call();
+            git.commit().setAllowEmpty(true).setMessage("b").call();
+            git.commit().setAllowEmpty(true).setMessage("c").call();
+            git.checkout().setName("feature").call();
+            git.commit().setAllowEmpty(true).setMessage("f1").call();
+            git.branchCreate().setName("topic").call();
+            git.commit().setAllowEmpty(true).setMessage("f2").call();
+            Ref feature = git.getRepository().exactRef("refs/heads/feature");
+            git.checkout().setName("topic").call();
+            git.commit().setAllowEmpty(true).setMessage("t").call();
+            git.checkout().setName("master").call();
+            git.merge().include(feature).setFastForward(MergeCommand.FastForwardMode.NO_FF).setMessage("m").call();
+        }
+        Graph graph = new Graph(discardingWriter());
+        graph.build(dir.getAbsolutePath());
+        return graph;
+    }
+
+    private static List<Map<String, Object>> all(Graph graph, UnaryOperator<GraphQuery.GraphQueryBuilder> query) {
+        List<Map<String, Object>> rows = new ArrayList<>();
+        String cursor = null;
+        do {
+            GraphPage page = graph.page(query.apply(GraphQuery.after(cursor)).build());
+            rows.addAll(page.getRows());
+            cursor = page.getNextCursor();
+        } while (cursor != null);
+        return rows;
+    }
+
+    @Test
+    void pagesCoverEveryCommitInTopologicalOrder(@TempDir File dir) throws Exception {
+        Graph graph = build(dir);
+        List<Map<String, Object>> rows = all(graph, q -> q.limit(2));
+
+        assertEquals(7, rows.size());
+        Set<String> seen = new HashSet<>();
+        int lastDepth = -1;
+        for (Map<String, Object> row : rows) {
+            assertTrue(seen.add((String) row.get("sha")));
+            int depth = (Integer) row.get("maxDepthOfCommitHistory");
+            assertTrue(depth >= lastDepth);
+            lastDepth = depth;
+        }
+        assertEquals(GraphColumn.values().length + 1, rows.get(0).size());
+    }
+
+    @Test
+    void filtersByBranchMergesAndColumns(@TempDir File dir) throws Exception {
+        Graph graph = build(dir);
+
+        assertEquals(3, all(graph, q -> q.limit(2).branch("topic")).size());
+        assertEquals(3, all(graph, q -> q.limit(2).branch("refs/heads/feature")).size());
+
+        List<Map<String, Object>> merges = all(graph, q -> q
+                .mergesOnly(true).columns(EnumSet.of(GraphColumn.IN_DEGREE)));
+        assertEquals(1, merges.size());
+        assertEquals(Set.of("sha", "inDegree"), merges.get(0).keySet());
+        assertEquals(2, merges.get(0).get("inDegree"));
+
+        assertThrows(IllegalArgumentException.class,
+                () -> graph.page(GraphQuery.after(null).branch("missing").build()));
+    }
+}
@@ -0,0 +1,73 @@
+package com.research.qmodel.graph;
+
+import com.research.qmodel.service.GraphMetricsWriter;
+import org.eclipse.jgit.api.Git;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.*;
+
+import static com.research.qmodel.graph.GraphFixtures.init;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphRefreshTest {
+
+    /** Keeps the {@code average_degree} each commit row would end up with. */
+    private static final class RecordingWriter extends GraphMetricsWriter {
+        final Map<String, Double> avgDeg = new HashMap<>();
+        int narrowUpdates;
+
+        RecordingWriter() {
+            super(null);
+        }
+
+        @Override
+        public GraphMetricsSink open() {
+            return new GraphMetricsSink() {
+                @Override
+                public void add(String sha, int inDeg, int outDeg, int mergeCount, int minDepth, int maxDepth,
+                                int numBranches, double avgDeg, int distToBranchStart,
+                                int upstreamHeadsUnique, int daysSinceLastMerge) {
+                    RecordingWriter.this.avgDeg.put(sha, avgDeg);
+                }
+
+                @Override
+                public Report finish() {
+                    return new Report(0, 0, 0);
+                }
+            };
+        }
+
+        @Override
+        public int updateAverageDegree(List<String> shas, double avgDeg) {
+            narrowUpdates += shas.size();
+            for (String sha : shas) this.avgDeg.put(sha, avgDeg);
+            return shas.size();
+        }
+    }
+
+    @Test
+    void refreshWritesTheSameAverageDegreeAsAFullBuild(@TempDir File dir) throws Exception {
+        String path = dir.getAbsolutePath();
+        RecordingWriter refreshed = new RecordingWriter();
+        try (Git git = init(dir)) {
+            for (int i = 0; i < 20; i++) git.commit().setAllowEmpty(true).setMessage("c" + i).call();
+            new Graph(refreshed).build(path);
+
+            // 19/20 to 20/21 edges per commit, a change well under one percent
+            git.commit().setAllowEmpty(true).setMessage("d").call();
+        }
+        Graph graph = new Graph(refreshed);
+        graph.refresh(path);
+
+        RecordingWriter full = new RecordingWriter();
+        new Graph(full).build(path);
+
+        assertTrue(refreshed.narrowUpdates > 0);
+        assertEquals(full.avgDeg, refreshed.avgDeg);
+        for (Map<String, Object> row : graph.page(GraphQuery.after(null).build()).getRows()) {
+            assertEquals(full.avgDeg.get(row.get("sha")), row.get(GraphColumn.AVERAGE_DEGREE.getKey()));
+        }
+    }
+}
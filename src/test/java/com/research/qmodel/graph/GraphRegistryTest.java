@@ -0,0 +1,111 @@
+package com.research.qmodel.graph;
+
+import com.research.qmodel.errors.GraphBuildException;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphRegistryTest {
+
+    private static class StubGraph extends Graph {
+        private final long bytes;
+        private final CountDownLatch release;
+
+        StubGraph(long bytes, CountDownLatch release) {
+            super(null);
+            this.bytes = bytes;
+            this.release = release;
+        }
+
+        @Override
+        void build(String repoPath) throws Exception {
+            release.await();
+            if (repoPath.endsWith("broken_repo")) throw new IllegalStateException("no clone");
+        }
+
+        @Override
+        void refresh(String repoPath) throws Exception {
+            build(repoPath);
+        }
+
+        @Override
+        public long estimatedBytes() {
+            return bytes;
+        }
+    }
+
+    private static class StubRegistry extends GraphRegistry {
+        final AtomicInteger builds = new AtomicInteger();
+        CountDownLatch release = new CountDownLatch(0);
+
+        StubRegistry(long maxBytes) {
+            super(null, null);
+            ReflectionTestUtils.setField(this, "maxBytes", maxBytes);
+        }
+
+        @Override
+        Graph newGraph() {
+            builds.incrementAndGet();
+            return new StubGraph(100, release);
+        }
+    }
+
+    @Test
+    void concurrentRequestsShareOneBuild() throws Exception {
+        StubRegistry registry = new StubRegistry(1_000);
+        registry.release = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(4);
+        try {
+            Future<Graph> a = pool.submit(() -> registry.get("o", "r"));
+            while (registry.builds.get() == 0) Thread.onSpinWait();
+            Future<Graph> b = pool.submit(() -> registry.get("o", "r"));
+            Thread.sleep(50);
+            registry.release.countDown();
+
+            assertSame(a.get(), b.get());
+            assertEquals(1, registry.builds.get());
+            assertSame(a.get(), registry.get("o", "r"));
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    @Test
+    void refreshSwapsInANewGraph() {
+        StubRegistry registry = new StubRegistry(1_000);
+        Graph first = registry.get("o", "r");
+        Graph second = registry.refresh("o", "r");
+
+        assertNotSame(first, second);
+        assertSame(second, registry.getIfPresent("o", "r").orElseThrow());
+        assertEquals(1, registry.size());
+    }
+
+    @Test
+    void evictsLeastRecentlyUsedOverBudget() {
+        StubRegistry registry = new StubRegistry(250);
+        registry.get("o", "a");
+        registry.get("o", "b");
+        registry.get("o", "a");
+        registry.get("o", "c");
+
+        assertTrue(registry.getIfPresent("o", "a").isPresent());
+        assertTrue(registry.getIfPresent("o", "b").isEmpty());
+        assertTrue(registry.getIfPresent("o", "c").isPresent());
+        assertEquals(200, registry.totalBytes());
+    }
+
+    @Test
+    void failedBuildIsReportedAndNotCached() {
+        StubRegistry registry = new StubRegistry(1_000);
+        assertThrows(GraphBuildException.class, () -> registry.get("broken", "repo"));
+        assertTrue(registry.getIfPresent("broken", "repo").isEmpty());
+    }
+}
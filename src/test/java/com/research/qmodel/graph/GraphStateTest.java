@@ -0,0 +1,48 @@
+package com.research.qmodel.graph;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.util.Map;
+
+import static com.research.qmodel.graph.GraphFixtures.oid;
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphStateTest {
+
+    @Test
+    void roundTripsDagAndMetrics(@TempDir File gitDir) throws Exception {
+        CommitDag.Builder b = CommitDag.builder(4);
+        b.addCommit(oid(2), 200, oid(1));
+        b.addCommit(oid(3), 300, oid(2));
+        b.addCommit(oid(4), 400, oid(3), oid(2));
+        CommitDag dag = b.build();
+        int n = dag.size();
+
+        GraphState state = new GraphState(dag, Map.of("refs/heads/master", oid(4)), "",
+                new int[]{0, 0, 1, 2}, new int[]{0, 0, 1, 2}, new int[]{-1, -1, 1, 2}, new int[]{0, -1, 0, 0},
+                new int[]{0, 0, 1, 2}, new int[n], new int[n], new int[]{1, 0, 1, 1}, 1.25);
+        File file = GraphState.location(gitDir);
+        state.write(file);
+        GraphState read = GraphState.read(file);
+
+        assertNotNull(read);
+        assertEquals(Map.of("refs/heads/master", oid(4)), read.refs);
+        assertEquals(n, read.dag.size());
+        assertArrayEquals(dag.topo(), read.dag.topo());
+        assertFalse(read.dag.isWalked(read.dag.id(oid(1))));
+        int merge = read.dag.id(oid(4));
+        assertTrue(read.dag.isMerge(merge));
+        assertEquals(400, read.dag.commitTime(merge));
+        assertEquals(dag.id(oid(3)), read.dag.parent(merge, 0));
+        assertArrayEquals(state.firstParent, read.firstParent);
+        assertArrayEquals(state.branchCounts, read.branchCounts);
+        assertEquals(1.25, read.avgDeg);
+    }
+
+    @Test
+    void missingStateReadsAsNull(@TempDir File gitDir) throws Exception {
+        assertNull(GraphState.read(GraphState.location(gitDir)));
+    }
+}
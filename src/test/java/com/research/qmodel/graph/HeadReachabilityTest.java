@@ -0,0 +1,52 @@
+package com.research.qmodel.graph;
+
+import org.junit.jupiter.api.Test;
+
+import static com.research.qmodel.graph.GraphFixtures.oid;
+import static org.junit.jupiter.api.Assertions.*;
+
+class HeadReachabilityTest {
+
+    @Test
+    void propagatesHeadsToAncestorsOnly() {
+        // 1 <- 2 <- 3 (head 0)
+        //   <- 4       (head 1)
+        CommitDag.Builder b = CommitDag.builder(4);
+        b.addCommit(oid(1), 100);
+        b.addCommit(oid(2), 200, oid(1));
+        b.addCommit(oid(3), 300, oid(2));
+        b.addCommit(oid(4), 400, oid(1));
+        CommitDag dag = b.build();
+
+        int c1 = dag.id(oid(1)), c2 = dag.id(oid(2)), c3 = dag.id(oid(3)), c4 = dag.id(oid(4));
+        HeadReachability r = HeadReachability.compute(dag, new int[][]{{c3}, {c4}});
+
+        assertTrue(r.reaches(0, c1));
+        assertTrue(r.reaches(0, c2));
+        assertFalse(r.reaches(1, c2));
+        assertFalse(r.reaches(0, c4));
+        assertEquals(2, r.countReaching(c1, 2));
+        assertEquals(1, r.countReaching(c1, 1));
+        assertEquals(0, r.countReaching(c1, 0));
+        assertEquals(1, r.countReaching(c3, 2));
+    }
+
+    @Test
+    void handlesMoreHeadsThanOneWord() {
+        CommitDag.Builder b = CommitDag.builder(2);
+        b.addCommit(oid(1), 100);
+        b.addCommit(oid(2), 200, oid(1));
+        CommitDag dag = b.build();
+
+        int heads = 130;
+        int[][] seeds = new int[heads][];
+        for (int h = 0; h < heads; h++) seeds[h] = new int[]{h % 2 == 0 ? dag.id(oid(2)) : dag.id(oid(1))};
+        HeadReachability r = HeadReachability.compute(dag, seeds);
+
+        assertEquals(heads, r.countReaching(dag.id(oid(1)), heads));
+        assertEquals(heads / 2, r.countReaching(dag.id(oid(2)), heads));
+        assertEquals(65, r.countReaching(dag.id(oid(1)), 65));
+        assertTrue(r.reaches(129, dag.id(oid(1))));
+        assertFalse(r.reaches(129, dag.id(oid(2))));
+    }
+}
@@ -0,0 +1,76 @@
+package com.research.qmodel.graph;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+import static com.research.qmodel.graph.GraphFixtures.oid;
+import static org.junit.jupiter.api.Assertions.*;
+
+class MetricPassesTest {
+
+    @Test
+    void runsPassesAfterTheirDependencies() throws Exception {
+        List<String> done = new CopyOnWriteArrayList<>();
+        new MetricPasses()
+                .add("a", () -> done.add("a"))
+                .add("b", () -> done.add("b"))
+                .add("c", () -> done.add("c"), "a", "b")
+                .add("d", () -> done.add("d"), "c")
+                .await();
+
+        assertEquals(4, done.size());
+        assertTrue(done.indexOf("c") > done.indexOf("a"));
+        assertTrue(done.indexOf("c") > done.indexOf("b"));
+        assertEquals("d", done.get(3));
+    }
+
+    @Test
+    void failingPassSkipsDependentsAndSurfacesItsException() {
+        AtomicBoolean ran = new AtomicBoolean();
+        MetricPasses passes = new MetricPasses()
+                .add("a", () -> {
+                    throw new IOException("boom");
+                })
+                .add("b", () -> ran.set(true), "a");
+
+        IOException e = assertThrows(IOException.class, passes::await);
+        assertEquals("boom", e.getMessage());
+        assertFalse(ran.get());
+    }
+
+    @Test
+    void rejectsUnknownDependency() {
+        assertThrows(IllegalArgumentException.class, () -> new MetricPasses().add("a", () -> {
+        }, "missing"));
+    }
+
+    @Test
+    void sweepsChildrenBeforeParentsOnWideDags() {
+        // a root with many children, each with its own child, wide enough for parallel levels
+        int width = MetricPasses.PARALLEL_THRESHOLD;
+        CommitDag.Builder b = CommitDag.builder(2 * width + 1);
+        b.addCommit(oid(1), 1);
+        for (int i = 0; i < width; i++) {
+            b.addCommit(oid(2 + 2 * i), 2, oid(1));
+            b.addCommit(oid(3 + 2 * i), 3, oid(2 + 2 * i));
+        }
+        CommitDag dag = b.build();
+
+        AtomicIntegerArray visitedAt = new AtomicIntegerArray(dag.size());
+        AtomicInteger clock = new AtomicInteger();
+        MetricPasses.sweepChildrenFirst(dag, id -> visitedAt.set(id, clock.incrementAndGet()));
+
+        assertEquals(dag.size(), clock.get());
+        for (int id = 0; id < dag.size(); id++) {
+            for (int i = 0; i < dag.childCount(id); i++) {
+                assertTrue(visitedAt.get(dag.child(id, i)) < visitedAt.get(id));
+            }
+        }
+    }
+}
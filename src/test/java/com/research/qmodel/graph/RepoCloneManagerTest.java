@@ -0,0 +1,84 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import static com.research.qmodel.graph.GraphFixtures.commit;
+import static com.research.qmodel.graph.GraphFixtures.init;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepoCloneManagerTest {
+
+    private static RepoCloneManager manager(File upstream, File clones) {
+        RepoCloneManager m = new RepoCloneManager(2);
+        ReflectionTestUtils.setField(m, "baseUrl", "file://" + upstream.getAbsolutePath() + "/");
+        ReflectionTestUtils.setField(m, "repoBasePath", clones.getAbsolutePath());
+        return m;
+    }
+
+    private static ObjectId remoteTip(File clone) throws Exception {
+        try (Git git = Git.open(clone)) {
+            return git.getRepository().resolve("refs/remotes/origin/master");
+        }
+    }
+
+    @Test
+    void clonesThenFetchesIncrementally(@TempDir File tmp) throws Exception {
+        File upstream = new File(tmp, "up");
+        try (Git src = init(new File(upstream, "acme/app"))) {
+            commit(src, "a.txt", "1");
+            RepoCloneManager m = manager(upstream, new File(tmp, "clones"));
+            try {
+                File full = m.sync("acme", "app", RepoCloneManager.Mode.FULL).get(60, TimeUnit.SECONDS);
+                assertEquals(new File(tmp, "clones/acme_app"), full);
+                assertTrue(new File(full, "a.txt").isFile());
+
+                RevCommit second = commit(src, "b.txt", "2");
+                m.sync("acme", "app", RepoCloneManager.Mode.FULL).get(60, TimeUnit.SECONDS);
+                assertEquals(second.getId(), remoteTip(full));
+
+                SimpleProgressMonitor.Progress p = m.progress().get("acme/app");
+                assertEquals(SimpleProgressMonitor.State.DONE, p.state());
+            } finally {
+                m.destroy();
+            }
+        }
+    }
+
+    @Test
+    void shallowAndBloblessClonesSkipCheckout(@TempDir File tmp) throws Exception {
+        File upstream = new File(tmp, "up");
+        try (Git src = init(new File(upstream, "acme/app"))) {
+            commit(src, "a.txt", "1");
+            RevCommit tip = commit(src, "a.txt", "2");
+            src.getRepository().getConfig().setBoolean("uploadpack", null, "allowFilter", true);
+            src.getRepository().getConfig().save();
+            RepoCloneManager m = manager(upstream, new File(tmp, "clones"));
+            try {
+                ReflectionTestUtils.setField(m, "repoBasePath", new File(tmp, "shallow").getAbsolutePath());
+                File shallow = m.sync("acme", "app", RepoCloneManager.Mode.SHALLOW).get(60, TimeUnit.SECONDS);
+                assertTrue(new File(shallow, ".git/shallow").isFile());
+                assertFalse(new File(shallow, "a.txt").exists());
+                assertEquals(tip.getId(), remoteTip(shallow));
+
+                ReflectionTestUtils.setField(m, "repoBasePath", new File(tmp, "blobless").getAbsolutePath());
+                File blobless = m.sync("acme", "app", RepoCloneManager.Mode.BLOBLESS).get(60, TimeUnit.SECONDS);
+                assertFalse(new File(blobless, "a.txt").exists());
+                assertEquals(tip.getId(), remoteTip(blobless));
+
+                RevCommit next = commit(src, "a.txt", "3");
+                m.sync("acme", "app", RepoCloneManager.Mode.BLOBLESS).get(60, TimeUnit.SECONDS);
+                assertEquals(next.getId(), remoteTip(blobless));
+            } finally {
+                m.destroy();
+            }
+        }
+    }
+}
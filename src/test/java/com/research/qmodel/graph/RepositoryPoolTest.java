@@ -0,0 +1,102 @@
+package com.research.qmodel.graph;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+
+import static com.research.qmodel.graph.GraphFixtures.commit;
+import static com.research.qmodel.graph.GraphFixtures.init;
+import static org.junit.jupiter.api.Assertions.*;
+
+class RepositoryPoolTest {
+
+    @TempDir
+    File tmp;
+
+    private File repo(String name) throws Exception {
+        File dir = new File(tmp, name);
+        try (Git git = init(dir)) {
+            commit(git, "a.txt", name);
+        }
+        return dir;
+    }
+
+    @Test
+    void sharesOneHandlePerRepositoryWhateverPathNamesIt() throws Exception {
+        File dir = repo("app");
+        RepositoryPool pool = new RepositoryPool(60_000, 4);
+
+        try (RepositoryPool.Lease first = pool.acquire(dir.getPath());
+             RepositoryPool.Lease second = pool.acquire(new File(dir, ".git"))) {
+            assertSame(first.repository(), second.repository());
+            assertNotNull(second.repository().resolve("HEAD"));
+            assertEquals(1, pool.stats().leased());
+        }
+        try (RepositoryPool.Lease third = pool.acquire(dir)) {
+            assertNotNull(third.git().log().call().iterator().next());
+        }
+
+        RepositoryPool.Stats stats = pool.stats();
+        assertEquals(3, stats.acquires());
+        assertEquals(1, stats.opens());
+        assertEquals(1, stats.open());
+        assertEquals(0, stats.leased());
+        assertEquals(2.0 / 3, stats.hitRate(), 1e-9);
+    }
+
+    @Test
+    void closesIdleHandlesBeyondTheLimitButNeverLeasedOnes() throws Exception {
+        File a = repo("a");
+        File b = repo("b");
+        RepositoryPool pool = new RepositoryPool(60_000, 0);
+
+        Repository leased;
+        try (RepositoryPool.Lease lease = pool.acquire(a)) {
+            leased = lease.repository();
+            pool.acquire(b).close();
+            assertEquals(1, pool.stats().open());
+            assertEquals(1, pool.stats().evictions());
+            assertNotNull(leased.resolve("HEAD"));
+        }
+        assertEquals(0, pool.stats().open());
+
+        try (RepositoryPool.Lease lease = pool.acquire(a)) {
+            assertNotSame(leased, lease.repository());
+        }
+        assertEquals(3, pool.stats().opens());
+    }
+
+    @Test
+    void invalidatedHandleIsClosedWhenReturnedAndReopenedNextTime() throws Exception {
+        File dir = repo("app");
+        RepositoryPool pool = new RepositoryPool(60_000, 4);
+
+        RepositoryPool.Lease lease = pool.acquire(dir);
+        pool.invalidate(dir);
+        assertEquals(0, pool.stats().open());
+        assertNotNull(lease.repository().resolve("HEAD"));
+        lease.close();
+        lease.close();
+
+        try (RepositoryPool.Lease again = pool.acquire(dir)) {
+            assertNotSame(lease.repository(), again.repository());
+        }
+        assertEquals(2, pool.stats().opens());
+    }
+
+    @Test
+    void neverSharesAHandleOfSomethingThatIsNoRepository() throws Exception {
+        File missing = new File(tmp, "missing/.git");
+        RepositoryPool pool = new RepositoryPool(60_000, 4);
+
+        try (RepositoryPool.Lease first = pool.acquire(missing);
+             RepositoryPool.Lease second = pool.acquire(missing)) {
+            assertNotSame(first.repository(), second.repository());
+            assertNull(first.repository().resolve("HEAD"));
+        }
+        assertEquals(0, pool.stats().open());
+    }
+}
@@ -0,0 +1,53 @@
+package com.research.qmodel.graph;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static com.research.qmodel.graph.GraphFixtures.oid;
+import static org.junit.jupiter.api.Assertions.*;
+
+class VertexStoreTest {
+
+    @Test
+    void viewMatchesMaterializedVertices() throws Exception {
+        CommitDag.Builder b = CommitDag.builder(4);
+        b.addCommit(oid(2), 200, oid(1));
+        b.addCommit(oid(3), 300, oid(2));
+        b.addCommit(oid(4), 400, oid(3), oid(2));
+        CommitDag dag = b.build();
+        int[] minDepth = new int[4];
+        int[] maxDepth = new int[4];
+        maxDepth[dag.id(oid(3))] = 1;
+        maxDepth[dag.id(oid(4))] = 2;
+        minDepth[dag.id(oid(3))] = 1;
+        minDepth[dag.id(oid(4))] = 1;
+        Map<String, Vertex> view = new VertexStore(dag, minDepth, maxDepth).asMap();
+
+        assertEquals(4, view.size());
+        assertEquals(List.of(dag.sha(0), dag.sha(1), dag.sha(2), dag.sha(3)), List.copyOf(view.keySet()));
+        assertNull(view.get(oid(9).name()));
+
+        Vertex expected = new Vertex(oid(2).name());
+        expected.addNeighbor(oid(3).name());
+        expected.addNeighbor(oid(4).name());
+        expected.setInDegree(1);
+        expected.setOutDegree(2);
+        expected.setMaxDepthOfCommitHistory(0);
+        expected.setTimestamp(new Date(200_000L));
+        Vertex stored = view.get(oid(2).name());
+        assertEquals(expected, stored);
+        ObjectMapper json = new ObjectMapper();
+        // as trees, Jackson does not order the properties of a subclass the same way
+        assertEquals(json.valueToTree(expected), json.valueToTree(stored));
+
+        Vertex boundary = view.get(oid(1).name());
+        assertNull(boundary.getTimestamp());
+        assertFalse(boundary.isMerge());
+        assertTrue(view.get(oid(4).name()).isMerge());
+        assertThrows(UnsupportedOperationException.class, () -> stored.setInDegree(3));
+    }
+}
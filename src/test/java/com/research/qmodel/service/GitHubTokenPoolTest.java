@@ -0,0 +1,107 @@
+package com.research.qmodel.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import org.springframework.http.HttpHeaders;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GitHubTokenPoolTest {
+
+    private final MeterRegistry registry = new SimpleMeterRegistry();
+
+    private GitHubTokenPool pool(int limit, String... keys) {
+        StaticListableBeanFactory beans = new StaticListableBeanFactory(Map.of("meterRegistry", registry));
+        return new GitHubTokenPool(keys, limit, beans.getBeanProvider(MeterRegistry.class));
+    }
+
+    private static HttpHeaders quota(int remaining, long resetMillis) {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("X-RateLimit-Limit", "5000");
+        headers.add("X-RateLimit-Remaining", String.valueOf(remaining));
+        headers.add("X-RateLimit-Reset", String.valueOf(resetMillis / 1000));
+        return headers;
+    }
+
+    @Test
+    void handsOutTheTokenWithTheMostQuotaLeft() throws InterruptedException {
+        GitHubTokenPool pool = pool(5000, "token a", "token b");
+        long reset = System.currentTimeMillis() + 3_600_000;
+        pool.update("token a", quota(10, reset));
+        pool.update("token b", quota(12, reset));
+
+        List<String> handedOut = new ArrayList<>();
+        for (int i = 0; i < 6; i++) handedOut.add(pool.acquire());
+
+        assertEquals(List.of("token b", "token b", "token a", "token b", "token a", "token b"), handedOut);
+        assertEquals(16, pool.headroom());
+        assertEquals(8, registry.get("qmodel.github.token.remaining").tag("key", "key-1").gauge().value());
+    }
+
+    @Test
+    void parksUntilTheFirstResetWhenEveryTokenIsUsedUp() throws Exception {
+        GitHubTokenPool pool = pool(5000, "token a", "token b");
+        long now = System.currentTimeMillis();
+        pool.update("token a", quota(0, now + 3_600_000));
+        pool.update("token b", quota(0, now + 1_000));
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<String> acquired = executor.submit(pool::acquire);
+            assertThrows(TimeoutException.class, () -> acquired.get(500, TimeUnit.MILLISECONDS));
+            assertEquals("token b", acquired.get(5, TimeUnit.SECONDS));
+            assertTrue(System.currentTimeMillis() - now >= 1_000);
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(1, registry.get("qmodel.github.tokens.waits").functionCounter().count());
+    }
+
+    @Test
+    void backsOffATokenThatWasRateLimitedWithoutQuotaHeaders() throws InterruptedException {
+        GitHubTokenPool pool = pool(5000, "token a", "token b");
+
+        pool.rateLimited("token a", new HttpHeaders());
+
+        for (int i = 0; i < 3; i++) assertEquals("token b", pool.acquire());
+        GitHubTokenPool.Usage a = pool.usage().get(0);
+        assertEquals(0, a.remaining());
+        assertEquals(1, a.rateLimited());
+        assertTrue(a.resetEpochSecond() > System.currentTimeMillis() / 1000);
+    }
+
+    @Test
+    void reportsUsageWithoutTheTokens() throws InterruptedException {
+        GitHubTokenPool pool = pool(60);
+        assertNull(pool.acquire());
+        pool.update(null, quota(42, System.currentTimeMillis() + 60_000));
+
+        List<GitHubTokenPool.Usage> usage = pool.usage();
+        assertEquals(1, usage.size());
+        assertEquals("anonymous", usage.get(0).key());
+        assertEquals(42, usage.get(0).remaining());
+        assertEquals(1, usage.get(0).requests());
+
+        GitHubTokenPool keyed = pool(60, "secret", "", "secret");
+        assertEquals(List.of("key-0"), keyed.usage().stream().map(GitHubTokenPool.Usage::key).toList());
+    }
+
+    @Test
+    void tellsRateLimitsFromPermissionErrors() {
+        HttpHeaders drained = quota(0, System.currentTimeMillis() + 60_000);
+        HttpHeaders retryAfter = new HttpHeaders();
+        retryAfter.add("Retry-After", "30");
+
+        assertTrue(BasicQueryService.isRateLimited(429, new HttpHeaders()));
+        assertTrue(BasicQueryService.isRateLimited(403, drained));
+        assertTrue(BasicQueryService.isRateLimited(403, retryAfter));
+        assertFalse(BasicQueryService.isRateLimited(403, quota(4000, System.currentTimeMillis() + 60_000)));
+        assertFalse(BasicQueryService.isRateLimited(403, null));
+        assertFalse(BasicQueryService.isRateLimited(404, drained));
+    }
+}
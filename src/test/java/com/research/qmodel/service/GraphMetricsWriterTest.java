@@ -0,0 +1,73 @@
+package com.research.qmodel.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class GraphMetricsWriterTest {
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbc;
+
+    @BeforeEach
+    void setUp() {
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:graph_metrics;DB_CLOSE_DELAY=-1", true);
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("create table commit (sha varchar(64) primary key, in_degree int, out_degree int, "
+                + "merge_count int, min_depth_of_commit_history int, max_depth_of_commit_history int, "
+                + "number_of_branches int, average_degree double, distance_to_branch_start int, "
+                + "upstream_heads_unique_on_segment int, days_since_last_merge_on_segment int)");
+        jdbc.update("insert into commit (sha) values ('a'), ('b'), ('c')");
+    }
+
+    @AfterEach
+    void tearDown() {
+        jdbc.execute("drop table commit");
+        dataSource.destroy();
+    }
+
+    @Test
+    void writesRowsInBatchesAndCountsUnmatched() throws Exception {
+        GraphMetricsWriter writer = new GraphMetricsWriter(dataSource);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+
+        GraphMetricsWriter.Report report;
+        try (GraphMetricsWriter.GraphMetricsSink sink = writer.open()) {
+            sink.add("a", 0, 1, 0, 0, 0, 1, 1.5, 0, 0, 0);
+            sink.add("b", 1, 1, 0, 1, 1, 2, 1.5, 1, 0, 0);
+            sink.add("missing", 1, 0, 0, 2, 2, 1, 1.5, 2, 0, 0);
+            sink.add("c", 2, 0, 1, 2, 3, 1, 1.5, 0, 1, 4);
+            report = sink.finish();
+        }
+
+        assertEquals(4, report.getRows());
+        assertEquals(1, report.getUnmatched());
+        Map<String, Object> c = jdbc.queryForMap("select * from commit where sha = 'c'");
+        assertEquals(2, c.get("IN_DEGREE"));
+        assertEquals(1, c.get("MERGE_COUNT"));
+        assertEquals(3, c.get("MAX_DEPTH_OF_COMMIT_HISTORY"));
+        assertEquals(4, c.get("DAYS_SINCE_LAST_MERGE_ON_SEGMENT"));
+        assertEquals(1.5, c.get("AVERAGE_DEGREE"));
+    }
+
+    @Test
+    void rollsBackRowsWhenClosedWithoutFinishing() throws Exception {
+        GraphMetricsWriter writer = new GraphMetricsWriter(dataSource);
+        ReflectionTestUtils.setField(writer, "batchSize", 2);
+
+        try (GraphMetricsWriter.GraphMetricsSink sink = writer.open()) {
+            sink.add("a", 0, 1, 0, 0, 0, 1, 1.5, 0, 0, 0);
+            sink.add("b", 1, 1, 0, 1, 1, 2, 1.5, 1, 0, 0);
+            sink.add("c", 2, 0, 1, 2, 3, 1, 1.5, 0, 1, 4);
+        }
+
+        assertEquals(0, jdbc.queryForObject("select count(*) from commit where in_degree is not null", Integer.class));
+    }
+}
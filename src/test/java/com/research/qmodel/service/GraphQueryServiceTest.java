@@ -0,0 +1,46 @@
+package com.research.qmodel.service;
+
+import com.research.qmodel.errors.GraphNotLoadedException;
+import com.research.qmodel.graph.GraphPage;
+import com.research.qmodel.graph.GraphQuery;
+import com.research.qmodel.graph.GraphRegistry;
+import com.research.qmodel.repos.CommitRepository;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+class GraphQueryServiceTest {
+
+    private final GraphRegistry graphRegistry = mock(GraphRegistry.class);
+    private final CommitRepository commitRepository = mock(CommitRepository.class);
+    private final GraphQueryService service = new GraphQueryService(graphRegistry, commitRepository);
+
+    @Test
+    void branchFilterDoesNotBuildAMissingGraph() {
+        when(graphRegistry.getIfPresent("o", "r")).thenReturn(Optional.empty());
+
+        GraphNotLoadedException e = assertThrows(GraphNotLoadedException.class,
+                () -> service.page("o", "r", GraphQuery.after(null).branch("master").build()));
+
+        assertTrue(e.getMessage().contains("repos/o/r/graph/refresh"));
+        verify(graphRegistry, never()).get(any(), any());
+        verifyNoInteractions(commitRepository);
+    }
+
+    @Test
+    void pagesFromTheDatabaseWhileTheGraphIsNotLoaded() {
+        when(graphRegistry.getIfPresent("o", "r")).thenReturn(Optional.empty());
+        when(commitRepository.findGraphPage(eq("r"), eq("o"), anyInt(), any(), any(), any(), anyBoolean(), any()))
+                .thenReturn(List.of());
+
+        GraphPage page = service.page("o", "r", GraphQuery.after(null).build());
+
+        assertEquals(GraphPage.Source.DATABASE, page.getSource());
+        verify(graphRegistry, never()).get(any(), any());
+    }
+}
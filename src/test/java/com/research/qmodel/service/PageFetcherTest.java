@@ -0,0 +1,94 @@
+package com.research.qmodel.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class PageFetcherTest {
+
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+    private final AtomicInteger running = new AtomicInteger();
+    private final AtomicInteger maxRunning = new AtomicInteger();
+    private final AtomicInteger requested = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    /** Pages 1..pages hold one row each, later ones are empty; out of order and with overlap. */
+    private PageFetcher.Source source(int pages, int lastPage) {
+        return pageNumber -> {
+            requested.incrementAndGet();
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(ThreadLocalRandom.current().nextInt(5, 20));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } finally {
+                running.decrementAndGet();
+            }
+            if (pageNumber > pages) return PageFetcher.Page.EMPTY;
+            return new PageFetcher.Page(List.of(IntNode.valueOf(pageNumber)), pageNumber < pages, lastPage);
+        };
+    }
+
+    private List<Integer> read(PageFetcher fetcher, PageFetcher.Source source, int stopAfter) {
+        List<Integer> delivered = new ArrayList<>();
+        fetcher.fetch(source, 1000, (pageNumber, page) -> {
+            JsonNode row = page.rows().get(0);
+            assertEquals(pageNumber, row.asInt());
+            delivered.add(pageNumber);
+            return pageNumber < stopAfter;
+        });
+        return delivered;
+    }
+
+    @Test
+    void requestsUpToTheLastPageConcurrentlyAndDeliversInOrder() {
+        PageFetcher fetcher = new PageFetcher(executor, 4, () -> Integer.MAX_VALUE);
+
+        assertEquals(IntStream.rangeClosed(1, 20).boxed().toList(), read(fetcher, source(20, 20), 1000));
+        assertEquals(20, requested.get());
+        assertTrue(maxRunning.get() > 1 && maxRunning.get() <= 4, "max running " + maxRunning.get());
+    }
+
+    @Test
+    void probesAheadWhenTheLastPageIsUnknown() {
+        PageFetcher fetcher = new PageFetcher(executor, 4, () -> Integer.MAX_VALUE);
+
+        assertEquals(IntStream.rangeClosed(1, 9).boxed().toList(), read(fetcher, source(9, 0), 1000));
+        assertTrue(requested.get() <= 9 + 4, "requested " + requested.get());
+        assertTrue(maxRunning.get() <= 4);
+    }
+
+    @Test
+    void staysWithinTheTokensQuotaAndStopsWhenTheSinkDoes() {
+        PageFetcher fetcher = new PageFetcher(executor, 4, () -> 1);
+
+        assertEquals(List.of(1, 2, 3), read(fetcher, source(20, 20), 3));
+        assertEquals(1, maxRunning.get());
+        assertEquals(3, requested.get());
+    }
+
+    @Test
+    void readsTheLastPageFromTheLinkHeader() {
+        HttpHeaders headers = new HttpHeaders();
+        headers.add("Link", "<https://api.github.com/repositories/1/issues?per_page=300&page=2>; rel=\"next\", "
+                + "<https://api.github.com/repositories/1/issues?per_page=300&page=57>; rel=\"last\"");
+        assertEquals(57, BasicQueryService.lastPageFromLink(headers));
+        assertEquals(0, BasicQueryService.lastPageFromLink(new HttpHeaders()));
+    }
+}
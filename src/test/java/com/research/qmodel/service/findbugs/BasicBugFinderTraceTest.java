@@ -0,0 +1,176 @@
+package com.research.qmodel.service.findbugs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyIterable;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.*;
+
+import com.research.qmodel.model.Commit;
+import com.research.qmodel.model.CommitID;
+import com.research.qmodel.model.FileChange;
+import com.research.qmodel.model.ProjectIssue;
+import com.research.qmodel.model.SzzJob;
+import com.research.qmodel.model.SzzJobIssue;
+import com.research.qmodel.repos.CommitRepository;
+import com.research.qmodel.repos.ProjectIssueRepository;
+import com.research.qmodel.repos.SzzJobIssueRepository;
+import com.research.qmodel.repos.SzzJobRepository;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.*;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.AdditionalAnswers;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.Spy;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.test.util.ReflectionTestUtils;
+
+@ExtendWith(MockitoExtension.class)
+class BasicBugFinderTraceTest {
+
+  @Mock private CommitRepository commitRepository;
+  @Mock private ProjectIssueRepository projectIssueRepository;
+  @Mock private SzzJobRepository szzJobRepository;
+  @Mock private SzzJobIssueRepository szzJobIssueRepository;
+  @Spy private BlameCache blameCache = new BlameCache();
+  @InjectMocks private BasicBugFinder basicBugFinder;
+
+  @TempDir File tmp;
+
+  private RevCommit introducing;
+  private RevCommit unrelated;
+  private RevCommit fix;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    File work = new File(tmp, "owner_repo");
+    try (Git git = Git.init().setDirectory(work).setInitialBranch("main").call()) {
+      Files.writeString(new File(work, "A.java").toPath(), "a\nbug\nc\n");
+      git.add().addFilepattern("A.java").call();
+      introducing = git.commit().setMessage("introduce").setSign(false).call();
+      Files.writeString(new File(work, "B.java").toPath(), "unrelated\n");
+      git.add().addFilepattern("B.java").call();
+      unrelated = git.commit().setMessage("unrelated").setSign(false).call();
+      Files.writeString(new File(work, "A.java").toPath(), "a\nfixed\nc\n");
+      git.add().addFilepattern("A.java").call();
+      fix = git.commit().setMessage("fix").setSign(false).call();
+    }
+    ReflectionTestUtils.setField(basicBugFinder, "repoBasePath", tmp.getAbsolutePath());
+    ReflectionTestUtils.setField(basicBugFinder, "szzThreads", 2);
+    ReflectionTestUtils.setField(basicBugFinder, "szzSaveBatchSize", 2);
+    SzzJobTracker szzJobTracker = new SzzJobTracker();
+    ReflectionTestUtils.setField(szzJobTracker, "szzJobRepository", szzJobRepository);
+    ReflectionTestUtils.setField(szzJobTracker, "szzJobIssueRepository", szzJobIssueRepository);
+    ReflectionTestUtils.setField(basicBugFinder, "szzJobTracker", szzJobTracker);
+  }
+
+  private ProjectIssue fixedIssue(long id) {
+    FileChange change = new FileChange();
+    change.setFileName("A.java");
+    change.setChangedLines(new HashSet<>(List.of(2)));
+    Commit fixCommit = new Commit();
+    fixCommit.setSha(fix.name());
+    fixCommit.setFileChanges(List.of(change));
+    ProjectIssue issue = new ProjectIssue();
+    issue.setId(id);
+    issue.setFixingCommits(List.of(fixCommit));
+    issue.setBugIntroducingCommits(new ArrayList<>());
+    return issue;
+  }
+
+  @Test
+  void tracesIssuesInParallelAndSavesInBatches() {
+    when(szzJobRepository.save(any())).thenAnswer(AdditionalAnswers.returnsFirstArg());
+    List<ProjectIssue> issues = List.of(fixedIssue(1), fixedIssue(2), fixedIssue(3));
+    when(projectIssueRepository.finAllFixedIssues("repo", "owner")).thenReturn(issues);
+    when(commitRepository.findById(any(CommitID.class)))
+        .thenAnswer(
+            inv -> {
+              Commit c = new Commit();
+              c.setSha(inv.<CommitID>getArgument(0).getSha());
+              return Optional.of(c);
+            });
+
+    basicBugFinder.traceCommitsToOrigin("owner", "repo", 1);
+
+    for (ProjectIssue issue : issues) {
+      assertEquals(
+          List.of(introducing.name()),
+          issue.getBugIntroducingCommits().stream().map(Commit::getSha).toList());
+    }
+    verify(projectIssueRepository, times(2)).saveAll(anyList());
+    verify(projectIssueRepository, never()).save(any());
+
+    ArgumentCaptor<SzzJob> job = ArgumentCaptor.forClass(SzzJob.class);
+    verify(szzJobRepository, atLeastOnce()).save(job.capture());
+    assertEquals(SzzJob.Status.FINISHED, job.getValue().getStatus());
+    assertEquals(3, job.getValue().getIssuesDone());
+  }
+
+  @Test
+  void resumesAnInterruptedJobWithoutRetracingFinishedIssues() {
+    SzzJob unfinished = new SzzJob("owner", "repo", 1);
+    unfinished.setId(7L);
+    SzzJobIssue done = new SzzJobIssue(7L, 1L);
+    done.setStatus(SzzJobIssue.Status.DONE);
+    done.setAttempts(1);
+    SzzJobIssue interrupted = new SzzJobIssue(7L, 2L);
+    interrupted.setStatus(SzzJobIssue.Status.RUNNING);
+    interrupted.setAttempts(1);
+    when(szzJobRepository.findFirstByProjectOwnerAndProjectNameAndDepthAndStatusOrderByIdDesc(
+            "owner", "repo", 1, SzzJob.Status.RUNNING))
+        .thenReturn(unfinished);
+    when(szzJobIssueRepository.findByJobId(7L)).thenReturn(List.of(done, interrupted));
+    // issue 1 was traced without finding anything, so only the job knows it is done
+    List<ProjectIssue> issues = List.of(fixedIssue(1), fixedIssue(2));
+    when(projectIssueRepository.finAllFixedIssues("repo", "owner")).thenReturn(issues);
+    when(commitRepository.findById(any(CommitID.class))).thenReturn(Optional.of(new Commit()));
+
+    basicBugFinder.traceCommitsToOrigin("owner", "repo", 1);
+
+    assertTrue(issues.get(0).getBugIntroducingCommits().isEmpty());
+    assertEquals(1, issues.get(1).getBugIntroducingCommits().size());
+    assertEquals(SzzJobIssue.Status.DONE, interrupted.getStatus());
+    assertEquals(2, interrupted.getAttempts());
+    assertEquals(SzzJob.Status.FINISHED, unfinished.getStatus());
+    assertEquals(2, unfinished.getIssuesDone());
+  }
+
+  @Test
+  void tracesAllChangedLinesOfAFileWithOneBlamePerAncestor() throws Exception {
+    when(commitRepository.findAllById(anyIterable()))
+        .thenAnswer(
+            inv -> {
+              List<Commit> found = new ArrayList<>();
+              for (CommitID id : inv.<Iterable<CommitID>>getArgument(0)) {
+                Commit c = new Commit();
+                c.setSha(id.getSha());
+                found.add(c);
+              }
+              return found;
+            });
+    FileChange change = new FileChange();
+    change.setFileName("A.java");
+    change.setPatch("@@ -1,3 +1,3 @@\n+a\n+bug\n c\n");
+
+    Map<String, Map<Integer, List<Commit>>> candidates =
+        basicBugFinder.traceFileChangesToCommits(
+            new File(tmp, "owner_repo").getAbsolutePath(), unrelated.name(), List.of(change), 3);
+
+    assertEquals(Set.of(1, 2), candidates.get("A.java").keySet());
+    for (List<Commit> line : candidates.get("A.java").values()) {
+      assertEquals(List.of(introducing.name()), line.stream().map(Commit::getSha).toList());
+    }
+    // one blame at the start commit and one at the introducing commit, for both lines
+    assertEquals(2, blameCache.stats().misses());
+    verify(commitRepository, times(1)).findAllById(anyIterable());
+  }
+}
@@ -0,0 +1,167 @@
+package com.research.qmodel.service.findbugs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.io.InterruptedIOException;
+import java.nio.file.Files;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+class BlameCacheTest {
+
+  @TempDir File tmp;
+
+  private Git git;
+  private RevCommit first;
+  private RevCommit second;
+
+  @BeforeEach
+  void setUp() throws Exception {
+    File work = new File(tmp, "repo");
+    git = Git.init().setDirectory(work).setInitialBranch("main").call();
+    Files.writeString(new File(work, "A.java").toPath(), "a\nb\nc\n");
+    git.add().addFilepattern("A.java").call();
+    first = git.commit().setMessage("first").setSign(false).call();
+    Files.writeString(new File(work, "A.java").toPath(), "a\nB\nc\nd\n");
+    git.add().addFilepattern("A.java").call();
+    second = git.commit().setMessage("second").setSign(false).call();
+  }
+
+  @AfterEach
+  void tearDown() {
+    git.close();
+  }
+
+  private BlameCache.Loader blame(String file, RevCommit start, AtomicInteger calls) {
+    return () -> {
+      calls.incrementAndGet();
+      return git.blame().setFilePath(file).setStartCommit(start).call();
+    };
+  }
+
+  @Test
+  void concurrentMissesShareOneBlame() throws Exception {
+    BlameCache cache = new BlameCache();
+    AtomicInteger calls = new AtomicInteger();
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    BlameCache.Loader slow =
+        () -> {
+          loading.countDown();
+          try {
+            release.await();
+          } catch (InterruptedException e) {
+            throw new InterruptedIOException();
+          }
+          return blame("A.java", second, calls).load();
+        };
+    ExecutorService pool = Executors.newFixedThreadPool(2);
+    try {
+      Future<BlameCache.Blame> a =
+          pool.submit(() -> cache.get(git.getRepository(), "A.java", second, slow));
+      loading.await();
+      Future<BlameCache.Blame> b =
+          pool.submit(() -> cache.get(git.getRepository(), "A.java", second, slow));
+      Thread.sleep(50);
+      release.countDown();
+
+      assertSame(a.get(), b.get());
+      assertEquals(1, calls.get());
+      assertEquals(1, cache.stats().misses());
+    } finally {
+      pool.shutdownNow();
+    }
+  }
+
+  @Test
+  void answersAllLinesOfAFileFromOneBlame() throws Exception {
+    BlameCache cache = new BlameCache();
+    AtomicInteger calls = new AtomicInteger();
+
+    BlameCache.Blame blame =
+        cache.get(git.getRepository(), "A.java", second, blame("A.java", second, calls));
+    assertEquals(4, blame.lineCount());
+    assertEquals(first.name(), blame.sourceOf(1));
+    assertEquals(second.name(), blame.sourceOf(2));
+    assertEquals(first.name(), blame.sourceOf(3));
+    assertEquals(second.name(), blame.sourceOf(4));
+    assertNull(blame.sourceOf(0));
+    assertNull(blame.sourceOf(5));
+    assertEquals("A.java", blame.sourcePathOf(3));
+    assertEquals(3, blame.sourceLineOf(3));
+    assertEquals(0, blame.sourceLineOf(5));
+
+    assertSame(
+        blame, cache.get(git.getRepository(), "A.java", second, blame("A.java", second, calls)));
+    assertEquals(1, calls.get());
+    assertEquals(new BlameCache.Stats(1, 0, 1, 1, 4), cache.stats());
+  }
+
+  @Test
+  void missingFileIsCachedAsEmpty() throws Exception {
+    BlameCache cache = new BlameCache();
+    AtomicInteger calls = new AtomicInteger();
+
+    assertEquals(
+        0, cache.get(git.getRepository(), "B.java", second, blame("B.java", second, calls)).lineCount());
+    cache.get(git.getRepository(), "B.java", second, blame("B.java", second, calls));
+    assertEquals(1, calls.get());
+  }
+
+  @Test
+  void evictsLeastRecentlyUsedWhenOverLineLimit() throws Exception {
+    BlameCache cache = new BlameCache();
+    ReflectionTestUtils.setField(cache, "maxLines", 7L);
+    AtomicInteger calls = new AtomicInteger();
+
+    cache.get(git.getRepository(), "A.java", first, blame("A.java", first, calls));
+    cache.get(git.getRepository(), "A.java", second, blame("A.java", second, calls));
+    assertEquals(7, cache.stats().lines());
+
+    cache.get(git.getRepository(), "A.java", first, blame("A.java", first, calls));
+    assertEquals(2, calls.get());
+
+    ReflectionTestUtils.setField(cache, "maxLines", 4L);
+    cache.clear();
+    cache.get(git.getRepository(), "A.java", first, blame("A.java", first, calls));
+    cache.get(git.getRepository(), "A.java", second, blame("A.java", second, calls));
+    assertEquals(1, cache.stats().entries());
+    cache.get(git.getRepository(), "A.java", first, blame("A.java", first, calls));
+    assertEquals(5, calls.get());
+  }
+
+  @Test
+  void reusesBlamesWrittenToDisk() throws Exception {
+    File dir = new File(tmp, "blame-cache");
+    BlameCache writer = new BlameCache();
+    ReflectionTestUtils.setField(writer, "dir", dir.getAbsolutePath());
+    AtomicInteger calls = new AtomicInteger();
+    BlameCache.Blame written =
+        writer.get(git.getRepository(), "A.java", second, blame("A.java", second, calls));
+
+    BlameCache reader = new BlameCache();
+    ReflectionTestUtils.setField(reader, "dir", dir.getAbsolutePath());
+    BlameCache.Blame read =
+        reader.get(git.getRepository(), "A.java", second, blame("A.java", second, calls));
+
+    assertEquals(1, calls.get());
+    assertEquals(1, reader.stats().diskHits());
+    assertEquals(written.lineCount(), read.lineCount());
+    for (int line = 1; line <= read.lineCount(); line++) {
+      assertEquals(written.sourceOf(line), read.sourceOf(line));
+      assertEquals(written.sourcePathOf(line), read.sourcePathOf(line));
+      assertEquals(written.sourceLineOf(line), read.sourceLineOf(line));
+    }
+  }
+}
@@ -0,0 +1,73 @@
+package com.research.qmodel.service.findbugs;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+import com.research.qmodel.model.AGraph;
+import com.research.qmodel.model.Commit;
+import com.research.qmodel.model.CommitID;
+import com.research.qmodel.model.Project;
+import com.research.qmodel.repos.CommitRepository;
+import com.research.qmodel.service.BasicQueryService;
+import com.research.qmodel.service.DataPersistance;
+import java.util.*;
+import java.util.stream.Collectors;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+
+@ExtendWith(MockitoExtension.class)
+class FixingCommitResolverTest {
+
+  @Mock private CommitRepository commitRepository;
+  @Mock private BasicQueryService basicQueryService;
+  @Mock private DataPersistance dataPersistance;
+  @InjectMocks private FixingCommitResolver resolver;
+
+  private static Commit commit(String sha) {
+    Commit c = new Commit();
+    c.setSha(sha);
+    return c;
+  }
+
+  private static AGraph graphOf(String sha) {
+    AGraph graph = new AGraph();
+    graph.setGraph("[{}]");
+    graph.addCommit(commit(sha));
+    return graph;
+  }
+
+  @Test
+  void loadsKnownCommitsInOneQueryAndPersistsMissingOnesOnce() {
+    when(commitRepository.findAllById(
+            List.of(new CommitID("a"), new CommitID("b"), new CommitID("c"))))
+        .thenReturn(List.of(commit("b")));
+    when(basicQueryService.retrieveCommitBySha("owner", "repo", "a")).thenReturn(graphOf("a"));
+    when(basicQueryService.retrieveCommitBySha("owner", "repo", "c")).thenReturn(graphOf("c"));
+    when(commitRepository.findAllById(List.of(new CommitID("a"), new CommitID("c"))))
+        .thenReturn(List.of(commit("c"), commit("a")));
+
+    List<Commit> resolved = resolver.resolve("owner", "repo", List.of("a", "b", "", "a", "c"));
+
+    assertEquals(List.of("a", "b", "c"), resolved.stream().map(Commit::getSha).toList());
+    @SuppressWarnings("unchecked")
+    ArgumentCaptor<Map<Project, AGraph>> graphs = ArgumentCaptor.forClass(Map.class);
+    verify(dataPersistance, times(1)).persistGraph(anyList(), graphs.capture());
+    AGraph persisted = graphs.getValue().values().iterator().next();
+    assertEquals(
+        Set.of("a", "c"),
+        persisted.getCommits().stream().map(Commit::getSha).collect(Collectors.toSet()));
+  }
+
+  @Test
+  void skipsPersistingWhenEverythingIsKnown() {
+    when(commitRepository.findAllById(anyIterable())).thenReturn(List.of(commit("a")));
+
+    assertEquals(1, resolver.resolve("owner", "repo", List.of("a")).size());
+    verifyNoInteractions(basicQueryService, dataPersistance);
+  }
+}
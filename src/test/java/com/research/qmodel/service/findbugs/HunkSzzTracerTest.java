@@ -0,0 +1,77 @@
+package com.research.qmodel.service.findbugs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class HunkSzzTracerTest {
+
+  @TempDir File tmp;
+
+  private final HunkSzzTracer tracer = new HunkSzzTracer(new BlameCache());
+  private Git git;
+  private RevCommit original;
+  private RevCommit edited;
+
+  private RevCommit commit(String content) throws Exception {
+    Files.writeString(new File(git.getRepository().getWorkTree(), "A.java").toPath(), content);
+    git.add().addFilepattern("A.java").call();
+    return git.commit().setMessage(content).setSign(false).call();
+  }
+
+  @BeforeEach
+  void setUp() throws Exception {
+    git = Git.init().setDirectory(new File(tmp, "repo")).setInitialBranch("main").call();
+    original = commit("1\n2\n3\n4\n5\n");
+    // shifts everything down by one and rewrites the old line 3
+    edited = commit("0\n1\n2\n3x\n4\n5\n");
+    commit("0\n1\n2\n3x\n4\n5y\n");
+  }
+
+  @AfterEach
+  void tearDown() {
+    git.close();
+  }
+
+  @Test
+  void blamesTheLinesAFixReplacedAndFollowsThemThroughEarlierEdits() throws Exception {
+    RevCommit fix = commit("0\n1\n2\n3fixed\n4\n5y\n");
+
+    assertEquals(
+        List.of(new HunkSzzTracer.Introducer(edited.name(), "A.java", 1, 1)),
+        tracer.trace(git, fix, "A.java", 1));
+
+    // line 4 of the edited version maps back to line 3 of the original, not line 4
+    assertEquals(
+        List.of(
+            new HunkSzzTracer.Introducer(edited.name(), "A.java", 1, 1),
+            new HunkSzzTracer.Introducer(original.name(), "A.java", 2, 1)),
+        tracer.trace(git, fix, "A.java", 3));
+  }
+
+  @Test
+  void tracesTheLineAboveAnInsertOnlyFix() throws Exception {
+    RevCommit fix = commit("0\n1\n2\ncheck\n3x\n4\n5y\n");
+
+    assertEquals(
+        List.of(new HunkSzzTracer.Introducer(original.name(), "A.java", 1, 1)),
+        tracer.trace(git, fix, "A.java", 2));
+  }
+
+  @Test
+  void linesAddedFromScratchEndTheChain() throws Exception {
+    RevCommit fix = commit("zero\n1\n2\n3x\n4\n5y\n");
+
+    assertEquals(
+        List.of(new HunkSzzTracer.Introducer(edited.name(), "A.java", 1, 1)),
+        tracer.trace(git, fix, "A.java", 3));
+  }
+}
@@ -0,0 +1,84 @@
+package com.research.qmodel.service.findbugs;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.RefUpdate;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class OrphanCommitsTest {
+
+  @TempDir File tmp;
+
+  private static RevCommit commit(Git git, String content) throws Exception {
+    File work = git.getRepository().getWorkTree();
+    Files.writeString(new File(work, "A.java").toPath(), content);
+    git.add().addFilepattern("A.java").call();
+    return git.commit().setMessage(content).setSign(false).call();
+  }
+
+  private static void createRef(Repository repository, String name, RevCommit target)
+      throws Exception {
+    RefUpdate update = repository.updateRef(name);
+    update.setNewObjectId(target);
+    assertEquals(RefUpdate.Result.NEW, update.update());
+  }
+
+  @Test
+  void fetchesCommitsOnNoBranchIntoTheOrphanNamespace() throws Exception {
+    File upstreamDir = new File(tmp, "upstream");
+    try (Git upstream = Git.init().setDirectory(upstreamDir).setInitialBranch("main").call()) {
+      upstream.getRepository().getConfig().setBoolean("uploadpack", null, "allowAnySHA1InWant", true);
+      upstream.getRepository().getConfig().save();
+      commit(upstream, "a\n");
+
+      File cloneDir = new File(tmp, "clone");
+      try (Git clone =
+          Git.cloneRepository()
+              .setURI(upstreamDir.toURI().toString())
+              .setDirectory(cloneDir)
+              .setBare(true)
+              .call()) {
+        upstream.checkout().setCreateBranch(true).setName("pr").call();
+        RevCommit orphan = commit(upstream, "b\n");
+        upstream.checkout().setName("main").call();
+        upstream.branchDelete().setBranchNames("pr").setForce(true).call();
+
+        assertEquals(cloneDir, OrphanCommits.gitDir(cloneDir.getPath()));
+        assertTrue(OrphanCommits.fetch(clone, List.of(orphan)).isEmpty());
+        assertTrue(clone.getRepository().getObjectDatabase().has(orphan));
+        assertEquals(
+            orphan.getId(),
+            clone.getRepository().exactRef(OrphanCommits.REF_PREFIX + orphan.name()).getObjectId());
+
+        // already present, nothing to fetch
+        assertTrue(OrphanCommits.fetch(clone, List.of(orphan)).isEmpty());
+      }
+    }
+  }
+
+  @Test
+  void prunesLegacyTempRefsButKeepsTheCheckedOutBranch() throws Exception {
+    try (Git git = Git.init().setDirectory(new File(tmp, "repo")).setInitialBranch("main").call()) {
+      RevCommit c = commit(git, "a\n");
+      Repository repository = git.getRepository();
+      createRef(repository, "refs/heads/temp_commit_abc_1", c);
+      createRef(repository, "refs/remotes/origin/temp_commit_2", c);
+      createRef(repository, OrphanCommits.REF_PREFIX + c.name(), c);
+      git.checkout().setCreateBranch(true).setName("temp_commit_def_3").call();
+
+      assertEquals(2, OrphanCommits.pruneLegacyRefs(repository));
+      assertNull(repository.exactRef("refs/heads/temp_commit_abc_1"));
+      assertNull(repository.exactRef("refs/remotes/origin/temp_commit_2"));
+      assertNotNull(repository.exactRef("refs/heads/temp_commit_def_3"));
+      assertNotNull(repository.exactRef(OrphanCommits.REF_PREFIX + c.name()));
+      assertEquals(0, OrphanCommits.pruneLegacyRefs(repository));
+    }
+  }
+}